@@ -0,0 +1,268 @@
+package nl.tudelft.sem.template.delivery;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe priority index of available delivery IDs, lowest priority value first and FIFO among equal priorities.
+ * Offering, re-prioritizing, removing and polling run in O(log n) and never take a global lock:
+ * membership lives in a {@link ConcurrentHashMap} and the order in lock-free {@link ConcurrentSkipListSet}s.
+ * Deliveries can additionally be offered into a partition (e.g. an area of the city), which keeps its own
+ * order, so that the first delivery of a single partition can be polled without scanning the others.
+ */
+public class AvailableDeliveryIndex {
+
+    private static final Comparator<Node> ORDER = Comparator.<Node>comparingLong(node -> node.priority)
+        .thenComparingLong(node -> node.sequence);
+
+    private final transient Map<UUID, Node> nodes = new ConcurrentHashMap<>();
+
+    private final transient NavigableSet<Node> queue = new ConcurrentSkipListSet<>(ORDER);
+
+    private final transient Map<Long, NavigableSet<Node>> partitions = new ConcurrentHashMap<>();
+
+    private final transient AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Appends a delivery to the back of the index, unless it is already present.
+     *
+     * @param deliveryId ID of the delivery
+     * @return true if the delivery was added, false if it was already indexed
+     */
+    public boolean offer(UUID deliveryId) {
+        return offer(deliveryId, null);
+    }
+
+    /**
+     * Appends a delivery to the back of the index and of its partition, unless it is already present.
+     *
+     * @param deliveryId ID of the delivery
+     * @param partition  partition of the delivery, null if it belongs to none
+     * @return true if the delivery was added, false if it was already indexed
+     */
+    public boolean offer(UUID deliveryId, Long partition) {
+        return offer(deliveryId, partition, 0);
+    }
+
+    /**
+     * Adds a delivery to the index and its partition with a priority. A delivery that is already indexed
+     * is moved to the new priority and partition, behind the deliveries that already have that priority.
+     *
+     * @param deliveryId ID of the delivery
+     * @param partition  partition of the delivery, null if it belongs to none
+     * @param priority   deliveries with a lower value are polled first
+     * @return true if the delivery was added, false if it was already indexed
+     */
+    public boolean offer(UUID deliveryId, Long partition, long priority) {
+        while (true) {
+            Node current = nodes.get(deliveryId);
+            if (current != null && current.priority == priority && Objects.equals(current.partition, partition)) {
+                return false;
+            }
+            Node node = new Node(deliveryId, partition, priority, sequence.incrementAndGet());
+            if (current == null) {
+                if (nodes.putIfAbsent(deliveryId, node) == null) {
+                    link(node);
+                    return true;
+                }
+            } else if (nodes.replace(deliveryId, current, node)) {
+                unlink(current);
+                link(node);
+                return false;
+            }
+            // Another thread changed the delivery in the meantime, look again
+        }
+    }
+
+    /**
+     * Removes a delivery from the index.
+     *
+     * @param deliveryId ID of the delivery
+     * @return true if the delivery was indexed
+     */
+    public boolean remove(UUID deliveryId) {
+        Node node = nodes.remove(deliveryId);
+        if (node == null) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    /**
+     * Removes and returns the first delivery in the index.
+     *
+     * @return ID of the delivery with the lowest priority or null if the index is empty
+     */
+    public UUID poll() {
+        return claimFrom(queue);
+    }
+
+    /**
+     * Removes and returns the first delivery in a partition.
+     *
+     * @param partition partition to poll
+     * @return ID of the delivery of the partition with the lowest priority or null if the partition is empty
+     */
+    public UUID poll(long partition) {
+        NavigableSet<Node> nodesOfPartition = partitions.get(partition);
+        return nodesOfPartition == null ? null : claimFrom(nodesOfPartition);
+    }
+
+    /**
+     * Removes and returns the first delivery in the index, but only if its priority is at most a given value.
+     *
+     * @param maxPriority highest priority value the delivery may have
+     * @return ID of the first delivery or null if there is none or its priority is higher
+     */
+    public UUID pollUpTo(long maxPriority) {
+        Node head;
+        while ((head = liveHead(queue)) != null && head.priority <= maxPriority) {
+            if (claim(head)) {
+                return head.deliveryId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Priority of the first delivery in a partition.
+     *
+     * @param partition partition to look at
+     * @return the lowest priority of the partition, or null if the partition is empty
+     */
+    public Long firstPriority(long partition) {
+        NavigableSet<Node> nodesOfPartition = partitions.get(partition);
+        Node head = nodesOfPartition == null ? null : liveHead(nodesOfPartition);
+        return head == null ? null : head.priority;
+    }
+
+    /**
+     * Priority of a delivery.
+     *
+     * @param deliveryId ID of the delivery
+     * @return the priority, or null if the delivery is not indexed
+     */
+    public Long priorityOf(UUID deliveryId) {
+        Node node = nodes.get(deliveryId);
+        return node == null ? null : node.priority;
+    }
+
+    /**
+     * First deliveries in the index, without removing them.
+     *
+     * @param limit maximum number of deliveries returned
+     * @return IDs of the deliveries with the lowest priorities, lowest first
+     */
+    public List<UUID> peek(int limit) {
+        List<UUID> first = new ArrayList<>(Math.min(limit, nodes.size()));
+        for (Node node : queue) {
+            if (first.size() >= limit) {
+                break;
+            }
+            if (nodes.get(node.deliveryId) == node) {
+                first.add(node.deliveryId);
+            }
+        }
+        return first;
+    }
+
+    public boolean contains(UUID deliveryId) {
+        return nodes.containsKey(deliveryId);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty();
+    }
+
+    private UUID claimFrom(NavigableSet<Node> source) {
+        Node node;
+        while ((node = source.pollFirst()) != null) {
+            if (claim(node)) {
+                return node.deliveryId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Takes a delivery out of the index; only one of several concurrent callers succeeds.
+     */
+    private boolean claim(Node node) {
+        if (!nodes.remove(node.deliveryId, node)) {
+            return false;
+        }
+        unlink(node);
+        return true;
+    }
+
+    /**
+     * Returns the first node of a set that is still indexed. Nodes that were removed from the index
+     * while they were being added to the set are dropped on the way.
+     */
+    private Node liveHead(NavigableSet<Node> source) {
+        for (Node head : source) {
+            if (nodes.get(head.deliveryId) == head) {
+                return head;
+            }
+            source.remove(head);
+        }
+        return null;
+    }
+
+    private void link(Node node) {
+        queue.add(node);
+        if (node.partition != null) {
+            // Adding inside compute() keeps unlink() from dropping a partition we are adding to
+            partitions.compute(node.partition, (key, nodesOfPartition) -> {
+                NavigableSet<Node> result = nodesOfPartition == null
+                    ? new ConcurrentSkipListSet<>(ORDER) : nodesOfPartition;
+                result.add(node);
+                return result;
+            });
+        }
+    }
+
+    private void unlink(Node node) {
+        queue.remove(node);
+        if (node.partition != null) {
+            partitions.computeIfPresent(node.partition, (key, nodesOfPartition) -> {
+                nodesOfPartition.remove(node);
+                return nodesOfPartition.isEmpty() ? null : nodesOfPartition;
+            });
+        }
+    }
+
+    /**
+     * Index node; the sequence number keeps nodes of equal priority in offer order
+     * and tells a re-offered delivery apart from its old position.
+     */
+    private static final class Node {
+        private final transient UUID deliveryId;
+
+        private final transient Long partition;
+
+        private final transient long priority;
+
+        private final transient long sequence;
+
+        private Node(UUID deliveryId, Long partition, long priority, long sequence) {
+            this.deliveryId = deliveryId;
+            this.partition = partition;
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
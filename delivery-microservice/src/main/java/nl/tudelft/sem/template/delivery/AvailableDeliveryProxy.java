@@ -2,11 +2,26 @@ package nl.tudelft.sem.template.delivery;
 
 import nl.tudelft.sem.template.model.Delivery;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface AvailableDeliveryProxy {
 
     UUID getAvailableDeliveryId();
 
+    UUID getAvailableDeliveryId(List<Double> courierLocation);
+
+    UUID pollAvailableDeliveryId(List<Double> courierLocation);
+
+    UUID pollRestaurantDeliveryId(String restaurantId);
+
     void insertDelivery(Delivery delivery);
+
+    List<UUID> getAvailableDeliveryIds(int limit);
+
+    boolean claimDelivery(UUID deliveryId);
+
+    void awaitDelivery(Runnable waiter, String restaurantId, boolean keepTurn);
+
+    boolean cancelAwait(Runnable waiter, String restaurantId);
 }
@@ -1,24 +1,100 @@
 package nl.tudelft.sem.template.delivery;
 
 import nl.tudelft.sem.template.delivery.services.DeliveryService;
+import nl.tudelft.sem.template.delivery.services.RestaurantChangedEvent;
 import nl.tudelft.sem.template.model.Delivery;
 import nl.tudelft.sem.template.model.DeliveryStatus;
+import nl.tudelft.sem.template.model.Restaurant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.util.LinkedList;
-import java.util.Queue;
+import java.time.OffsetDateTime;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
 @Scope("singleton")
 public class AvailableDeliveryProxyImplementation implements AvailableDeliveryProxy {
 
+    private static final double DEFAULT_CELL_SIZE = 0.01;
+    private static final int DEFAULT_SEARCH_RADIUS = 3;
+    private static final long DEFAULT_MAX_WAIT_SECONDS = 600;
+    private static final int DEFAULT_WAITER_THREADS = 2;
+
+    /**
+     * Rounds of waking up waiters that may be queued for the waiter threads. At most one round per queue is queued
+     * or running at a time, so this is only reached with as many restaurants with own couriers and waiters.
+     */
+    private static final int MAX_QUEUED_WAKE_UPS = 1000;
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailableDeliveryProxyImplementation.class);
+
+    /**
+     * Preparation time assumed when the restaurant gave none, as in {@code TimeCalculationService}.
+     */
+    private static final int DEFAULT_PREP_MINUTES = 30;
+
+    /**
+     * Kilometres per degree of latitude, and the average courier speed used by {@code TimeCalculationService}.
+     */
+    private static final double KM_PER_DEGREE = 111.2;
+    private static final double AVERAGE_SPEED_KMH = 30;
+
     private final transient DeliveryService deliveryService;
 
-    private final transient Queue<UUID> availableDeliveries = new LinkedList<>();
+    private final transient AvailableDeliveryIndex availableDeliveries = new AvailableDeliveryIndex();
+
+    /**
+     * Restaurant of every available delivery. Status and courier are not stored: a delivery is only in a queue
+     * while it is accepted or preparing without a courier, every change to either is reported through
+     * {@link #insertDelivery(Delivery)}, and changes to a restaurant through {@link RestaurantChangedEvent}.
+     */
+    private final transient Map<UUID, String> restaurantOfDelivery = new ConcurrentHashMap<>();
+
+    /**
+     * Couriers waiting for a delivery, in order of arrival.
+     */
+    private final transient Deque<Runnable> waiters = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Whether a round of waking up the couriers waiting for the deliveries of all restaurants is queued or running.
+     */
+    private final transient AtomicBoolean wakingWaiters = new AtomicBoolean();
+
+    /**
+     * Available deliveries and waiting couriers of every restaurant that employs its own couriers.
+     */
+    private final transient Map<String, RestaurantPool> restaurantPools = new ConcurrentHashMap<>();
+
+    private final transient DeliveryGrid grid;
+
+    private final transient int searchRadius;
+
+    private final transient long maxWaitMillis;
+
+    /**
+     * Rough time a courier needs to travel one area further.
+     */
+    private final transient long millisPerRing;
+
+    private final transient Executor waiterExecutor;
 
     /**
      * Constructor for Proxy design pattern that keeps track of available deliveries.
@@ -26,7 +102,74 @@ public class AvailableDeliveryProxyImplementation implements AvailableDeliveryPr
      * @param deliveryService delivery service (for access to the Delivery database)
      */
     public AvailableDeliveryProxyImplementation(DeliveryService deliveryService) {
+        this(deliveryService, DEFAULT_CELL_SIZE, DEFAULT_SEARCH_RADIUS, DEFAULT_MAX_WAIT_SECONDS,
+            DEFAULT_WAITER_THREADS);
+    }
+
+    /**
+     * Constructor for Proxy design pattern that keeps track of available deliveries.
+     *
+     * @param deliveryService delivery service (for access to the Delivery database)
+     * @param cellSize        size in degrees of the areas deliveries are grouped by
+     * @param searchRadius    number of rings of areas around a courier searched before falling back to the delivery
+     *                        that is ready first anywhere
+     * @param maxWaitSeconds  seconds after which a delivery whose food is ready is handed out first,
+     *                        wherever the courier is
+     * @param waiterThreads   number of threads waiting couriers are woken up on
+     */
+    @Autowired
+    public AvailableDeliveryProxyImplementation(DeliveryService deliveryService,
+                                                @Value("${delivery.dispatch.cell-size:0.01}") double cellSize,
+                                                @Value("${delivery.dispatch.search-radius:3}") int searchRadius,
+                                                @Value("${delivery.dispatch.max-wait-seconds:600}")
+                                                long maxWaitSeconds,
+                                                @Value("${delivery.dispatch.waiter-threads:2}") int waiterThreads) {
+        this(deliveryService, cellSize, searchRadius, maxWaitSeconds, waiterExecutor(waiterThreads));
+    }
+
+    /**
+     * Constructor for Proxy design pattern that keeps track of available deliveries.
+     *
+     * @param deliveryService delivery service (for access to the Delivery database)
+     * @param cellSize        size in degrees of the areas deliveries are grouped by
+     * @param searchRadius    number of rings of areas around a courier searched before falling back to the delivery
+     *                        that is ready first anywhere
+     * @param maxWaitSeconds  seconds after which a delivery whose food is ready is handed out first,
+     *                        wherever the courier is
+     * @param waiterExecutor  executor waiting couriers are woken up on
+     */
+    public AvailableDeliveryProxyImplementation(DeliveryService deliveryService, double cellSize, int searchRadius,
+                                                long maxWaitSeconds, Executor waiterExecutor) {
+        if (searchRadius < 0 || maxWaitSeconds < 0) {
+            throw new IllegalArgumentException("Search radius and maximum wait cannot be negative");
+        }
         this.deliveryService = deliveryService;
+        this.grid = new DeliveryGrid(cellSize);
+        this.searchRadius = searchRadius;
+        this.maxWaitMillis = TimeUnit.SECONDS.toMillis(maxWaitSeconds);
+        this.millisPerRing = Math.round(cellSize * KM_PER_DEGREE / AVERAGE_SPEED_KMH * TimeUnit.HOURS.toMillis(1));
+        this.waiterExecutor = waiterExecutor;
+    }
+
+    /**
+     * Creates the bounded pool of daemon threads waiting couriers are woken up on, so that a request inserting a
+     * delivery does not run them. Its threads stop when idle for a minute.
+     *
+     * @param threads number of threads
+     * @return the executor
+     */
+    private static ThreadPoolExecutor waiterExecutor(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("There must be at least one waiter thread");
+        }
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+            new LinkedBlockingQueue<>(MAX_QUEUED_WAKE_UPS), runnable -> {
+                Thread thread = new Thread(runnable, "delivery-waiters");
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     /**
@@ -36,31 +179,195 @@ public class AvailableDeliveryProxyImplementation implements AvailableDeliveryPr
      * @return return boolean value indicating whether it's available
      */
     public boolean checkStatus(Delivery d) {
-        DeliveryStatus status = d.getStatus();
-        if (status == null || d.getRestaurantID() == null) {
+        if (d.getStatus() == null || d.getRestaurantID() == null) {
             return false;
         }
+        return isAvailable(d, deliveryService.restaurantUsesOwnCouriers(d));
+    }
+
+    private boolean isAvailable(Delivery d, boolean restaurantUsesOwnCouriers) {
+        return !restaurantUsesOwnCouriers && isWaitingForCourier(d);
+    }
+
+    private boolean isWaitingForCourier(Delivery d) {
+        DeliveryStatus status = d.getStatus();
         boolean courierAssigned = d.getCourierID() != null;
-        boolean restaurantUsesOwnCouriers = deliveryService.restaurantUsesOwnCouriers(d);
-        if (courierAssigned || restaurantUsesOwnCouriers) {
+        if (courierAssigned) {
             return false;
         }
         return status.equals(DeliveryStatus.ACCEPTED) || status.equals(DeliveryStatus.PREPARING);
     }
 
     /**
-     * Check if delivery should be added to the queue.
+     * Check if delivery should be added to the queue, or update its place in the queue.
+     * Available deliveries are grouped by the area of the restaurant that prepares them,
+     * and ordered by the time their food is expected to be ready.
+     * Deliveries of a restaurant with its own couriers go to the separate pool of that restaurant instead.
+     * The own couriers and location of the restaurant come from the restaurant cache.
      *
      * @param delivery delivery to be added/updated
      */
     public void insertDelivery(Delivery delivery) {
+        String restaurantId = delivery.getRestaurantID();
+        if (delivery.getStatus() == null || restaurantId == null || !isWaitingForCourier(delivery)) {
+            removeDelivery(delivery.getDeliveryID());
+        } else if (deliveryService.restaurantUsesOwnCouriers(delivery)) {
+            offerRestaurantDelivery(delivery, restaurantId);
+        } else {
+            offerDelivery(delivery, restaurantId, deliveryService.getRestaurantLocation(restaurantId));
+        }
+    }
+
+    private void offerDelivery(Delivery delivery, String restaurantId, List<Double> restaurantLocation) {
         UUID deliveryId = delivery.getDeliveryID();
-        boolean isAvailable = checkStatus(delivery);
-        if (isAvailable && !availableDeliveries.contains(deliveryId)) {
-            availableDeliveries.offer(deliveryId);
+        leaveRestaurantPool(deliveryId, restaurantOfDelivery.put(deliveryId, restaurantId));
+        availableDeliveries.offer(deliveryId, grid.cellOf(restaurantLocation), readyAt(delivery, availableDeliveries));
+        wakeWaiters(availableDeliveries, waiters, wakingWaiters);
+    }
+
+    private void offerRestaurantDelivery(Delivery delivery, String restaurantId) {
+        UUID deliveryId = delivery.getDeliveryID();
+        String previousRestaurantId = restaurantOfDelivery.put(deliveryId, restaurantId);
+        if (!restaurantId.equals(previousRestaurantId)) {
+            leaveRestaurantPool(deliveryId, previousRestaurantId);
         }
-        if (!isAvailable) {
-            availableDeliveries.remove(deliveryId);
+        availableDeliveries.remove(deliveryId);
+        RestaurantPool pool = restaurantPools.computeIfAbsent(restaurantId, id -> new RestaurantPool());
+        pool.deliveries.offer(deliveryId, null, readyAt(delivery, pool.deliveries));
+        wakeWaiters(pool.deliveries, pool.waiters, pool.waking);
+    }
+
+    private boolean leaveRestaurantPool(UUID deliveryId, String restaurantId) {
+        RestaurantPool pool = restaurantId == null ? null : restaurantPools.get(restaurantId);
+        return pool != null && pool.deliveries.remove(deliveryId);
+    }
+
+    /**
+     * Time at which the food of a delivery is expected to be ready: the order time plus the preparation time.
+     * A delivery without order time counts from the moment it was first queued.
+     *
+     * @param delivery the delivery
+     * @param queue    queue the delivery goes into
+     * @return milliseconds since the epoch
+     */
+    private long readyAt(Delivery delivery, AvailableDeliveryIndex queue) {
+        Integer prepTime = delivery.getEstimatedPrepTime();
+        long prepMillis = TimeUnit.MINUTES.toMillis(prepTime == null || prepTime == 0
+            ? DEFAULT_PREP_MINUTES : prepTime);
+        OffsetDateTime orderTime = delivery.getOrderTime();
+        if (orderTime != null) {
+            return orderTime.toInstant().toEpochMilli() + prepMillis;
+        }
+        Long queued = queue.priorityOf(delivery.getDeliveryID());
+        return queued == null ? System.currentTimeMillis() + prepMillis : queued;
+    }
+
+    /**
+     * Wait for a delivery to become available. The waiter is run once, on a waiter thread rather than the one
+     * inserting the delivery, and is expected to take a delivery out of the queue; waiters are run in the order they
+     * started waiting. If a delivery is available already, the waiter is run right away.
+     *
+     * @param waiter       takes a delivery, or waits again if another courier was faster
+     * @param restaurantId restaurant whose own deliveries the waiter takes, null for the deliveries of all others
+     * @param keepTurn     true to wait in front of all others, for a waiter that was run but had to wait again
+     */
+    public void awaitDelivery(Runnable waiter, String restaurantId, boolean keepTurn) {
+        RestaurantPool pool = restaurantId == null ? null
+            : restaurantPools.computeIfAbsent(restaurantId, id -> new RestaurantPool());
+        AvailableDeliveryIndex queue = pool == null ? availableDeliveries : pool.deliveries;
+        Deque<Runnable> queueWaiters = pool == null ? waiters : pool.waiters;
+        if (keepTurn) {
+            // The waiter is run by runWaiters already, which picks it up again while deliveries are left
+            queueWaiters.addFirst(waiter);
+            return;
+        }
+        queueWaiters.addLast(waiter);
+        // A delivery inserted just before the waiter was added did not wake it up
+        wakeWaiters(queue, queueWaiters, pool == null ? wakingWaiters : pool.waking);
+    }
+
+    /**
+     * Stop waiting for a delivery.
+     *
+     * @param waiter       the waiter
+     * @param restaurantId restaurant the waiter waits for, null if it waits for the deliveries of all others
+     * @return true if the waiter was still waiting
+     */
+    public boolean cancelAwait(Runnable waiter, String restaurantId) {
+        if (restaurantId == null) {
+            return waiters.remove(waiter);
+        }
+        RestaurantPool pool = restaurantPools.get(restaurantId);
+        return pool != null && pool.waiters.remove(waiter);
+    }
+
+    /**
+     * Starts a round of running the waiters of a queue on the waiter executor, unless one is queued or running
+     * already; that round also runs the waiters for the deliveries inserted in the meantime.
+     *
+     * @param queue        the available deliveries
+     * @param queueWaiters couriers waiting for them
+     * @param waking       whether a round for the queue is queued or running
+     */
+    private void wakeWaiters(AvailableDeliveryIndex queue, Deque<Runnable> queueWaiters, AtomicBoolean waking) {
+        if (queue.isEmpty() || queueWaiters.isEmpty() || !waking.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            waiterExecutor.execute(() -> runWaiters(queue, queueWaiters, waking));
+        } catch (RejectedExecutionException e) {
+            // The waiters stay in line for the next delivery, or until they stop waiting
+            waking.set(false);
+            logger.warn("Could not wake up waiting couriers: {}", e.getMessage());
+        }
+    }
+
+    private void runWaiters(AvailableDeliveryIndex queue, Deque<Runnable> queueWaiters, AtomicBoolean waking) {
+        try {
+            Runnable waiter;
+            while (!queue.isEmpty() && (waiter = queueWaiters.pollFirst()) != null) {
+                try {
+                    waiter.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Waiting courier failed to take a delivery", e);
+                }
+            }
+        } finally {
+            waking.set(false);
+        }
+        // A delivery or waiter added after the last check above found this round still running
+        wakeWaiters(queue, queueWaiters, waking);
+    }
+
+    private boolean removeDelivery(UUID deliveryId) {
+        boolean fromPool = leaveRestaurantPool(deliveryId, restaurantOfDelivery.remove(deliveryId));
+        return availableDeliveries.remove(deliveryId) || fromPool;
+    }
+
+    /**
+     * Take out the deliveries of a restaurant that was deleted, and move those of a restaurant that started or
+     * stopped using its own couriers between its own pool and the queue of all couriers.
+     *
+     * @param event the change to the restaurant
+     */
+    @EventListener
+    public void onRestaurantChanged(RestaurantChangedEvent event) {
+        Restaurant restaurant = event.getRestaurant();
+        if (restaurant == null) {
+            restaurantOfDelivery.forEach((deliveryId, restaurantId) -> {
+                if (restaurantId.equals(event.getRestaurantId())) {
+                    removeDelivery(deliveryId);
+                }
+            });
+            return;
+        }
+        boolean ownCouriers = deliveryService.restaurantUsesOwnCouriers(restaurant);
+        for (Delivery delivery : deliveryService.getUnassignedRestaurantDeliveries(event.getRestaurantId())) {
+            if (ownCouriers) {
+                offerRestaurantDelivery(delivery, event.getRestaurantId());
+            } else {
+                offerDelivery(delivery, event.getRestaurantId(), restaurant.getLocation());
+            }
         }
     }
 
@@ -70,14 +377,134 @@ public class AvailableDeliveryProxyImplementation implements AvailableDeliveryPr
      * @return UUID of first available Delivery
      */
     public UUID getAvailableDeliveryId() {
+        return getAvailableDeliveryId(null);
+    }
+
+    /**
+     * Get the available Delivery ID best suited for a courier at a given location.
+     * Deliveries whose food has been ready for longer than the maximum wait go first. Otherwise, the delivery that is
+     * ready first in the nearest area around the courier with one that is ready by the time the courier gets there
+     * is picked, and the delivery that is ready first overall if none is.
+     * The queue only holds deliveries that are still available, so the database is not consulted.
+     *
+     * @param courierLocation latitude and longitude of the courier, null if unknown
+     * @return UUID of the chosen available Delivery
+     */
+    public UUID getAvailableDeliveryId(List<Double> courierLocation) {
+        UUID deliveryId = pollAvailableDeliveryId(courierLocation);
+        if (deliveryId == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "There are no available deliveries at the moment.");
+        }
+        return deliveryId;
+    }
+
+    /**
+     * Get the available Delivery IDs whose food is ready first, without handing them out.
+     *
+     * @param limit maximum number of IDs
+     * @return UUIDs of available Deliveries, earliest ready first
+     */
+    public List<UUID> getAvailableDeliveryIds(int limit) {
+        return availableDeliveries.peek(limit);
+    }
+
+    /**
+     * Hand out a specific available Delivery; only one of several concurrent callers succeeds.
+     *
+     * @param deliveryId UUID of the Delivery
+     * @return true if the Delivery was available and is now handed out to the caller
+     */
+    public boolean claimDelivery(UUID deliveryId) {
+        return removeDelivery(deliveryId);
+    }
 
-        while (!availableDeliveries.isEmpty()) {
-            UUID deliveryId = availableDeliveries.poll();
-            Delivery delivery = deliveryService.getDelivery(deliveryId);
-            if (checkStatus(delivery)) {
+    /**
+     * Take the available Delivery ID best suited for a courier at a given location out of the queue,
+     * without checking the database whether the Delivery is still available.
+     * Meant for callers that claim the Delivery with a conditional update anyway.
+     *
+     * @param courierLocation latitude and longitude of the courier, null if unknown
+     * @return UUID of the chosen Delivery, or null if the queue is empty
+     */
+    public UUID pollAvailableDeliveryId(List<Double> courierLocation) {
+        UUID deliveryId = pollBestSuited(courierLocation);
+        if (deliveryId != null) {
+            restaurantOfDelivery.remove(deliveryId);
+        }
+        return deliveryId;
+    }
+
+    /**
+     * Take the available Delivery of a restaurant with its own couriers that is ready first out of its pool,
+     * without checking the database whether the Delivery is still available.
+     *
+     * @param restaurantId ID of the restaurant the courier works for
+     * @return UUID of the Delivery, or null if the restaurant has no available Delivery
+     */
+    public UUID pollRestaurantDeliveryId(String restaurantId) {
+        RestaurantPool pool = restaurantPools.get(restaurantId);
+        UUID deliveryId = pool == null ? null : pool.deliveries.poll();
+        if (deliveryId != null) {
+            restaurantOfDelivery.remove(deliveryId);
+        }
+        return deliveryId;
+    }
+
+    private UUID pollBestSuited(List<Double> courierLocation) {
+        long now = System.currentTimeMillis();
+        UUID starving = availableDeliveries.pollUpTo(now - maxWaitMillis);
+        if (starving != null) {
+            return starving;
+        }
+        if (grid.cellOf(courierLocation) != null) {
+            for (int distance = 0; distance <= searchRadius; distance++) {
+                UUID nearby = pollFirstReady(grid.ring(courierLocation, distance), now + distance * millisPerRing);
+                if (nearby != null) {
+                    return nearby;
+                }
+            }
+        }
+        return availableDeliveries.poll();
+    }
+
+    /**
+     * Takes the delivery that is ready first out of a set of areas, if it is ready in time.
+     *
+     * @param cells   areas to look in
+     * @param readyBy time (milliseconds since the epoch) the food must be ready at, i.e. when the courier arrives
+     * @return ID of the delivery, or null if no delivery in the areas is ready in time
+     */
+    private UUID pollFirstReady(List<Long> cells, long readyBy) {
+        while (true) {
+            Long firstCell = null;
+            long firstReadyAt = 0;
+            for (Long cell : cells) {
+                Long readyAt = availableDeliveries.firstPriority(cell);
+                if (readyAt != null && (firstCell == null ? readyAt <= readyBy : readyAt < firstReadyAt)) {
+                    firstCell = cell;
+                    firstReadyAt = readyAt;
+                }
+            }
+            if (firstCell == null) {
+                return null;
+            }
+            // Another courier may have emptied the area in the meantime, then look again
+            UUID deliveryId = availableDeliveries.poll(firstCell);
+            if (deliveryId != null) {
                 return deliveryId;
             }
         }
-        throw new ResponseStatusException(HttpStatus.NOT_FOUND, "There are no available deliveries at the moment.");
+    }
+
+    /**
+     * Deliveries of a restaurant with its own couriers, only handed out to those couriers.
+     */
+    private static final class RestaurantPool {
+
+        private final transient AvailableDeliveryIndex deliveries = new AvailableDeliveryIndex();
+
+        private final transient Deque<Runnable> waiters = new ConcurrentLinkedDeque<>();
+
+        private final transient AtomicBoolean waking = new AtomicBoolean();
     }
 }
@@ -0,0 +1,109 @@
+package nl.tudelft.sem.template.delivery;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
+import nl.tudelft.sem.template.model.Delivery;
+import nl.tudelft.sem.template.model.DeliveryStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Rebuilds the in-memory queue of available deliveries after a restart.
+ * Runs as an {@link ApplicationRunner}, so the application only reports itself ready for traffic
+ * once every unassigned delivery is visible to couriers again.
+ */
+@Component
+public class AvailableDeliveryRehydrator implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(AvailableDeliveryRehydrator.class);
+
+    private static final List<DeliveryStatus> AVAILABLE_STATUSES = List.of(DeliveryStatus.ACCEPTED,
+        DeliveryStatus.PREPARING);
+
+    private static final UUID FIRST_ID = new UUID(0, 0);
+
+    private final transient DeliveryRepository deliveryRepository;
+
+    private final transient AvailableDeliveryProxy availableDeliveryProxy;
+
+    private final transient int chunkSize;
+
+    private transient volatile Duration lastDuration = Duration.ZERO;
+
+    /**
+     * Constructor.
+     *
+     * @param deliveryRepository     database the deliveries are read from
+     * @param availableDeliveryProxy proxy whose queue is rebuilt
+     * @param chunkSize              maximum number of deliveries held in memory at once
+     */
+    public AvailableDeliveryRehydrator(DeliveryRepository deliveryRepository,
+                                       AvailableDeliveryProxy availableDeliveryProxy,
+                                       @Value("${delivery.rehydration.chunk-size:500}") int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Rehydration chunk size must be positive");
+        }
+        this.deliveryRepository = deliveryRepository;
+        this.availableDeliveryProxy = availableDeliveryProxy;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        rehydrate();
+    }
+
+    /**
+     * Streams the unassigned deliveries out of the database in order time order, one chunk at a time,
+     * and offers them to the proxy. Deliveries without an order time follow, in ID order.
+     *
+     * @return number of deliveries read from the database
+     */
+    public int rehydrate() {
+        long start = System.nanoTime();
+        Pageable chunk = PageRequest.of(0, chunkSize);
+        int count = 0;
+        List<Delivery> deliveries = deliveryRepository.findUnassignedByStatus(AVAILABLE_STATUSES, chunk);
+        while (!deliveries.isEmpty()) {
+            deliveries.forEach(availableDeliveryProxy::insertDelivery);
+            count += deliveries.size();
+            if (deliveries.size() < chunkSize) {
+                break;
+            }
+            Delivery last = deliveries.get(deliveries.size() - 1);
+            deliveries = deliveryRepository.findUnassignedByStatusAfter(AVAILABLE_STATUSES,
+                last.getOrderTime(), last.getDeliveryID(), chunk);
+        }
+        deliveries = deliveryRepository.findUnassignedWithoutOrderTime(AVAILABLE_STATUSES, FIRST_ID, chunk);
+        while (!deliveries.isEmpty()) {
+            deliveries.forEach(availableDeliveryProxy::insertDelivery);
+            count += deliveries.size();
+            if (deliveries.size() < chunkSize) {
+                break;
+            }
+            UUID last = deliveries.get(deliveries.size() - 1).getDeliveryID();
+            deliveries = deliveryRepository.findUnassignedWithoutOrderTime(AVAILABLE_STATUSES, last, chunk);
+        }
+        lastDuration = Duration.ofNanos(System.nanoTime() - start);
+        logger.info("Rehydrated available deliveries from {} unassigned deliveries in {} ms",
+            count, lastDuration.toMillis());
+        return count;
+    }
+
+    /**
+     * Duration of the last rehydration.
+     *
+     * @return how long the last rehydration took
+     */
+    public Duration getLastDuration() {
+        return lastDuration;
+    }
+}
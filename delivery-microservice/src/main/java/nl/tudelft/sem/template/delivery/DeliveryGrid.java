@@ -0,0 +1,83 @@
+package nl.tudelft.sem.template.delivery;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Divides the map into square cells of a fixed number of degrees, so that deliveries can be grouped by area.
+ * A cell is identified by a single long that packs its row (latitude) and column (longitude).
+ */
+public class DeliveryGrid {
+
+    private final transient double cellSize;
+
+    /**
+     * Constructor.
+     *
+     * @param cellSize width and height of a cell in degrees
+     */
+    public DeliveryGrid(double cellSize) {
+        if (!(cellSize > 0)) {
+            throw new IllegalArgumentException("Grid cell size must be positive");
+        }
+        this.cellSize = cellSize;
+    }
+
+    /**
+     * Cell a location falls into.
+     *
+     * @param location latitude and longitude
+     * @return the cell, or null if the location is missing or malformed
+     */
+    public Long cellOf(List<Double> location) {
+        if (!isValid(location)) {
+            return null;
+        }
+        return key(row(location), column(location));
+    }
+
+    /**
+     * Cells at exactly the given distance (in cells) from the cell of a location, the cell itself for distance 0.
+     *
+     * @param location latitude and longitude of the centre
+     * @param distance number of cells between the centre and the ring
+     * @return the cells of the ring, empty if the location is missing or malformed
+     */
+    public List<Long> ring(List<Double> location, int distance) {
+        List<Long> cells = new ArrayList<>();
+        if (!isValid(location)) {
+            return cells;
+        }
+        int row = row(location);
+        int column = column(location);
+        if (distance == 0) {
+            cells.add(key(row, column));
+            return cells;
+        }
+        for (int offset = -distance; offset <= distance; offset++) {
+            cells.add(key(row - distance, column + offset));
+            cells.add(key(row + distance, column + offset));
+        }
+        for (int offset = -distance + 1; offset < distance; offset++) {
+            cells.add(key(row + offset, column - distance));
+            cells.add(key(row + offset, column + distance));
+        }
+        return cells;
+    }
+
+    private int row(List<Double> location) {
+        return (int) Math.floor(location.get(0) / cellSize);
+    }
+
+    private int column(List<Double> location) {
+        return (int) Math.floor(location.get(1) / cellSize);
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xFFFFFFFFL);
+    }
+
+    private static boolean isValid(List<Double> location) {
+        return location != null && location.size() == 2 && location.get(0) != null && location.get(1) != null;
+    }
+}
@@ -0,0 +1,159 @@
+package nl.tudelft.sem.template.delivery;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Solves the (rectangular) assignment problem: matches rows to columns one-to-one,
+ * so that the total cost of the matched cells is minimal and as many rows or columns as possible are matched.
+ * Runs the Hungarian algorithm with potentials in O(n² · m) for n rows and m ≥ n columns.
+ * When there are many more columns than rows, only the n cheapest columns of every row are considered,
+ * which cannot change the optimum: a row matched outside its n cheapest columns leaves one of them unused,
+ * and moving the row there never costs more.
+ */
+public final class HungarianAlgorithm {
+
+    private HungarianAlgorithm() {
+    }
+
+    /**
+     * Finds a minimum cost assignment.
+     *
+     * @param cost cost of matching each row to each column, all rows of the same length
+     * @return for each row the index of its column, or -1 if the row is not matched
+     */
+    public static int[] solve(double[][] cost) {
+        int rows = cost.length;
+        int columns = rows == 0 ? 0 : cost[0].length;
+        int[] assignment = new int[rows];
+        Arrays.fill(assignment, -1);
+        if (rows == 0 || columns == 0) {
+            return assignment;
+        }
+        if (rows > columns) {
+            int[] transposed = solve(transpose(cost));
+            for (int column = 0; column < columns; column++) {
+                assignment[transposed[column]] = column;
+            }
+            return assignment;
+        }
+        int[] candidates = candidateColumns(cost);
+        int[] solved = solveReduced(cost, candidates);
+        for (int row = 0; row < rows; row++) {
+            assignment[row] = candidates[solved[row]];
+        }
+        return assignment;
+    }
+
+    /**
+     * Union of the n cheapest columns of every row, in increasing column order.
+     */
+    private static int[] candidateColumns(double[][] cost) {
+        int rows = cost.length;
+        int columns = cost[0].length;
+        if ((long) rows * rows >= columns) {
+            int[] all = new int[columns];
+            Arrays.setAll(all, column -> column);
+            return all;
+        }
+        boolean[] keep = new boolean[columns];
+        for (double[] row : cost) {
+            // Max-heap holding the n cheapest columns seen so far
+            PriorityQueue<Integer> cheapest = new PriorityQueue<>(rows,
+                (a, b) -> Double.compare(row[b], row[a]));
+            for (int column = 0; column < columns; column++) {
+                if (cheapest.size() < rows) {
+                    cheapest.add(column);
+                } else if (row[column] < row[cheapest.peek()]) {
+                    cheapest.poll();
+                    cheapest.add(column);
+                }
+            }
+            cheapest.forEach(column -> keep[column] = true);
+        }
+        int count = 0;
+        for (boolean kept : keep) {
+            count += kept ? 1 : 0;
+        }
+        int[] candidates = new int[count];
+        for (int column = 0, i = 0; column < columns; column++) {
+            if (keep[column]) {
+                candidates[i++] = column;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Hungarian algorithm on the given columns only; needs at least as many columns as rows.
+     *
+     * @return for each row the position of its column in {@code columns}
+     */
+    private static int[] solveReduced(double[][] cost, int[] columns) {
+        int rows = cost.length;
+        int width = columns.length;
+        // 1-based, index 0 is a virtual column used to start each augmenting path
+        double[] rowPotential = new double[rows + 1];
+        double[] columnPotential = new double[width + 1];
+        int[] matchedRow = new int[width + 1];
+        int[] previous = new int[width + 1];
+        double[] minSlack = new double[width + 1];
+        boolean[] visited = new boolean[width + 1];
+        for (int row = 1; row <= rows; row++) {
+            matchedRow[0] = row;
+            int column = 0;
+            Arrays.fill(minSlack, Double.POSITIVE_INFINITY);
+            Arrays.fill(visited, false);
+            do {
+                visited[column] = true;
+                int current = matchedRow[column];
+                double delta = Double.POSITIVE_INFINITY;
+                int next = 0;
+                for (int j = 1; j <= width; j++) {
+                    if (!visited[j]) {
+                        double slack = cost[current - 1][columns[j - 1]] - rowPotential[current] - columnPotential[j];
+                        if (slack < minSlack[j]) {
+                            minSlack[j] = slack;
+                            previous[j] = column;
+                        }
+                        if (minSlack[j] < delta) {
+                            delta = minSlack[j];
+                            next = j;
+                        }
+                    }
+                }
+                for (int j = 0; j <= width; j++) {
+                    if (visited[j]) {
+                        rowPotential[matchedRow[j]] += delta;
+                        columnPotential[j] -= delta;
+                    } else {
+                        minSlack[j] -= delta;
+                    }
+                }
+                column = next;
+            } while (matchedRow[column] != 0);
+            do {
+                int before = previous[column];
+                matchedRow[column] = matchedRow[before];
+                column = before;
+            } while (column != 0);
+        }
+        int[] assignment = new int[rows];
+        for (int j = 1; j <= width; j++) {
+            if (matchedRow[j] != 0) {
+                assignment[matchedRow[j] - 1] = j - 1;
+            }
+        }
+        return assignment;
+    }
+
+    private static double[][] transpose(double[][] cost) {
+        double[][] transposed = new double[cost[0].length][cost.length];
+        for (int row = 0; row < cost.length; row++) {
+            for (int column = 0; column < cost[row].length; column++) {
+                transposed[column][row] = cost[row][column];
+            }
+        }
+        return transposed;
+    }
+}
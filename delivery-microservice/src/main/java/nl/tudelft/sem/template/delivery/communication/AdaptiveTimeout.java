@@ -0,0 +1,85 @@
+package nl.tudelft.sem.template.delivery.communication;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Timeout of the calls to one microservice that follows how long its calls took recently: a multiple of the 99th
+ * percentile of the latest latencies, but never below a minimum. Until enough calls were seen, there is none.
+ */
+public class AdaptiveTimeout {
+
+    private static final int WINDOW = 512;
+
+    private static final int MIN_SAMPLES = 32;
+
+    private static final int RECALCULATE_EVERY = 16;
+
+    private final transient long[] latencies = new long[WINDOW];
+
+    private final transient long minNanos;
+
+    private final transient double p99Factor;
+
+    private transient int count;
+
+    private transient int next;
+
+    private transient int sinceRecalculated;
+
+    private transient long p99Nanos = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param min       shortest timeout
+     * @param p99Factor multiple of the 99th percentile latency the timeout is set to
+     */
+    public AdaptiveTimeout(Duration min, double p99Factor) {
+        if (min.isNegative() || p99Factor < 1) {
+            throw new IllegalArgumentException("Timeout must not be negative, nor below the 99th percentile latency");
+        }
+        this.minNanos = min.toNanos();
+        this.p99Factor = p99Factor;
+    }
+
+    /**
+     * Records how long a call took. A call that timed out counts as taking the timeout.
+     *
+     * @param latency time from sending the call to its answer
+     */
+    public synchronized void record(Duration latency) {
+        latencies[next] = latency.toNanos();
+        next = (next + 1) % WINDOW;
+        count = Math.min(count + 1, WINDOW);
+        if (count >= MIN_SAMPLES && (++sinceRecalculated >= RECALCULATE_EVERY || p99Nanos < 0)) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            p99Nanos = sorted[(int) Math.ceil(count * 0.99) - 1];
+            sinceRecalculated = 0;
+        }
+    }
+
+    /**
+     * Current timeout, at most a given maximum.
+     *
+     * @param max longest timeout
+     * @return the timeout, the maximum while too few calls were seen
+     */
+    public synchronized Duration current(Duration max) {
+        if (p99Nanos < 0) {
+            return max;
+        }
+        long timeoutNanos = Math.max(minNanos, (long) (p99Nanos * p99Factor));
+        return timeoutNanos < max.toNanos() ? Duration.ofNanos(timeoutNanos) : max;
+    }
+
+    /**
+     * The 99th percentile of the latest latencies.
+     *
+     * @return the latency, null while too few calls were seen
+     */
+    public synchronized Duration p99() {
+        return p99Nanos < 0 ? null : Duration.ofNanos(p99Nanos);
+    }
+}
@@ -0,0 +1,93 @@
+package nl.tudelft.sem.template.delivery.communication;
+
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+
+/**
+ * Time by which the HTTP request being handled has to be answered. It is set when the request reaches its
+ * controller, and every call to another microservice made for the request has to finish before it.
+ */
+public final class RequestDeadline {
+
+    private static final String ATTRIBUTE = RequestDeadline.class.getName();
+
+    private static final RequestDeadline NONE = new RequestDeadline(Long.MAX_VALUE);
+
+    private final transient long deadlineNanos;
+
+    private RequestDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Starts the deadline of the HTTP request being handled.
+     *
+     * @param attributes attributes of the request
+     * @param budget     time the request has to be answered in
+     */
+    public static void start(RequestAttributes attributes, Duration budget) {
+        attributes.setAttribute(ATTRIBUTE, new RequestDeadline(System.nanoTime() + budget.toNanos()),
+            RequestAttributes.SCOPE_REQUEST);
+    }
+
+    /**
+     * Deadline of the HTTP request handled by the calling thread.
+     *
+     * @return the deadline, one that never passes when not called while handling a request
+     */
+    public static RequestDeadline current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object deadline = attributes == null ? null : attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        return deadline == null ? NONE : (RequestDeadline) deadline;
+    }
+
+    /**
+     * Deadline that never passes, for calls not made for an HTTP request.
+     *
+     * @return the deadline
+     */
+    public static RequestDeadline none() {
+        return NONE;
+    }
+
+    /**
+     * Deadline a given time from now.
+     *
+     * @param budget time until the deadline
+     * @return the deadline
+     */
+    public static RequestDeadline in(Duration budget) {
+        return new RequestDeadline(System.nanoTime() + budget.toNanos());
+    }
+
+    /**
+     * Whether the deadline has passed.
+     *
+     * @return true once there is no time left
+     */
+    public boolean isExpired() {
+        return deadlineNanos != Long.MAX_VALUE && deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Time left until the deadline.
+     *
+     * @return nanoseconds left, {@link Long#MAX_VALUE} for a deadline that never passes
+     */
+    public long remainingNanos() {
+        return deadlineNanos == Long.MAX_VALUE ? Long.MAX_VALUE : Math.max(0, deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * Shortens a timeout to the time left.
+     *
+     * @param timeout timeout of a call
+     * @return the timeout, or the time left when that is shorter
+     */
+    public Duration cap(Duration timeout) {
+        long remainingNanos = remainingNanos();
+        return remainingNanos < timeout.toNanos() ? Duration.ofNanos(remainingNanos) : timeout;
+    }
+}
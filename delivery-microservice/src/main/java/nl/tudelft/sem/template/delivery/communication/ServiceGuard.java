@@ -0,0 +1,76 @@
+package nl.tudelft.sem.template.delivery.communication;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+/**
+ * Circuit breaker, bulkhead and timeout of the calls to one microservice.
+ * A call is rejected right away, instead of tying up a thread, when too many calls to the service are in flight,
+ * or when too many of the recent calls failed or were slow. While rejecting, a few calls are let through now and
+ * then to probe whether the service is back. The timeout follows the latency of the recent calls.
+ */
+public class ServiceGuard {
+
+    private final transient CircuitBreaker circuitBreaker;
+
+    private final transient Bulkhead bulkhead;
+
+    private final transient AdaptiveTimeout timeout;
+
+    /**
+     * Constructor.
+     *
+     * @param circuitBreaker breaker that rejects calls while the service fails or is slow
+     * @param bulkhead       limit on the calls in flight
+     * @param timeout        timeout that follows the latency of the calls
+     */
+    public ServiceGuard(CircuitBreaker circuitBreaker, Bulkhead bulkhead, AdaptiveTimeout timeout) {
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+        this.timeout = timeout;
+    }
+
+    /**
+     * Makes a call that blocks until it is answered.
+     *
+     * @param call the call
+     * @param <T>  type of the answer
+     * @return the answer
+     * @throws io.github.resilience4j.circuitbreaker.CallNotPermittedException when the breaker is open
+     * @throws io.github.resilience4j.bulkhead.BulkheadFullException           when too many calls are in flight
+     */
+    public <T> T call(Supplier<T> call) {
+        return CircuitBreaker.decorateSupplier(circuitBreaker, Bulkhead.decorateSupplier(bulkhead, call)).get();
+    }
+
+    /**
+     * Makes a call that is answered asynchronously. It counts as in flight until it completes.
+     *
+     * @param call the call
+     * @param <T>  type of the answer
+     * @return the answer, or completes exceptionally with a
+     *         {@link io.github.resilience4j.circuitbreaker.CallNotPermittedException} or
+     *         {@link io.github.resilience4j.bulkhead.BulkheadFullException} when the call is rejected
+     */
+    public <T> CompletableFuture<T> callAsync(Supplier<CompletionStage<T>> call) {
+        return CircuitBreaker.decorateCompletionStage(circuitBreaker, Bulkhead.decorateCompletionStage(bulkhead, call))
+            .get()
+            .toCompletableFuture();
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    public AdaptiveTimeout getTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,164 @@
+package nl.tudelft.sem.template.delivery.communication;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The {@link ServiceGuard}s of the Users and Orders microservices, configured alike.
+ * Exposes the state, calls and rejected calls of the breakers ({@code resilience4j.circuitbreaker.*}), the calls in
+ * flight and rejected calls of the bulkheads ({@code resilience4j.bulkhead.*}), the 99th percentile latency the
+ * timeouts follow ({@code delivery.http.latency.p99}), and logs every change of state.
+ */
+@Component
+public class ServiceGuards implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceGuards.class);
+
+    private final transient CircuitBreakerRegistry circuitBreakers;
+
+    private final transient BulkheadRegistry bulkheads;
+
+    private final transient ServiceGuard users;
+
+    private final transient ServiceGuard orders;
+
+    private final transient AtomicLong usersRejected = new AtomicLong();
+
+    private final transient AtomicLong ordersRejected = new AtomicLong();
+
+    private final transient AtomicLong usersTransitions = new AtomicLong();
+
+    private final transient AtomicLong ordersTransitions = new AtomicLong();
+
+    /**
+     * Constructor with the default thresholds.
+     */
+    public ServiceGuards() {
+        this(50, 50, 2000, 20, 10, 10_000, 3, 32, 100, 2);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param failureRateThreshold  percentage of failed recent calls that opens a breaker
+     * @param slowCallRateThreshold percentage of slow recent calls that opens a breaker
+     * @param slowCallMillis        milliseconds after which a call counts as slow
+     * @param slidingWindowSize     number of recent calls the percentages are taken over
+     * @param minimumCalls          calls a breaker needs to have seen before it may open
+     * @param openMillis            milliseconds an open breaker rejects all calls before probing the service
+     * @param halfOpenCalls         calls let through to probe the service
+     * @param maxConcurrentCalls    most calls to one service in flight at once
+     * @param minTimeoutMillis      shortest timeout of a call in milliseconds
+     * @param timeoutP99Factor      multiple of the 99th percentile latency of recent calls the timeout is set to
+     */
+    @Autowired
+    public ServiceGuards(@Value("${delivery.resilience.failure-rate-threshold:50}") float failureRateThreshold,
+                         @Value("${delivery.resilience.slow-call-rate-threshold:50}") float slowCallRateThreshold,
+                         @Value("${delivery.resilience.slow-call-ms:2000}") long slowCallMillis,
+                         @Value("${delivery.resilience.sliding-window-size:20}") int slidingWindowSize,
+                         @Value("${delivery.resilience.minimum-calls:10}") int minimumCalls,
+                         @Value("${delivery.resilience.open-ms:10000}") long openMillis,
+                         @Value("${delivery.resilience.half-open-calls:3}") int halfOpenCalls,
+                         @Value("${delivery.resilience.max-concurrent-calls:32}") int maxConcurrentCalls,
+                         @Value("${delivery.http.min-timeout-ms:100}") long minTimeoutMillis,
+                         @Value("${delivery.http.timeout-p99-factor:2}") double timeoutP99Factor) {
+        this.circuitBreakers = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+            .failureRateThreshold(failureRateThreshold)
+            .slowCallRateThreshold(slowCallRateThreshold)
+            .slowCallDurationThreshold(Duration.ofMillis(slowCallMillis))
+            .slidingWindowSize(slidingWindowSize)
+            .minimumNumberOfCalls(minimumCalls)
+            .waitDurationInOpenState(Duration.ofMillis(openMillis))
+            .automaticTransitionFromOpenToHalfOpenEnabled(true)
+            .permittedNumberOfCallsInHalfOpenState(halfOpenCalls)
+            // A full bulkhead, or a call not made because the request ran out of time, says nothing about the
+            // health of the service
+            .ignoreException(e -> e instanceof BulkheadFullException || e instanceof ResponseStatusException
+                && ((ResponseStatusException) e).getStatus() == HttpStatus.GATEWAY_TIMEOUT)
+            .build());
+        this.bulkheads = BulkheadRegistry.of(BulkheadConfig.custom()
+            .maxConcurrentCalls(maxConcurrentCalls)
+            .maxWaitDuration(Duration.ZERO)
+            .build());
+        this.users = guard("users", usersRejected, usersTransitions,
+            new AdaptiveTimeout(Duration.ofMillis(minTimeoutMillis), timeoutP99Factor));
+        this.orders = guard("orders", ordersRejected, ordersTransitions,
+            new AdaptiveTimeout(Duration.ofMillis(minTimeoutMillis), timeoutP99Factor));
+    }
+
+    private ServiceGuard guard(String service, AtomicLong rejected, AtomicLong transitions, AdaptiveTimeout timeout) {
+        CircuitBreaker circuitBreaker = circuitBreakers.circuitBreaker(service);
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            transitions.incrementAndGet();
+            logger.warn("Circuit breaker of the {} service went from {} to {}", service,
+                event.getStateTransition().getFromState(), event.getStateTransition().getToState());
+        });
+        Bulkhead bulkhead = bulkheads.bulkhead(service);
+        bulkhead.getEventPublisher().onCallRejected(event -> rejected.incrementAndGet());
+        return new ServiceGuard(circuitBreaker, bulkhead, timeout);
+    }
+
+    /**
+     * Guard of the Users microservice.
+     *
+     * @return the guard
+     */
+    public ServiceGuard users() {
+        return users;
+    }
+
+    /**
+     * Guard of the Orders microservice.
+     *
+     * @return the guard
+     */
+    public ServiceGuard orders() {
+        return orders;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakers).bindTo(registry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheads).bindTo(registry);
+        bindCounters(registry, "users", usersRejected, usersTransitions, users.getTimeout());
+        bindCounters(registry, "orders", ordersRejected, ordersTransitions, orders.getTimeout());
+    }
+
+    private static void bindCounters(MeterRegistry registry, String service, AtomicLong rejected,
+                                     AtomicLong transitions, AdaptiveTimeout timeout) {
+        FunctionCounter.builder("resilience4j.bulkhead.rejected.calls", rejected, AtomicLong::get)
+            .tag("name", service)
+            .description("Calls rejected because too many calls were in flight")
+            .register(registry);
+        FunctionCounter.builder("resilience4j.circuitbreaker.state.transitions", transitions, AtomicLong::get)
+            .tag("name", service)
+            .description("Changes of state of the circuit breaker")
+            .register(registry);
+        Gauge.builder("delivery.http.latency.p99", timeout, t -> t.p99() == null ? Double.NaN : t.p99().toMillis())
+            .tag("name", service)
+            .baseUnit("milliseconds")
+            .description("99th percentile latency of the recent calls, the timeout of a call is a multiple of it")
+            .register(registry);
+    }
+}
@@ -2,70 +2,261 @@ package nl.tudelft.sem.template.delivery.communication;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import jdk.swing.interop.SwingInterOpUtils;
-import lombok.NoArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import static org.springframework.http.MediaType.APPLICATION_JSON;
-import java.util.UUID;
 
+/**
+ * Talks to the Users and Orders microservices. All calls share one long-lived {@link HttpClient},
+ * which keeps connections open between calls and uses HTTP/2 where the other side supports it.
+ * Concurrent lookups of the account type of the same user share a single request.
+ * Calls to either service go through its {@link ServiceGuard}, so that they fail fast while it is down or overloaded.
+ * A call times out after a multiple of the recent latency of its service, at most the request timeout, and
+ * never after the {@link RequestDeadline} of the HTTP request it is made for. Once that deadline has passed,
+ * calls are not sent at all. A shared lookup is sent without a deadline, each caller waits for it only as long as
+ * its own deadline allows.
+ */
+@Component
+public class UsersCommunication {
+    private static final Logger logger = LoggerFactory.getLogger(UsersCommunication.class);
 
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+    private static final ObjectMapper mapperReceive = new ObjectMapper();
 
-import static org.springframework.http.MediaType.APPLICATION_JSON;
+    private static final String NON_EXISTENT = "non-existent";
 
-import java.util.Locale;
-import java.util.UUID;
+    private static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 16;
 
-import org.springframework.web.server.ResponseStatusException;
+    private static final String TIMEOUT_HEADER = "Request-Timeout-Ms";
 
-@Component
-@NoArgsConstructor
-public class UsersCommunication {
-    private static final ObjectMapper mapperReceive = new ObjectMapper();
+    private final transient HttpClient httpClient;
+
+    private final transient String usersUrl;
+
+    private final transient String ordersUrl;
+
+    private final transient Duration requestTimeout;
+
+    private final transient String batchUrl;
+
+    private final transient int maxConcurrentRequests;
+
+    private final transient ServiceGuard users;
+
+    private final transient ServiceGuard orders;
+
+    private final transient Map<String, CompletableFuture<String>> accountTypeLookups = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor without a batch endpoint for account types.
+     *
+     * @param usersUrl         base URL of the Users microservice
+     * @param ordersUrl        base URL of the Orders microservice
+     * @param connectTimeoutMs milliseconds to wait for a connection to be set up
+     * @param requestTimeoutMs milliseconds to wait for the response to a request
+     */
+    public UsersCommunication(String usersUrl, String ordersUrl, long connectTimeoutMs, long requestTimeoutMs) {
+        this(usersUrl, ordersUrl, connectTimeoutMs, requestTimeoutMs, "", DEFAULT_MAX_CONCURRENT_REQUESTS,
+            new ServiceGuards());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param usersUrl              base URL of the Users microservice
+     * @param ordersUrl             base URL of the Orders microservice
+     * @param connectTimeoutMs      milliseconds to wait for a connection to be set up
+     * @param requestTimeoutMs      milliseconds to wait for the response to a request
+     * @param batchPath             path of the endpoint of the Users microservice that returns the account types of
+     *                              several users at once, empty when there is none
+     * @param maxConcurrentRequests most account type lookups in flight at once when there is no batch endpoint
+     * @param guards                circuit breakers and bulkheads of the Users and Orders microservices
+     */
+    @Autowired
+    public UsersCommunication(@Value("${delivery.users.url:http://localhost:8082}") String usersUrl,
+                              @Value("${delivery.orders.url:http://localhost:8080}") String ordersUrl,
+                              @Value("${delivery.http.connect-timeout-ms:2000}") long connectTimeoutMs,
+                              @Value("${delivery.http.request-timeout-ms:5000}") long requestTimeoutMs,
+                              @Value("${delivery.users.batch-path:}") String batchPath,
+                              @Value("${delivery.http.max-concurrent-requests:16}") int maxConcurrentRequests,
+                              ServiceGuards guards) {
+        this(HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .build(), usersUrl, ordersUrl, Duration.ofMillis(requestTimeoutMs), batchPath, maxConcurrentRequests,
+            guards);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param httpClient            client all requests are sent with
+     * @param usersUrl              base URL of the Users microservice
+     * @param ordersUrl             base URL of the Orders microservice
+     * @param requestTimeout        time to wait for the response to a request
+     * @param batchPath             path of the endpoint of the Users microservice that returns the account types of
+     *                              several users at once, empty when there is none
+     * @param maxConcurrentRequests most account type lookups in flight at once when there is no batch endpoint
+     * @param guards                circuit breakers and bulkheads of the Users and Orders microservices
+     */
+    public UsersCommunication(HttpClient httpClient, String usersUrl, String ordersUrl, Duration requestTimeout,
+                              String batchPath, int maxConcurrentRequests, ServiceGuards guards) {
+        if (maxConcurrentRequests < 1) {
+            throw new IllegalArgumentException("At least one request must be allowed in flight");
+        }
+        this.httpClient = httpClient;
+        this.usersUrl = usersUrl;
+        this.ordersUrl = ordersUrl;
+        this.requestTimeout = requestTimeout;
+        this.batchUrl = batchPath == null || batchPath.isBlank() ? null : usersUrl + batchPath;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.users = guards.users();
+        this.orders = guards.orders();
+    }
 
     /**
      * Gets the account type of user.
      *
      * @param userId ID of user
-     * @return type of the user
+     * @return type of the user, "non-existent" if the Users microservice does not know the user
+     * @throws ResponseStatusException when the Users microservice cannot be reached or fails
      */
     public String getAccountType(String userId) {
+        RequestDeadline deadline = RequestDeadline.current();
+        try {
+            CompletableFuture<String> type = getAccountTypeAsync(userId);
+            if (deadline == RequestDeadline.none()) {
+                return type.get();
+            }
+            return type.get(deadline.remainingNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw usersUnavailable();
+        } catch (TimeoutException e) {
+            // Another caller's lookup of the same user may take longer than this request has left
+            throw deadlineExceeded();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ResponseStatusException) {
+                throw (ResponseStatusException) e.getCause();
+            }
+            throw usersUnavailable();
+        }
+    }
 
-        // Users belong to port 8082, Orders to 8080, we are at 8081
-        String SERVER = "http://localhost:8082";
-        URI uri = URI.create(SERVER + "/account/type?email=" + userId);
-        HttpClient httpClient = HttpClient.newHttpClient();
-
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(uri)
-                .header("Content-Type", APPLICATION_JSON.toString())
-                .GET()
-                .build();
+    /**
+     * Gets the account type of user without blocking the calling thread.
+     *
+     * @param userId ID of user
+     * @return type of the user, once the Users microservice answered, or completes exceptionally with a
+     *         {@link ResponseStatusException} when it cannot be reached or fails
+     */
+    public CompletableFuture<String> getAccountTypeAsync(String userId) {
+        if (userId == null) {
+            return CompletableFuture.completedFuture(NON_EXISTENT);
+        }
+        if (RequestDeadline.current().isExpired()) {
+            return CompletableFuture.failedFuture(deadlineExceeded());
+        }
+        CompletableFuture<String> lookup = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = accountTypeLookups.putIfAbsent(userId, lookup);
+        if (inFlight != null) {
+            // Copied, so that a caller cancelling its lookup does not cancel the others
+            return inFlight.copy();
+        }
+        // Shared by callers with different deadlines, so it is sent without one and every caller only waits for it
+        // as long as its own deadline allows. A failure to send surfaces through the future, the callers that joined
+        // meanwhile must hear about it too
+        users.callAsync(() -> sendAsync(users, accountTypeRequest(userId), RequestDeadline.none())
+            .thenApply(UsersCommunication::readAccountType)
+        ).handle((type, e) -> {
+            if (e != null) {
+                logger.warn("Could not look up the account type of user {}: {}", userId, unwrap(e).toString());
+                throw new CompletionException(usersUnavailable());
+            }
+            return type;
+        }).whenComplete((type, e) -> {
+            // Lookups from now on ask again
+            accountTypeLookups.remove(userId, lookup);
+            if (e == null) {
+                lookup.complete(type);
+            } else {
+                lookup.completeExceptionally(e instanceof CompletionException ? e.getCause() : e);
+            }
+        });
+        return lookup.copy();
+    }
 
+    /**
+     * Gets the account types of several users at once. With a batch endpoint configured this is a single call,
+     * otherwise the users are looked up concurrently, with at most the configured number of lookups in flight.
+     *
+     * @param userIds IDs of the users
+     * @return type of every user, "non-existent" for the users the Users microservice does not know
+     * @throws ResponseStatusException when the Users microservice cannot be reached or fails
+     */
+    public Map<String, String> getAccountTypes(Collection<String> userIds) {
+        Set<String> distinctIds = new LinkedHashSet<>(userIds);
+        if (distinctIds.isEmpty()) {
+            return new LinkedHashMap<>();
+        }
+        if (batchUrl != null) {
+            return getAccountTypesInBatch(distinctIds);
+        }
+        RequestDeadline deadline = RequestDeadline.current();
+        Semaphore inFlight = new Semaphore(maxConcurrentRequests);
+        Map<String, CompletableFuture<String>> lookups = new LinkedHashMap<>();
         try {
-            HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() == HttpStatus.OK.value()) {
-                JsonNode jsonNode = mapperReceive.readTree(response.body());
-                return jsonNode.get("type").asText();
+            for (String userId : distinctIds) {
+                // No more lookups once the request is out of time
+                if (!inFlight.tryAcquire(deadline.remainingNanos(), TimeUnit.NANOSECONDS) || deadline.isExpired()) {
+                    throw deadlineExceeded();
+                }
+                lookups.put(userId, getAccountTypeAsync(userId).whenComplete((type, e) -> inFlight.release()));
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            Map<String, String> types = new LinkedHashMap<>();
+            for (Map.Entry<String, CompletableFuture<String>> lookup : lookups.entrySet()) {
+                types.put(lookup.getKey(), lookup.getValue().get(deadline.remainingNanos(), TimeUnit.NANOSECONDS));
+            }
+            return types;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw usersUnavailable();
+        } catch (TimeoutException e) {
+            throw deadlineExceeded();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof ResponseStatusException ? (ResponseStatusException) e.getCause()
+                : usersUnavailable();
         }
-        return "non-existent";
     }
 
-
     /**
      * Updates the order status in the Order people's service.
      *
@@ -73,33 +264,206 @@ public class UsersCommunication {
      * @param orderStatus status of order
      */
     public void updateOrderStatus(UUID orderId, String orderStatus) {
+        RequestDeadline deadline = RequestDeadline.current();
+        try {
+            orders.call(() -> {
+                try {
+                    checkOrderStatusUpdated(send(orders, orderStatusRequest(orderId, orderStatus, deadline), deadline));
+                    return null;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw updateFailed();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            logger.warn("Could not update the status of order {} to {}: {}", orderId, orderStatus, e.toString());
+            throw deadline.isExpired() ? deadlineExceeded() : updateFailed();
+        }
+    }
 
-        orderStatus = orderStatus.toLowerCase(Locale.ROOT);
-        // Users belong to port 8082, Orders to 8080, we are at 8081
-        String SERVER = "http://localhost:8080";
-        URI uri = URI.create(SERVER + "/internal/order/" + orderId + "/status?orderStatus=" + orderStatus);
-        HttpClient httpClient = HttpClient.newHttpClient();
+    /**
+     * Updates the order status in the Order people's service without blocking the calling thread.
+     *
+     * @param orderId ID of order
+     * @param orderStatus status of order
+     * @return completes once the status is updated, or exceptionally with a {@link ResponseStatusException}
+     */
+    public CompletableFuture<Void> updateOrderStatusAsync(UUID orderId, String orderStatus) {
+        RequestDeadline deadline = RequestDeadline.current();
+        return orders.<Void>callAsync(() -> sendAsync(orders, orderStatusRequest(orderId, orderStatus, deadline), deadline)
+            .thenApply(response -> {
+                checkOrderStatusUpdated(response);
+                return null;
+            })
+        ).handle((updated, e) -> {
+            if (e != null) {
+                logger.warn("Could not update the status of order {} to {}: {}", orderId, orderStatus,
+                    unwrap(e).toString());
+                throw new CompletionException(deadline.isExpired() ? deadlineExceeded() : updateFailed());
+            }
+            return null;
+        });
+    }
 
-        HttpRequest request = HttpRequest.newBuilder()
-                .uri(uri)
-                .header("Content-Type", "application/json")  // Update content type if needed
-                .PUT(HttpRequest.BodyPublishers.noBody())
+    private HttpRequest accountTypeRequest(String userId) {
+        // Users belong to port 8082, Orders to 8080, we are at 8081
+        return request(users, usersUrl + "/account/type?email=" + userId, RequestDeadline.none())
+                .GET()
                 .build();
+    }
 
+    /**
+     * Request with the timeout of the next call to a service, which is also passed on so the service can give up
+     * when the answer would come too late.
+     *
+     * @throws ResponseStatusException when the deadline has passed, so that nothing is sent
+     */
+    private HttpRequest.Builder request(ServiceGuard guard, String url, RequestDeadline deadline) {
+        Duration timeout = deadline.cap(guard.getTimeout().current(requestTimeout));
+        if (timeout.isZero()) {
+            throw deadlineExceeded();
+        }
+        return HttpRequest.newBuilder()
+                .uri(URI.create(url))
+                .timeout(timeout)
+                .header("Content-Type", APPLICATION_JSON.toString())
+                .header(TIMEOUT_HEADER, Long.toString(Math.max(1, timeout.toMillis())));
+    }
+
+    /**
+     * Sends a request. A timeout cut short by the deadline is thrown as the 504 the circuit breaker ignores, as it
+     * says nothing about the service.
+     */
+    private HttpResponse<String> send(ServiceGuard guard, HttpRequest request, RequestDeadline deadline)
+            throws IOException, InterruptedException {
+        long start = System.nanoTime();
         try {
-            HttpResponse<String> response =
-                    httpClient.send(request, HttpResponse.BodyHandlers.ofString());
-            if (response.statusCode() != HttpStatus.OK.value()) {
-                System.out.println(response.statusCode());
-                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Failed to update the other service");
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            recordLatency(guard, start, null, deadline);
+            return response;
+        } catch (IOException e) {
+            recordLatency(guard, start, e, deadline);
+            if (e instanceof HttpTimeoutException && deadline.isExpired()) {
+                throw deadlineExceeded();
+            }
+            throw e;
+        }
+    }
+
+    private CompletableFuture<HttpResponse<String>> sendAsync(ServiceGuard guard, HttpRequest request,
+                                                              RequestDeadline deadline) {
+        long start = System.nanoTime();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, e) -> {
+                    recordLatency(guard, start, e, deadline);
+                    if (e == null) {
+                        return response;
+                    }
+                    Throwable cause = unwrap(e);
+                    throw new CompletionException(cause instanceof HttpTimeoutException && deadline.isExpired()
+                        ? deadlineExceeded() : cause);
+                });
+    }
+
+    /**
+     * Feeds the latency of a call to the adaptive timeout of its service. A call that timed out counts as taking
+     * the timeout, unless the timeout was cut short by the deadline, which says nothing about the service.
+     */
+    private static void recordLatency(ServiceGuard guard, long startNanos, Throwable failure, RequestDeadline deadline) {
+        Throwable cause = unwrap(failure);
+        if (cause == null || cause instanceof HttpTimeoutException && !deadline.isExpired()) {
+            guard.getTimeout().record(Duration.ofNanos(System.nanoTime() - startNanos));
+        }
+    }
 
+    private Map<String, String> getAccountTypesInBatch(Set<String> userIds) {
+        RequestDeadline deadline = RequestDeadline.current();
+        HttpResponse<String> response;
+        try {
+            response = users.call(() -> {
+                try {
+                    HttpResponse<String> sent = send(users, request(users, batchUrl, deadline)
+                            .POST(HttpRequest.BodyPublishers.ofString(mapperReceive.writeValueAsString(userIds)))
+                            .build(), deadline);
+                    if (sent.statusCode() != HttpStatus.OK.value()) {
+                        throw usersUnavailable();
+                    }
+                    return sent;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw usersUnavailable();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (ResponseStatusException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            logger.warn("Could not look up the account types of users {}: {}", userIds, e.toString());
+            throw deadline.isExpired() ? deadlineExceeded() : usersUnavailable();
+        }
+        try {
+            // A JSON object with the type of every user the Users microservice knows
+            JsonNode jsonNode = mapperReceive.readTree(response.body());
+            Map<String, String> types = new LinkedHashMap<>();
+            for (String userId : userIds) {
+                JsonNode type = jsonNode.get(userId);
+                types.put(userId, type == null || !type.isTextual() ? NON_EXISTENT : type.asText());
             }
+            return types;
+        } catch (IOException e) {
+            logger.warn("Unreadable account types of users {}", userIds, e);
+            throw usersUnavailable();
+        }
+    }
 
+    private HttpRequest orderStatusRequest(UUID orderId, String orderStatus, RequestDeadline deadline) {
+        String status = orderStatus.toLowerCase(Locale.ROOT);
+        return request(orders, ordersUrl + "/internal/order/" + orderId + "/status?orderStatus=" + status, deadline)
+                .PUT(HttpRequest.BodyPublishers.noBody())
+                .build();
+    }
 
+    private static String readAccountType(HttpResponse<String> response) {
+        if (response.statusCode() >= HttpStatus.INTERNAL_SERVER_ERROR.value()) {
+            throw usersUnavailable();
+        }
+        if (response.statusCode() != HttpStatus.OK.value()) {
+            return NON_EXISTENT;
+        }
+        try {
+            JsonNode jsonNode = mapperReceive.readTree(response.body());
+            return jsonNode.get("type").asText();
         } catch (Exception e) {
-            System.out.println(e);
-            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Failed to update the other service");
+            logger.warn("Unreadable account type from {}", response.uri(), e);
+            return NON_EXISTENT;
+        }
+    }
+
+    private static void checkOrderStatusUpdated(HttpResponse<String> response) {
+        if (response.statusCode() != HttpStatus.OK.value()) {
+            logger.debug("Orders service answered {} to {}", response.statusCode(), response.uri());
+            throw updateFailed();
         }
     }
 
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static ResponseStatusException usersUnavailable() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Could not reach the users service");
+    }
+
+    private static ResponseStatusException updateFailed() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Failed to update the other service");
+    }
+
+    private static ResponseStatusException deadlineExceeded() {
+        return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "Ran out of time to answer the request");
+    }
 }
@@ -1,5 +1,6 @@
 package nl.tudelft.sem.template.delivery.config;
 
+import com.zaxxer.hikari.HikariDataSource;
 import javax.sql.DataSource;
 import lombok.Getter;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
@@ -8,7 +9,6 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
 
@@ -19,7 +19,7 @@ import org.springframework.transaction.annotation.EnableTransactionManagement;
 @Configuration
 @EnableJpaRepositories("nl.tudelft.sem.template.delivery.domain")
 @PropertySource("classpath:application-dev.properties")
-@EntityScan(basePackages = "nl.tudelft.sem.template.model")
+@EntityScan(basePackages = {"nl.tudelft.sem.template.model", "nl.tudelft.sem.template.delivery.domain"})
 @EnableTransactionManagement
 public class H2Config {
 
@@ -31,17 +31,25 @@ public class H2Config {
     }
 
     /**
-     * Set up the connection to the database.
+     * Set up the pool of connections to the database. Actuator publishes its active, idle and pending connections
+     * and the time taken to get a connection from it as hikaricp.connections.* metrics.
      *
      * @return The data source.
      */
     @Bean
     public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("delivery");
         dataSource.setDriverClassName(environment.getProperty("jdbc.driverClassName"));
-        dataSource.setUrl(environment.getProperty("jdbc.url"));
+        dataSource.setJdbcUrl(environment.getProperty("jdbc.url"));
         dataSource.setUsername(environment.getProperty("jdbc.user"));
         dataSource.setPassword(environment.getProperty("jdbc.pass"));
+        dataSource.setMaximumPoolSize(environment.getProperty("jdbc.pool.max-size", Integer.class, 10));
+        dataSource.setMinimumIdle(environment.getProperty("jdbc.pool.min-idle", Integer.class, 10));
+        dataSource.setIdleTimeout(environment.getProperty("jdbc.pool.idle-timeout-ms", Long.class, 600_000L));
+        dataSource.setMaxLifetime(environment.getProperty("jdbc.pool.max-lifetime-ms", Long.class, 1_800_000L));
+        dataSource.setConnectionTimeout(environment.getProperty("jdbc.pool.connection-timeout-ms", Long.class,
+            30_000L));
 
         return dataSource;
     }
@@ -0,0 +1,45 @@
+package nl.tudelft.sem.template.delivery.config;
+
+import nl.tudelft.sem.template.delivery.communication.RequestDeadline;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.time.Duration;
+
+/**
+ * Starts the {@link RequestDeadline} of every request as it reaches its controller.
+ */
+@Configuration
+public class RequestDeadlineConfig implements WebMvcConfigurer {
+
+    private final transient Duration budget;
+
+    /**
+     * Constructor.
+     *
+     * @param budgetMs milliseconds a request has to be answered in, calls to other microservices included
+     */
+    public RequestDeadlineConfig(@Value("${delivery.http.request-budget-ms:4000}") long budgetMs) {
+        if (budgetMs <= 0) {
+            throw new IllegalArgumentException("Request budget must be positive");
+        }
+        this.budget = Duration.ofMillis(budgetMs);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                RequestDeadline.start(RequestContextHolder.currentRequestAttributes(), budget);
+                return true;
+            }
+        });
+    }
+}
@@ -4,23 +4,38 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
 import nl.tudelft.sem.template.api.CouriersApi;
 import nl.tudelft.sem.template.delivery.AvailableDeliveryProxy;
+import nl.tudelft.sem.template.delivery.GPS;
 import nl.tudelft.sem.template.delivery.services.CouriersService;
-import nl.tudelft.sem.template.delivery.services.DeliveryService;
+import nl.tudelft.sem.template.delivery.services.DispatchService;
 import nl.tudelft.sem.template.delivery.services.UpdateService;
 import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService;
+import nl.tudelft.sem.template.model.CourierAssignment;
+import nl.tudelft.sem.template.model.CourierPosition;
 import nl.tudelft.sem.template.model.Delivery;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import static nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType.ADMIN;
 import static nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType.COURIER;
 import static nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType.INVALID;
 
@@ -28,30 +43,38 @@ import static nl.tudelft.sem.template.delivery.services.UsersAuthenticationServi
 public class CouriersController implements CouriersApi {
 
     private final transient UsersAuthenticationService usersCommunication;
-    private final transient DeliveryService deliveryService;
     private final transient CouriersService couriersService;
     private final transient AvailableDeliveryProxy availableDeliveryProxy;
     private final transient UpdateService updateService;
+    private final transient GPS gps;
+    private final transient DispatchService dispatchService;
+    private final transient int maxWaitSeconds;
 
     /**
      * Constructor.
      *
-     * @param deliveryService        the delivery service
      * @param usersCommunication     mock for users authorization
      * @param couriersService        the service for assigning orders to couriers
      * @param availableDeliveryProxy the proxy that creates a cache for deliveries without courier
      * @param updateService          service of all updates
+     * @param gps                    locates the courier asking for an order
+     * @param dispatchService        the service for assigning orders to groups of couriers
+     * @param maxWaitSeconds         longest a courier may wait for the next order
      */
-    public CouriersController(DeliveryService deliveryService,
-                              UsersAuthenticationService usersCommunication,
+    public CouriersController(UsersAuthenticationService usersCommunication,
                               CouriersService couriersService,
                               AvailableDeliveryProxy availableDeliveryProxy,
-                              UpdateService updateService) {
-        this.deliveryService = deliveryService;
+                              UpdateService updateService,
+                              GPS gps,
+                              DispatchService dispatchService,
+                              @Value("${delivery.next-order.max-wait-seconds:30}") int maxWaitSeconds) {
         this.couriersService = couriersService;
         this.usersCommunication = usersCommunication;
         this.availableDeliveryProxy = availableDeliveryProxy;
         this.updateService = updateService;
+        this.gps = gps;
+        this.dispatchService = dispatchService;
+        this.maxWaitSeconds = maxWaitSeconds;
     }
 
     /**
@@ -80,26 +103,222 @@ public class CouriersController implements CouriersApi {
     }
 
     /**
-     * Assign the order next in the queue to the courier.
+     * Assign the order next in the queue to the courier, preferring orders from restaurants close to the courier.
+     * A courier employed by a restaurant gets the next order of that restaurant.
      *
      * @param courierId The id of a courier we want to assign the next order to (required)
+     * @param latitude  latitude of the courier, located through GPS if not given (optional)
+     * @param longitude longitude of the courier, located through GPS if not given (optional)
      * @return Response Entity containing the Delivery that the courier was assigned to
      */
     @Override
     public ResponseEntity<Delivery> couriersCourierIdNextOrderPut(@Parameter(name = "courierId",
-            required = true, in = ParameterIn.PATH) @PathVariable String courierId) {
+            required = true, in = ParameterIn.PATH) @PathVariable String courierId,
+                                                                  @RequestParam(required = false) Double latitude,
+                                                                  @RequestParam(required = false) Double longitude) {
+        List<Double> courierLocation = locateCourier(latitude, longitude);
+        String restaurantId = getRestaurantOfCourier(courierId);
+        return ResponseEntity.ok(claimNextDelivery(courierId, restaurantId, courierLocation)
+                .orElseThrow(CouriersController::noAvailableDeliveries));
+    }
+
+    /**
+     * Assign the order next in the queue to the courier, waiting for one if there is none yet.
+     * The request does not hold a thread while it waits, and waiting couriers get orders in the order they asked.
+     *
+     * @param courierId   The id of a courier we want to assign the next order to (required)
+     * @param waitTimeout seconds to wait for an order before giving up (required)
+     * @param latitude    latitude of the courier, located through GPS if not given (optional)
+     * @param longitude   longitude of the courier, located through GPS if not given (optional)
+     * @return the Delivery that the courier was assigned to, set once there is one
+     */
+    @PutMapping(value = "/couriers/{courierId}/next-order", params = "waitTimeout", produces = {"application/json"})
+    public DeferredResult<ResponseEntity<Delivery>> couriersCourierIdNextOrderPut(@PathVariable String courierId,
+                                                                                  @RequestParam int waitTimeout,
+                                                                                  @RequestParam(required = false)
+                                                                                  Double latitude,
+                                                                                  @RequestParam(required = false)
+                                                                                  Double longitude) {
+        if (waitTimeout < 0 || waitTimeout > maxWaitSeconds) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "The wait timeout must be between 0 and " + maxWaitSeconds + " seconds.");
+        }
+        List<Double> courierLocation = locateCourier(latitude, longitude);
+        String restaurantId = getRestaurantOfCourier(courierId);
+        DeferredResult<ResponseEntity<Delivery>> result =
+                new DeferredResult<>(TimeUnit.SECONDS.toMillis(waitTimeout));
+        Optional<Delivery> delivery = claimNextDelivery(courierId, restaurantId, courierLocation);
+        if (delivery.isPresent()) {
+            result.setResult(ResponseEntity.ok(delivery.get()));
+        } else if (waitTimeout == 0) {
+            result.setErrorResult(noAvailableDeliveries());
+        } else {
+            NextOrderWaiter waiter = new NextOrderWaiter(courierId, restaurantId, courierLocation, result);
+            result.onTimeout(waiter::expire);
+            result.onCompletion(waiter::expire);
+            availableDeliveryProxy.awaitDelivery(waiter, restaurantId, false);
+        }
+        return result;
+    }
+
+    /**
+     * Finds where a courier asking for an order is: the location it gave, or the one GPS reports if it gave none.
+     *
+     * @param latitude  latitude given by the courier, or null
+     * @param longitude longitude given by the courier, or null
+     * @return latitude and longitude of the courier
+     */
+    private List<Double> locateCourier(Double latitude, Double longitude) {
+        if (latitude == null && longitude == null) {
+            return gps.getCurrentCoordinates();
+        }
+        if (latitude == null || longitude == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "The location of a courier needs both a latitude and a longitude.");
+        }
+        return List.of(latitude, longitude);
+    }
+
+    /**
+     * Checks that the courier exists and finds the restaurant it works for.
+     *
+     * @param courierId the id of the courier
+     * @return the id of the restaurant, null if the courier takes orders of all restaurants without own couriers
+     */
+    private String getRestaurantOfCourier(String courierId) {
         UsersAuthenticationService.AccountType account = usersCommunication.getUserAccountType(courierId);
         if (!Objects.equals(account, COURIER)) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "There is no such courier");
         }
-        if (couriersService.courierBelongsToRestaurant(courierId)) {
-            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "This courier works for a specific restaurant");
+        return couriersService.getRestaurantOfCourier(courierId).orElse(null);
+    }
+
+    private Optional<Delivery> claimNextDelivery(String courierId, String restaurantId, List<Double> courierLocation) {
+        UUID id;
+        while ((id = restaurantId == null ? availableDeliveryProxy.pollAvailableDeliveryId(courierLocation)
+                : availableDeliveryProxy.pollRestaurantDeliveryId(restaurantId)) != null) {
+            // Skips deliveries that were assigned or changed status since they were queued
+            Optional<Delivery> delivery = updateService.claimDelivery(id, courierId);
+            if (delivery.isPresent()) {
+                return delivery;
+            }
         }
-        UUID id = availableDeliveryProxy.getAvailableDeliveryId();
-        updateService.updateDeliveryCourier(id, courierId);
-        Delivery delivery = deliveryService.getDelivery(id);
+        return Optional.empty();
+    }
 
-        return ResponseEntity.ok(delivery);
+    private static ResponseStatusException noAvailableDeliveries() {
+        return new ResponseStatusException(HttpStatus.NOT_FOUND, "There are no available deliveries at the moment.");
+    }
+
+    /**
+     * A courier waiting for the next order. Runs when a delivery is inserted and either takes one or waits again.
+     */
+    private final class NextOrderWaiter implements Runnable {
+
+        private final transient String courierId;
+        private final transient String restaurantId;
+        private final transient List<Double> courierLocation;
+        private final transient DeferredResult<ResponseEntity<Delivery>> result;
+        private transient boolean done;
+
+        private NextOrderWaiter(String courierId, String restaurantId, List<Double> courierLocation,
+                                DeferredResult<ResponseEntity<Delivery>> result) {
+            this.courierId = courierId;
+            this.restaurantId = restaurantId;
+            this.courierLocation = courierLocation;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            Delivery unwanted;
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                Optional<Delivery> delivery;
+                try {
+                    delivery = claimNextDelivery(courierId, restaurantId, courierLocation);
+                } catch (RuntimeException e) {
+                    // Answer the courier now instead of leaving it waiting until the timeout
+                    done = true;
+                    result.setErrorResult(asResponseStatus(e));
+                    return;
+                }
+                if (delivery.isEmpty()) {
+                    availableDeliveryProxy.awaitDelivery(this, restaurantId, true);
+                    return;
+                }
+                done = true;
+                if (result.setResult(ResponseEntity.ok(delivery.get()))) {
+                    return;
+                }
+                unwanted = delivery.get();
+            }
+            // The courier stopped waiting in the meantime, give the delivery to someone else
+            availableDeliveryProxy.insertDelivery(updateService.updateDeliveryCourier(unwanted.getDeliveryID(), null));
+        }
+
+        private ResponseStatusException asResponseStatus(RuntimeException e) {
+            if (e instanceof ResponseStatusException) {
+                return (ResponseStatusException) e;
+            }
+            if (e instanceof DataAccessException) {
+                return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                        "Deliveries cannot be assigned at the moment.", e);
+            }
+            return new ResponseStatusException(HttpStatus.INTERNAL_SERVER_ERROR, "Could not assign a delivery.", e);
+        }
+
+        /**
+         * Stops waiting, answering that there is no delivery if the request is still open.
+         */
+        private void expire() {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+            }
+            availableDeliveryProxy.cancelAwait(this, restaurantId);
+            result.setErrorResult(noAvailableDeliveries());
+        }
+    }
+
+    /**
+     * Assigns available orders to a group of idle couriers in one round, minimizing their total travel time.
+     *
+     * @param userId          ID of the user for authorization, must be an admin (required)
+     * @param courierPosition the idle couriers and their locations (required)
+     * @return the orders assigned to the couriers
+     */
+    @Override
+    public ResponseEntity<List<CourierAssignment>> couriersDispatchPut(@RequestHeader String userId,
+                                                                       @RequestBody List<CourierPosition> courierPosition) {
+        UsersAuthenticationService.AccountType account = usersCommunication.getUserAccountType(userId);
+        if (account.equals(INVALID)) {
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Account could not be verified.");
+        }
+        if (!account.equals(ADMIN)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only admins can dispatch couriers.");
+        }
+        Set<String> courierIds = new HashSet<>();
+        for (CourierPosition courier : courierPosition) {
+            List<Double> location = courier.getLocation();
+            if (courier.getCourierID() == null || !courierIds.add(courier.getCourierID())
+                    || location == null || location.size() != 2 || location.stream().anyMatch(Objects::isNull)) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Every courier needs an ID and a location, and may only appear once.");
+            }
+        }
+        // account types and restaurants of the couriers, all looked up at once
+        Map<String, UsersAuthenticationService.AccountType> accounts = usersCommunication.getUserAccountTypes(courierIds);
+        Set<String> restaurantCouriers = couriersService.getCouriersBelongingToRestaurants(courierIds);
+        List<CourierPosition> idleCouriers = courierPosition.stream()
+                .filter(courier -> COURIER.equals(accounts.get(courier.getCourierID())))
+                .filter(courier -> !restaurantCouriers.contains(courier.getCourierID()))
+                .collect(Collectors.toList());
+        return ResponseEntity.ok(dispatchService.dispatch(idleCouriers));
     }
 
     /**
@@ -13,6 +13,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
@@ -21,12 +22,16 @@ import javax.validation.constraints.NotNull;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Locale;
+import java.util.Set;
 import java.util.UUID;
 
 
 @RestController
 public class DeliveryController implements DeliveriesApi {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final transient DeliveryService deliveryService;
     private final transient ErrorService errorService;
     private final transient UsersAuthenticationService usersAuthenticationService;
@@ -230,7 +235,9 @@ public class DeliveryController implements DeliveriesApi {
     public ResponseEntity<Delivery> deliveriesDeliveryIdStatusPut(UUID deliveryId, String userId, String status) {
 
         getDeliveryAndAuthenticateUser(deliveryId, userId);
-        Delivery delivery = deliveryStatusHandler.updateDeliveryStatus(deliveryId, userId, status);
+        // Looked up before the update's transaction starts, the account type is cached by the call above
+        AccountType accountType = usersAuthenticationService.getUserAccountType(userId);
+        Delivery delivery = deliveryStatusHandler.updateDeliveryStatus(deliveryId, accountType, status);
         availableDeliveryProxy.insertDelivery(delivery);
         return ResponseEntity.ok(delivery);
     }
@@ -376,17 +383,36 @@ public class DeliveryController implements DeliveriesApi {
     }
 
     /**
-     * Gets all accepted orders in the system, meaning those that do not yet have a courier assigned.
+     * Gets a page of the accepted orders in the system, meaning those that do not yet have a courier assigned.
      *
-     * @param userId ID of the User for authorization (required)
+     * @param userId       ID of the User for authorization (required)
+     * @param after        ID of the last order of the previous page (optional)
+     * @param limit        most orders returned, 100 by default (optional)
+     * @param restaurantId ID of the restaurant of the orders (optional)
+     * @param latitude     latitude of the center of the area of the restaurants (optional)
+     * @param longitude    longitude of the center of the area of the restaurants (optional)
+     * @param radius       radius in kilometers of the area of the restaurants (optional)
      * @return a List of Delivery Objects
      */
     @Override
-    public ResponseEntity<List<Delivery>> deliveriesAllAcceptedGet(@RequestHeader String userId) {
+    public ResponseEntity<List<Delivery>> deliveriesAllAcceptedGet(@RequestHeader String userId,
+                                                                   @RequestParam(required = false) UUID after,
+                                                                   @RequestParam(defaultValue = "100") Integer limit,
+                                                                   @RequestParam(required = false) String restaurantId,
+                                                                   @RequestParam(required = false) Double latitude,
+                                                                   @RequestParam(required = false) Double longitude,
+                                                                   @RequestParam(required = false) Double radius) {
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        boolean area = latitude != null && longitude != null && radius != null && radius > 0;
+        boolean noArea = latitude == null && longitude == null && radius == null;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE || !area && !noArea) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page or area.");
+        }
         UsersAuthenticationService.AccountType accountType = usersAuthenticationService.getUserAccountType(userId);
 
         return switch (accountType) {
-            case ADMIN, COURIER -> ResponseEntity.ok(deliveryService.getAcceptedDeliveries());
+            case ADMIN, COURIER -> ResponseEntity.ok(deliveryService.getAcceptedDeliveries(after, pageSize,
+                    restaurantId, latitude, longitude, radius));
             case VENDOR, CLIENT -> throw new ResponseStatusException(HttpStatus.FORBIDDEN,
                     "User lacks necessary permissions.");
             default -> throw new ResponseStatusException(HttpStatus.UNAUTHORIZED,
@@ -434,24 +460,24 @@ public class DeliveryController implements DeliveriesApi {
                     throw new ResponseStatusException(HttpStatus.FORBIDDEN,
                             "Couriers can only assign themselves to deliveries.");
                 }
-                Restaurant restaurant = deliveryService.getRestaurant(delivery.getRestaurantID());
-                if (deliveryService.restaurantUsesOwnCouriers(delivery) && !restaurant.getCouriers().contains(courierId)) {
+                Set<String> ownCouriers = deliveryService.getOwnCouriers(delivery.getRestaurantID());
+                if (!ownCouriers.isEmpty() && !ownCouriers.contains(courierId)) {
                     throw new ResponseStatusException(HttpStatus.FORBIDDEN,
                             "This restaurant uses own couriers and you are not one of them.");
                 }
             }
             case VENDOR -> {
-                Restaurant restaurant = deliveryService.getRestaurant(delivery.getRestaurantID());
+                Set<String> ownCouriers = deliveryService.getOwnCouriers(delivery.getRestaurantID());
                 // Not allowed to assign couriers to different vendors
-                if (!restaurant.getRestaurantID().equals(userId)) {
+                if (!delivery.getRestaurantID().equals(userId)) {
                     throw new ResponseStatusException(HttpStatus.FORBIDDEN,
                             "Vendors are not allowed to assign couriers to deliveries from different restaurants.");
                 }
                 // Not allowed to assign couriers that are not in the list of own couriers (if restaurant uses it)
-                if (!deliveryService.restaurantUsesOwnCouriers(delivery)) {
+                if (ownCouriers.isEmpty()) {
                     throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Vendor doesn't use own couriers.");
                 }
-                if (!restaurant.getCouriers().contains(courierId)) {
+                if (!ownCouriers.contains(courierId)) {
                     throw new ResponseStatusException(HttpStatus.FORBIDDEN, "CourierId doesn't belong to the own courier list.");
                 }
             }
@@ -491,6 +517,7 @@ public class DeliveryController implements DeliveriesApi {
         }
 
         Delivery delivery = timeCalculationService.updateEstimatedPrepTime(deliveryId, prepTime);
+        availableDeliveryProxy.insertDelivery(delivery);
         return ResponseEntity.ok(delivery);
     }
 
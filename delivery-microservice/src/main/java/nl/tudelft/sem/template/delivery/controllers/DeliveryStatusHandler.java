@@ -1,14 +1,14 @@
 package nl.tudelft.sem.template.delivery.controllers;
 
-import nl.tudelft.sem.template.delivery.communication.UsersCommunication;
 import nl.tudelft.sem.template.delivery.services.DeliveryService;
+import nl.tudelft.sem.template.delivery.services.OrderStatusOutbox;
 import nl.tudelft.sem.template.delivery.services.UpdateService;
-import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService;
 import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType;
 import nl.tudelft.sem.template.model.Delivery;
 import nl.tudelft.sem.template.model.DeliveryStatus;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
@@ -20,8 +20,7 @@ import java.util.UUID;
 public class DeliveryStatusHandler {
 
     private final transient DeliveryService deliveryService;
-    private final transient UsersAuthenticationService usersAuthenticationService;
-    private final transient UsersCommunication usersCommunication;
+    private final transient OrderStatusOutbox orderStatusOutbox;
 
     private final transient UpdateService updateService;
 
@@ -29,39 +28,41 @@ public class DeliveryStatusHandler {
      * Constructor.
      *
      * @param deliveryService               the delivery service
-     * @param usersAuthenticationService    mock for users authorization
-     * @param usersCommunication            mock for users communication
+     * @param orderStatusOutbox             status changes waiting to be sent to the Orders microservice
+     * @param updateService                 the update service
      */
     public DeliveryStatusHandler(DeliveryService deliveryService,
-                                 UsersAuthenticationService usersAuthenticationService,
-                                 UsersCommunication usersCommunication,
+                                 OrderStatusOutbox orderStatusOutbox,
                                  UpdateService updateService) {
         this.deliveryService = deliveryService;
-        this.usersAuthenticationService = usersAuthenticationService;
-        this.usersCommunication = usersCommunication;
+        this.orderStatusOutbox = orderStatusOutbox;
         this.updateService = updateService;
     }
 
 
     /**
-     * Updates the delivery status of an order.
+     * Updates the delivery status of an order. The Orders microservice is told about the new status in the background,
+     * once the update is committed.
+     * The account type is looked up by the caller, so that no database connection is held while the users service
+     * answers. The delivery is locked until the update is committed, so that of two concurrent updates the second
+     * one is checked against the status set by the first.
      *
-     * @param deliveryId ID of delivery
-     * @param userId     ID of user calling the endpoint
-     * @param status     new status to update with
+     * @param deliveryId  ID of delivery
+     * @param accountType account type of the user calling the endpoint
+     * @param status      new status to update with
      * @return the updated Delivery object
      */
-    public Delivery updateDeliveryStatus(UUID deliveryId, String userId, String status) {
-        AccountType accountType = usersAuthenticationService.getUserAccountType(userId);
-        Delivery delivery = deliveryService.getDelivery(deliveryId);
+    @Transactional
+    public Delivery updateDeliveryStatus(UUID deliveryId, AccountType accountType, String status) {
+        Delivery delivery = deliveryService.getDeliveryForUpdate(deliveryId);
 
         DeliveryStatus oldStatus = delivery.getStatus();
         DeliveryStatus newStatus = StatusValidity.validate(status);
         if (!StatusValidity.isStatusUpdateLegal(accountType, oldStatus, newStatus)) {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN);
         }
-        usersCommunication.updateOrderStatus(deliveryId, newStatus.toString());
         updateService.updateDeliveryStatus(deliveryId, newStatus);
+        orderStatusOutbox.enqueue(deliveryId, newStatus);
 
         return delivery;
     }
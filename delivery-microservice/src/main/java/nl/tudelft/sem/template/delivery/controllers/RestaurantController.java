@@ -162,6 +162,9 @@ public class RestaurantController implements RestaurantsApi {
         if (!(result.getLeft()).equals(HttpStatus.OK)) {
             throw new ResponseStatusException(result.getLeft(), result.getRight());
         }
+        if (isInvalidAddress(requestBody)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Location is invalid.");
+        }
         restaurantService.updateLocation(restaurantId, requestBody);
         return ResponseEntity.ok(restaurantService.getRestaurant(restaurantId));
     }
@@ -209,15 +212,11 @@ public class RestaurantController implements RestaurantsApi {
         if (!(result.getLeft()).equals(HttpStatus.OK)) {
             throw new ResponseStatusException(result.getLeft(), result.getRight());
         }
-        // check couriers
-        if (requestBody != null) {
-            for (String id : requestBody) {
-                UsersAuthenticationService.AccountType account = usersCommunication.getUserAccountType(id);
-                if (!Objects.equals(account, COURIER)) {
-                    throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
-                            "List contains the id of someone who isn't a courier.");
-                }
-            }
+        // check couriers, all looked up at once
+        if (requestBody != null && !usersCommunication.getUserAccountTypes(requestBody).values().stream()
+                .allMatch(account -> Objects.equals(account, COURIER))) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "List contains the id of someone who isn't a courier.");
         }
         Restaurant r = restaurantService.setListOfCouriers(restaurantId, requestBody);
         return ResponseEntity.ok(r);
@@ -253,6 +252,6 @@ public class RestaurantController implements RestaurantsApi {
      * @return boolean value indicating whether address is invalid or not
      */
     public boolean isInvalidAddress(List<Double> str) {
-        return str == null || str.size() != 2;
+        return str == null || str.size() != 2 || str.stream().anyMatch(Objects::isNull);
     }
 }
@@ -0,0 +1,122 @@
+package nl.tudelft.sem.template.delivery.domain;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+import org.hibernate.usertype.CompositeUserType;
+
+/**
+ * Maps a latitude and longitude, kept by the API model as a list of two doubles, to two columns of the row of the
+ * entity they belong to, so that they are loaded and updated along with it.
+ * A list without coordinates is stored as two nulls and read back as an empty list, as is a row missing either one.
+ */
+public class CoordinatesType implements CompositeUserType {
+
+    private static final String[] PROPERTY_NAMES = {"latitude", "longitude"};
+
+    private static final Type[] PROPERTY_TYPES = {StandardBasicTypes.DOUBLE, StandardBasicTypes.DOUBLE};
+
+    @Override
+    public String[] getPropertyNames() {
+        return PROPERTY_NAMES.clone();
+    }
+
+    @Override
+    public Type[] getPropertyTypes() {
+        return PROPERTY_TYPES.clone();
+    }
+
+    @Override
+    public Object getPropertyValue(Object component, int property) {
+        List<?> coordinates = (List<?>) component;
+        return coordinates == null || coordinates.size() <= property ? null : coordinates.get(property);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void setPropertyValue(Object component, int property, Object value) {
+        List<Object> coordinates = (List<Object>) component;
+        while (coordinates.size() < PROPERTY_NAMES.length) {
+            coordinates.add(null);
+        }
+        coordinates.set(property, value);
+    }
+
+    @Override
+    public Class<?> returnedClass() {
+        return List.class;
+    }
+
+    @Override
+    public boolean equals(Object x, Object y) {
+        return Objects.equals(x, y);
+    }
+
+    @Override
+    public int hashCode(Object x) {
+        return Objects.hashCode(x);
+    }
+
+    @Override
+    public Object nullSafeGet(ResultSet rs, String[] names, SharedSessionContractImplementor session, Object owner)
+        throws SQLException {
+        List<Double> coordinates = new ArrayList<>(2);
+        double latitude = rs.getDouble(names[0]);
+        boolean missing = rs.wasNull();
+        double longitude = rs.getDouble(names[1]);
+        if (missing || rs.wasNull()) {
+            return coordinates;
+        }
+        coordinates.add(latitude);
+        coordinates.add(longitude);
+        return coordinates;
+    }
+
+    @Override
+    public void nullSafeSet(PreparedStatement st, Object value, int index, SharedSessionContractImplementor session)
+        throws SQLException {
+        List<?> coordinates = (List<?>) value;
+        if (coordinates == null || coordinates.isEmpty()) {
+            StandardBasicTypes.DOUBLE.nullSafeSet(st, null, index, session);
+            StandardBasicTypes.DOUBLE.nullSafeSet(st, null, index + 1, session);
+            return;
+        }
+        if (coordinates.size() != 2) {
+            throw new IllegalArgumentException("Coordinates are a latitude and a longitude, not " + coordinates);
+        }
+        StandardBasicTypes.DOUBLE.nullSafeSet(st, coordinates.get(0), index, session);
+        StandardBasicTypes.DOUBLE.nullSafeSet(st, coordinates.get(1), index + 1, session);
+    }
+
+    @Override
+    public Object deepCopy(Object value) {
+        return value == null ? null : new ArrayList<>((List<?>) value);
+    }
+
+    @Override
+    public boolean isMutable() {
+        return true;
+    }
+
+    @Override
+    public Serializable disassemble(Object value, SharedSessionContractImplementor session) {
+        return (Serializable) deepCopy(value);
+    }
+
+    @Override
+    public Object assemble(Serializable cached, SharedSessionContractImplementor session, Object owner) {
+        return deepCopy(cached);
+    }
+
+    @Override
+    public Object replace(Object original, Object target, SharedSessionContractImplementor session, Object owner) {
+        return deepCopy(original);
+    }
+}
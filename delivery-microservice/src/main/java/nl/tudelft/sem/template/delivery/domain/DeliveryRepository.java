@@ -1,20 +1,37 @@
 package nl.tudelft.sem.template.delivery.domain;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
+import javax.persistence.LockModeType;
 import nl.tudelft.sem.template.model.Delivery;
 import nl.tudelft.sem.template.model.DeliveryStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface DeliveryRepository extends JpaRepository<Delivery, UUID> {
 
     List<Delivery> findAllByrestaurantID(String restaurantId);
 
+    /**
+     * Reads a delivery and locks its row until the surrounding transaction ends.
+     *
+     * @param deliveryId ID of the delivery
+     * @return the delivery, if it exists
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM Delivery e WHERE e.deliveryID = :deliveryId")
+    Optional<Delivery> findByIdForUpdate(@Param("deliveryId") UUID deliveryId);
+
     List<Delivery> findAllByCustomerID(String customerId);
 
     List<Delivery> findAllByCourierID(String courierId);
@@ -32,4 +49,161 @@ public interface DeliveryRepository extends JpaRepository<Delivery, UUID> {
     @Query("SELECT e FROM Delivery e WHERE e.orderTime < :end AND e.orderTime > :start")
     List<Delivery> findAllByOrderTime(@Param("start") OffsetDateTime startTime,
                                       @Param("end") OffsetDateTime endTime);
+
+    @Query("SELECT e FROM Delivery e WHERE e.courierID IS NULL AND e.status IN :statuses "
+        + "AND e.orderTime IS NOT NULL ORDER BY e.orderTime, e.deliveryID")
+    List<Delivery> findUnassignedByStatus(@Param("statuses") Collection<DeliveryStatus> statuses, Pageable pageable);
+
+    @Query("SELECT e FROM Delivery e WHERE e.courierID IS NULL AND e.status IN :statuses "
+        + "AND (e.orderTime > :orderTime OR (e.orderTime = :orderTime AND e.deliveryID > :deliveryId)) "
+        + "ORDER BY e.orderTime, e.deliveryID")
+    List<Delivery> findUnassignedByStatusAfter(@Param("statuses") Collection<DeliveryStatus> statuses,
+                                               @Param("orderTime") OffsetDateTime orderTime,
+                                               @Param("deliveryId") UUID deliveryId,
+                                               Pageable pageable);
+
+    /**
+     * Page of the deliveries without a courier in one of the given statuses that have no order time, which
+     * {@link #findUnassignedByStatus} leaves out, ordered by ID.
+     *
+     * @param statuses statuses of the deliveries
+     * @param after    ID the IDs of the deliveries come after
+     * @param pageable first page of the given size
+     * @return the deliveries
+     */
+    @Query("SELECT e FROM Delivery e WHERE e.courierID IS NULL AND e.status IN :statuses "
+        + "AND e.orderTime IS NULL AND e.deliveryID > :after ORDER BY e.deliveryID")
+    List<Delivery> findUnassignedWithoutOrderTime(@Param("statuses") Collection<DeliveryStatus> statuses,
+                                                  @Param("after") UUID after,
+                                                  Pageable pageable);
+
+    /**
+     * Deliveries without a courier in one of the given statuses of a restaurant, each next to the ID of the
+     * restaurant. A restaurant without such deliveries gives a single row without a delivery, and a restaurant that
+     * does not exist gives no rows, so that both are told apart in one round trip.
+     *
+     * @param restaurantId ID of the restaurant
+     * @param statuses     statuses of the deliveries
+     * @return pairs of the ID of the restaurant and a delivery, or null
+     */
+    @Query("SELECT r.restaurantID, e FROM Restaurant r LEFT JOIN Delivery e ON e.restaurantID = r.restaurantID "
+        + "AND e.status IN :statuses AND e.courierID IS NULL WHERE r.restaurantID = :restaurantId")
+    List<Object[]> findUnassignedOfRestaurant(@Param("restaurantId") String restaurantId,
+                                              @Param("statuses") Collection<DeliveryStatus> statuses);
+
+    /**
+     * Deliveries of a restaurant without a courier in one of the given statuses, read through the index on
+     * restaurant, status and courier rather than by loading every delivery the restaurant ever made.
+     *
+     * @param restaurantId ID of the restaurant
+     * @param statuses     statuses of the deliveries
+     * @return the deliveries
+     */
+    @Query("SELECT e FROM Delivery e WHERE e.restaurantID = :restaurantId AND e.status IN :statuses "
+        + "AND e.courierID IS NULL")
+    List<Delivery> findUnassignedByRestaurant(@Param("restaurantId") String restaurantId,
+                                              @Param("statuses") Collection<DeliveryStatus> statuses);
+
+    /**
+     * Page of the deliveries without a courier in a status, ordered by ID. Only the deliveries that are still open
+     * are read, through the index on status, courier and ID, however many deliveries were made before.
+     *
+     * @param status   status of the deliveries
+     * @param after    ID the IDs of the deliveries come after
+     * @param pageable first page of the given size
+     * @return the deliveries
+     */
+    @Query("SELECT e FROM Delivery e WHERE e.courierID IS NULL AND e.status = :status AND e.deliveryID > :after "
+        + "ORDER BY e.deliveryID")
+    List<Delivery> findUnassignedPage(@Param("status") DeliveryStatus status,
+                                      @Param("after") UUID after,
+                                      Pageable pageable);
+
+    /**
+     * Page of the deliveries of a restaurant without a courier in a status, ordered by ID, read through the index on
+     * restaurant, status, courier and ID.
+     *
+     * @param status       status of the deliveries
+     * @param restaurantId ID of the restaurant of the deliveries
+     * @param after        ID the IDs of the deliveries come after
+     * @param pageable     first page of the given size
+     * @return the deliveries
+     */
+    @Query("SELECT e FROM Delivery e WHERE e.restaurantID = :restaurantId AND e.courierID IS NULL "
+        + "AND e.status = :status AND e.deliveryID > :after ORDER BY e.deliveryID")
+    List<Delivery> findUnassignedRestaurantPage(@Param("status") DeliveryStatus status,
+                                                @Param("restaurantId") String restaurantId,
+                                                @Param("after") UUID after,
+                                                Pageable pageable);
+
+    /**
+     * Page of the deliveries without a courier in a status whose restaurant is near a location, ordered by ID.
+     * Distances are measured on a flat map, scaled along the longitude by the cosine of the latitude of the location.
+     *
+     * @param status               status of the deliveries
+     * @param latitude             latitude of the location
+     * @param longitude            longitude of the location
+     * @param longitudeScale       square of the cosine of the latitude of the location
+     * @param squaredRadiusDegrees square of the largest distance to the location in degrees of latitude
+     * @param after                ID the IDs of the deliveries come after
+     * @param pageable             first page of the given size
+     * @return the deliveries
+     */
+    @Query("SELECT e FROM Delivery e, Restaurant r WHERE r.restaurantID = e.restaurantID AND e.courierID IS NULL "
+        + "AND e.status = :status "
+        + "AND (r.location.latitude - :latitude) * (r.location.latitude - :latitude) "
+        + "+ (r.location.longitude - :longitude) * (r.location.longitude - :longitude) * :longitudeScale "
+        + "<= :squaredRadiusDegrees AND e.deliveryID > :after ORDER BY e.deliveryID")
+    List<Delivery> findUnassignedPageNear(@Param("status") DeliveryStatus status,
+                                          @Param("latitude") double latitude,
+                                          @Param("longitude") double longitude,
+                                          @Param("longitudeScale") double longitudeScale,
+                                          @Param("squaredRadiusDegrees") double squaredRadiusDegrees,
+                                          @Param("after") UUID after,
+                                          Pageable pageable);
+
+    /**
+     * Page of the deliveries of a restaurant without a courier in a status, ordered by ID, if the restaurant is near
+     * a location. Distances are measured as in {@link #findUnassignedPageNear}.
+     *
+     * @param status               status of the deliveries
+     * @param restaurantId         ID of the restaurant of the deliveries
+     * @param latitude             latitude of the location
+     * @param longitude            longitude of the location
+     * @param longitudeScale       square of the cosine of the latitude of the location
+     * @param squaredRadiusDegrees square of the largest distance to the location in degrees of latitude
+     * @param after                ID the IDs of the deliveries come after
+     * @param pageable             first page of the given size
+     * @return the deliveries
+     */
+    @Query("SELECT e FROM Delivery e, Restaurant r WHERE r.restaurantID = :restaurantId "
+        + "AND e.restaurantID = :restaurantId AND e.courierID IS NULL AND e.status = :status "
+        + "AND (r.location.latitude - :latitude) * (r.location.latitude - :latitude) "
+        + "+ (r.location.longitude - :longitude) * (r.location.longitude - :longitude) * :longitudeScale "
+        + "<= :squaredRadiusDegrees AND e.deliveryID > :after ORDER BY e.deliveryID")
+    List<Delivery> findUnassignedRestaurantPageNear(@Param("status") DeliveryStatus status,
+                                                    @Param("restaurantId") String restaurantId,
+                                                    @Param("latitude") double latitude,
+                                                    @Param("longitude") double longitude,
+                                                    @Param("longitudeScale") double longitudeScale,
+                                                    @Param("squaredRadiusDegrees") double squaredRadiusDegrees,
+                                                    @Param("after") UUID after,
+                                                    Pageable pageable);
+
+    /**
+     * Assigns a courier to a delivery in a single statement, but only if it has no courier yet
+     * and is in one of the given statuses. Of several concurrent claims of the same delivery only one succeeds.
+     *
+     * @param deliveryId ID of the delivery
+     * @param courierId  ID of the courier
+     * @param statuses   statuses in which the delivery may be claimed
+     * @return 1 if the delivery was claimed, 0 otherwise
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Delivery e SET e.courierID = :courierId WHERE e.deliveryID = :deliveryId "
+        + "AND e.courierID IS NULL AND e.status IN :statuses")
+    int claimDelivery(@Param("deliveryId") UUID deliveryId,
+                      @Param("courierId") String courierId,
+                      @Param("statuses") Collection<DeliveryStatus> statuses);
 }
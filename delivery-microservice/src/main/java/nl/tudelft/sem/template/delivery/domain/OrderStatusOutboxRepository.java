@@ -0,0 +1,103 @@
+package nl.tudelft.sem.template.delivery.domain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import javax.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface OrderStatusOutboxRepository extends JpaRepository<OrderStatusUpdate, Long> {
+
+    /**
+     * Oldest updates that may be sent now, locked until the transaction ends. An update is left out while an earlier
+     * update of the same order waits for its next attempt or is being sent, so that the updates of an order are never
+     * sent out of order.
+     *
+     * @param now      epoch milliseconds
+     * @param pageable how many updates to return
+     * @return updates in the order they were made
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT u FROM OrderStatusUpdate u WHERE u.nextAttemptAt <= :now AND NOT EXISTS ("
+        + "SELECT p FROM OrderStatusUpdate p WHERE p.orderId = u.orderId AND p.id < u.id AND p.nextAttemptAt > :now) "
+        + "ORDER BY u.id")
+    List<OrderStatusUpdate> findDue(@Param("now") long now, Pageable pageable);
+
+    /**
+     * Claims an update for sending by moving its next attempt to when the claim runs out, but only if it was not
+     * claimed or rescheduled since it was read.
+     *
+     * @param id    ID of the update
+     * @param seen  next attempt of the update when it was read
+     * @param until epoch milliseconds until which the update is claimed
+     * @return 1 if the update was claimed, 0 otherwise
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE OrderStatusUpdate u SET u.nextAttemptAt = :until WHERE u.id = :id AND u.nextAttemptAt = :seen")
+    int claim(@Param("id") Long id, @Param("seen") long seen, @Param("until") long until);
+
+    /**
+     * Sets the next attempt of updates.
+     *
+     * @param ids           IDs of the updates
+     * @param nextAttemptAt epoch milliseconds from which the updates may be sent
+     * @return number of updates changed
+     */
+    @Modifying
+    @Query("UPDATE OrderStatusUpdate u SET u.nextAttemptAt = :nextAttemptAt WHERE u.id IN :ids")
+    int reschedule(@Param("ids") Collection<Long> ids, @Param("nextAttemptAt") long nextAttemptAt);
+
+    /**
+     * Claims the oldest updates that may be sent now, in one transaction, so that no other dispatch sends them until
+     * the claim runs out. Of an order whose update could not be claimed, the later updates are not claimed either.
+     *
+     * @param now      epoch milliseconds
+     * @param until    epoch milliseconds until which the updates are claimed
+     * @param pageable how many updates to claim at most
+     * @return claimed updates in the order they were made, as they were before they were claimed
+     */
+    @Transactional
+    default List<OrderStatusUpdate> claimDue(long now, long until, Pageable pageable) {
+        List<OrderStatusUpdate> claimed = new ArrayList<>();
+        Set<UUID> skippedOrders = new HashSet<>();
+        for (OrderStatusUpdate update : findDue(now, pageable)) {
+            if (!skippedOrders.contains(update.getOrderId())
+                && claim(update.getId(), update.getNextAttemptAt(), until) == 1) {
+                claimed.add(update);
+            } else {
+                skippedOrders.add(update.getOrderId());
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Ends a dispatch in one transaction: removes the updates that were sent, stores the next attempt of those that
+     * failed, and releases the claim on those that were not tried because an earlier update of their order failed.
+     *
+     * @param sent      updates the Orders microservice received
+     * @param failed    updates that could not be sent, with their next attempt
+     * @param unsentIds IDs of the claimed updates that were not tried
+     * @param now       epoch milliseconds from which the updates not tried may be sent again
+     */
+    @Transactional
+    default void finishDispatch(List<OrderStatusUpdate> sent, List<OrderStatusUpdate> failed,
+                                List<Long> unsentIds, long now) {
+        deleteInBatch(sent);
+        saveAll(failed);
+        if (!unsentIds.isEmpty()) {
+            reschedule(unsentIds, now);
+        }
+    }
+}
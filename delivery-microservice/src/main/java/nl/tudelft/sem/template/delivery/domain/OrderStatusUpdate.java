@@ -0,0 +1,80 @@
+package nl.tudelft.sem.template.delivery.domain;
+
+import java.util.UUID;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+/**
+ * Status change of an order that still has to be sent to the Orders microservice.
+ * The IDs increase in the order the changes were made, which is the order they are sent in.
+ */
+@Entity
+@Table(name = "order_status_outbox", indexes = @Index(columnList = "orderId"))
+public class OrderStatusUpdate {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "orderId", nullable = false)
+    private UUID orderId;
+
+    @Column(nullable = false)
+    private String status;
+
+    private int attempts;
+
+    @Column(name = "nextAttemptAt")
+    private long nextAttemptAt;
+
+    protected OrderStatusUpdate() {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param orderId       ID of the order
+     * @param status        new status of the order
+     * @param nextAttemptAt epoch milliseconds from which the update may be sent
+     */
+    public OrderStatusUpdate(UUID orderId, String status, long nextAttemptAt) {
+        this.orderId = orderId;
+        this.status = status;
+        this.nextAttemptAt = nextAttemptAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public UUID getOrderId() {
+        return orderId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public long getNextAttemptAt() {
+        return nextAttemptAt;
+    }
+
+    /**
+     * Records a failed attempt to send the update.
+     *
+     * @param nextAttemptAt epoch milliseconds from which the update may be sent again
+     */
+    public void failedAttempt(long nextAttemptAt) {
+        this.attempts++;
+        this.nextAttemptAt = nextAttemptAt;
+    }
+}
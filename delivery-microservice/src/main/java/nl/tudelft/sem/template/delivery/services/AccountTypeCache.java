@@ -0,0 +1,252 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import nl.tudelft.sem.template.delivery.communication.UsersCommunication;
+import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the account types of users in memory, so that checking who is calling an endpoint
+ * does not ask the Users microservice every time.
+ * An account type older than the TTL is still returned while it is refreshed in the background, and kept
+ * when the refresh fails because the Users microservice is down. Unknown users are remembered for a shorter time.
+ */
+@Service
+public class AccountTypeCache implements MeterBinder {
+
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+    private static final Duration DEFAULT_INVALID_TTL = Duration.ofSeconds(30);
+    private static final Duration DEFAULT_MAX_STALE = Duration.ofDays(1);
+    private static final long DEFAULT_MAX_SIZE = 10_000;
+
+    private final transient UsersCommunication usersCommunication;
+
+    private final transient LoadingCache<String, AccountType> accountTypes;
+
+    private final transient AtomicLong refreshes = new AtomicLong();
+
+    private final transient AtomicLong refreshNanos = new AtomicLong();
+
+    /**
+     * Constructor with the default TTLs and size.
+     *
+     * @param usersCommunication client of the Users microservice
+     */
+    public AccountTypeCache(UsersCommunication usersCommunication) {
+        this(usersCommunication, DEFAULT_TTL, DEFAULT_INVALID_TTL, DEFAULT_MAX_STALE, DEFAULT_MAX_SIZE,
+            Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param usersCommunication client of the Users microservice
+     * @param ttlSeconds         seconds after which an account type is refreshed
+     * @param invalidTtlSeconds  seconds an unknown user is remembered
+     * @param maxStaleSeconds    seconds an account type is kept while it cannot be refreshed
+     * @param maxSize            maximum number of users kept, the least used ones are evicted first
+     */
+    @Autowired
+    public AccountTypeCache(UsersCommunication usersCommunication,
+                            @Value("${delivery.account-types.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${delivery.account-types.invalid-ttl-seconds:30}") long invalidTtlSeconds,
+                            @Value("${delivery.account-types.max-stale-seconds:86400}") long maxStaleSeconds,
+                            @Value("${delivery.account-types.max-size:10000}") long maxSize) {
+        this(usersCommunication, Duration.ofSeconds(ttlSeconds), Duration.ofSeconds(invalidTtlSeconds),
+            Duration.ofSeconds(maxStaleSeconds), maxSize, Ticker.systemTicker(), ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param usersCommunication client of the Users microservice
+     * @param ttl                age after which an account type is refreshed
+     * @param invalidTtl         time an unknown user is remembered
+     * @param maxStale           time an account type is kept while it cannot be refreshed
+     * @param maxSize            maximum number of users kept, the least used ones are evicted first
+     * @param ticker             source of the time
+     * @param refreshExecutor    executor the refreshes run on
+     */
+    public AccountTypeCache(UsersCommunication usersCommunication, Duration ttl, Duration invalidTtl,
+                            Duration maxStale, long maxSize, Ticker ticker, Executor refreshExecutor) {
+        if (ttl.isNegative() || ttl.isZero() || invalidTtl.isNegative() || maxStale.compareTo(ttl) < 0 || maxSize < 0) {
+            throw new IllegalArgumentException("TTLs must be positive, with the maximum staleness at least the TTL");
+        }
+        this.usersCommunication = usersCommunication;
+        this.accountTypes = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .refreshAfterWrite(ttl)
+            .expireAfter(new AccountTypeExpiry(invalidTtl, maxStale))
+            .ticker(ticker)
+            .executor(refreshExecutor)
+            .recordStats()
+            .build(new AccountTypeLoader());
+    }
+
+    /**
+     * Get the account type of a user.
+     *
+     * @param userId ID of the user
+     * @return the account type, INVALID if the user is unknown or the Users microservice cannot be reached
+     * @throws ResponseStatusException with status 504 when the HTTP request ran out of time before the user was known
+     */
+    public AccountType get(String userId) {
+        if (userId == null) {
+            return AccountType.INVALID;
+        }
+        try {
+            return accountTypes.get(userId);
+        } catch (RuntimeException e) {
+            rethrowIfOutOfTime(e);
+            // Nothing to fall back on, and not remembered so that the next call tries again
+            return AccountType.INVALID;
+        }
+    }
+
+    /**
+     * Get the account types of several users, the ones not in memory are asked from the Users microservice together.
+     *
+     * @param userIds IDs of the users
+     * @return the account type of every user, INVALID if the user is unknown or the Users microservice cannot be reached
+     * @throws ResponseStatusException with status 504 when the HTTP request ran out of time before the users were known
+     */
+    public Map<String, AccountType> getAll(Collection<String> userIds) {
+        Set<String> knownIds = userIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
+        Map<String, AccountType> types = new HashMap<>();
+        try {
+            types.putAll(accountTypes.getAll(knownIds));
+        } catch (RuntimeException e) {
+            rethrowIfOutOfTime(e);
+            // The users that were in memory keep their account type, the others are not remembered
+            types.putAll(accountTypes.getAllPresent(knownIds));
+        }
+        userIds.forEach(userId -> types.putIfAbsent(userId, AccountType.INVALID));
+        return types;
+    }
+
+    /**
+     * A request that ran out of time is answered as such, not as if its user were unknown.
+     */
+    private static void rethrowIfOutOfTime(RuntimeException e) {
+        if (e instanceof ResponseStatusException
+            && ((ResponseStatusException) e).getStatus() == HttpStatus.GATEWAY_TIMEOUT) {
+            throw e;
+        }
+    }
+
+    /**
+     * Forget the account type of a user, the next lookup asks the Users microservice again.
+     *
+     * @param userId ID of the user
+     */
+    public void invalidate(String userId) {
+        accountTypes.invalidate(userId);
+    }
+
+    /**
+     * Exposes the hits, misses, evictions and loads of the {@code accountTypes} cache, and the time refreshes take
+     * as {@code cache.refresh}.
+     *
+     * @param registry registry to add the meters to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, accountTypes, "accountTypes");
+        FunctionTimer.builder("cache.refresh", this, cache -> cache.refreshes.get(),
+                cache -> cache.refreshNanos.get(), TimeUnit.NANOSECONDS)
+            .tags("cache", "accountTypes")
+            .description("Account type refreshes in the background")
+            .register(registry);
+    }
+
+    /**
+     * Asks the Users microservice, several users in one go when they are looked up together.
+     * A failure to reach it is thrown so that a stale account type is kept.
+     */
+    private final class AccountTypeLoader implements CacheLoader<String, AccountType> {
+
+        @Override
+        public AccountType load(String userId) {
+            return AccountType.fromValue(usersCommunication.getAccountType(userId));
+        }
+
+        @Override
+        public Map<String, AccountType> loadAll(Iterable<? extends String> userIds) {
+            List<String> ids = new ArrayList<>();
+            userIds.forEach(ids::add);
+            Map<String, AccountType> types = new HashMap<>();
+            usersCommunication.getAccountTypes(ids)
+                .forEach((userId, type) -> types.put(userId, AccountType.fromValue(type)));
+            return types;
+        }
+
+        @Override
+        public AccountType reload(String userId, AccountType oldValue) {
+            long start = System.nanoTime();
+            try {
+                return load(userId);
+            } finally {
+                refreshNanos.addAndGet(System.nanoTime() - start);
+                refreshes.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Unknown users expire after a short time, known ones only once they could not be refreshed for long.
+     */
+    private static final class AccountTypeExpiry implements Expiry<String, AccountType> {
+
+        private final transient long invalidTtlNanos;
+
+        private final transient long maxStaleNanos;
+
+        private AccountTypeExpiry(Duration invalidTtl, Duration maxStale) {
+            this.invalidTtlNanos = invalidTtl.toNanos();
+            this.maxStaleNanos = maxStale.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(String userId, AccountType accountType, long currentTime) {
+            return accountType == AccountType.INVALID ? invalidTtlNanos : maxStaleNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String userId, AccountType accountType, long currentTime,
+                                      long currentDuration) {
+            return expireAfterCreate(userId, accountType, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String userId, AccountType accountType, long currentTime,
+                                    long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType;
+import org.apache.commons.lang3.tuple.Pair;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.util.Base64;
+
+/**
+ * Reads the account type of the caller from the signed token sent along with a request, so that checking who is
+ * calling an endpoint does not have to ask the Users microservice.
+ * The token is a JWT signed with HS256 and {@code jwt.secret}, carrying the user in its {@code sub} claim, the
+ * account type in its {@code type} claim and when it expires in its {@code exp} claim. A token is verified once,
+ * later requests with it reuse the outcome until the token expires.
+ * Reading tokens is off unless enabled, and can only be enabled with a secret of at least 32 bytes other than the
+ * example secret committed with the service, as anyone knowing the secret can sign in as any user.
+ */
+@Service
+public class AccountTypeTokens implements MeterBinder {
+
+    private static final String BEARER = "Bearer ";
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final String EXAMPLE_SECRET = "exampleSecret";
+
+    private static final int MIN_SECRET_BYTES = 32;
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final Claims NOT_VALID = new Claims(null, AccountType.INVALID, 0);
+
+    private final transient SecretKeySpec key;
+
+    private final transient Cache<String, Claims> verified;
+
+    private final transient Clock clock;
+
+    /**
+     * Constructor.
+     *
+     * @param enabled   whether account types are read from tokens, otherwise none is
+     * @param secret    secret the tokens are signed with
+     * @param cacheSize most tokens whose verification is remembered
+     */
+    @Autowired
+    public AccountTypeTokens(@Value("${delivery.auth.tokens.enabled:false}") boolean enabled,
+                             @Value("${jwt.secret:}") String secret,
+                             @Value("${delivery.auth.tokens.cache-size:10000}") long cacheSize) {
+        this(enabled, secret, cacheSize, Clock.systemUTC());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param enabled   whether account types are read from tokens, otherwise none is
+     * @param secret    secret the tokens are signed with
+     * @param cacheSize most tokens whose verification is remembered
+     * @param clock     source of the time tokens expire by
+     * @throws IllegalArgumentException when enabled with the example secret or one shorter than 32 bytes
+     */
+    public AccountTypeTokens(boolean enabled, String secret, long cacheSize, Clock clock) {
+        if (enabled && (secret == null || EXAMPLE_SECRET.equals(secret)
+            || secret.getBytes(StandardCharsets.UTF_8).length < MIN_SECRET_BYTES)) {
+            throw new IllegalArgumentException("Tokens can only be read with a jwt.secret of at least "
+                + MIN_SECRET_BYTES + " bytes other than the example one");
+        }
+        this.key = enabled ? new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM) : null;
+        this.verified = Caffeine.newBuilder().maximumSize(cacheSize).recordStats().build();
+        this.clock = clock;
+    }
+
+    /**
+     * Tokens are not read, every account type is asked from the Users microservice.
+     *
+     * @return tokens that are never read
+     */
+    public static AccountTypeTokens disabled() {
+        return new AccountTypeTokens(false, null, 0, Clock.systemUTC());
+    }
+
+    /**
+     * Reads the user and account type from the Authorization header of a request.
+     *
+     * @param authorization value of the Authorization header, a bearer token
+     * @return the user and their account type, null when there is no token or it is not valid, expired, has no
+     *         expiry, or carries no known account type
+     */
+    public Pair<String, AccountType> read(String authorization) {
+        if (key == null || authorization == null || !authorization.startsWith(BEARER)) {
+            return null;
+        }
+        Claims claims = verified.get(authorization.substring(BEARER.length()).trim(), this::verify);
+        if (claims == NOT_VALID || claims.expiresAtMillis <= clock.millis()) {
+            return null;
+        }
+        return Pair.of(claims.subject, claims.accountType);
+    }
+
+    private Claims verify(String token) {
+        String[] parts = token.split("\\.", -1);
+        if (parts.length != 3) {
+            return NOT_VALID;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            JsonNode header = mapper.readTree(decoder.decode(parts[0]));
+            // Only the algorithm we sign with, never "none"
+            if (!"HS256".equals(header.path("alg").asText())) {
+                return NOT_VALID;
+            }
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            byte[] signature = mac.doFinal((parts[0] + "." + parts[1]).getBytes(StandardCharsets.US_ASCII));
+            if (!MessageDigest.isEqual(signature, decoder.decode(parts[2]))) {
+                return NOT_VALID;
+            }
+            JsonNode payload = mapper.readTree(decoder.decode(parts[1]));
+            JsonNode subject = payload.get("sub");
+            AccountType accountType = AccountType.fromValue(payload.path("type").asText());
+            if (subject == null || !subject.isTextual() || accountType == AccountType.INVALID) {
+                return NOT_VALID;
+            }
+            // A token that never expires could not be taken back
+            JsonNode expiresAt = payload.get("exp");
+            if (expiresAt == null || !expiresAt.isNumber()) {
+                return NOT_VALID;
+            }
+            return new Claims(subject.asText(), accountType, expiresAt.asLong() * 1000);
+        } catch (IllegalArgumentException | GeneralSecurityException | IOException e) {
+            return NOT_VALID;
+        }
+    }
+
+    /**
+     * Exposes the hits, misses and evictions of the {@code accountTypeTokens} cache.
+     *
+     * @param registry registry to add the meters to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, verified, "accountTypeTokens");
+    }
+
+    /**
+     * What a verified token says about its user.
+     */
+    private static final class Claims {
+
+        private final transient String subject;
+
+        private final transient AccountType accountType;
+
+        private final transient long expiresAtMillis;
+
+        private Claims(String subject, AccountType accountType, long expiresAtMillis) {
+            this.subject = subject;
+            this.accountType = accountType;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
+import nl.tudelft.sem.template.model.Restaurant;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the restaurant every restaurant-employed courier works for in memory, so that finding it
+ * does not scan the couriers of all restaurants in the database.
+ * All restaurants are loaded on first use, after which {@link RestaurantChangedEvent}s keep the index up to date.
+ */
+@Service
+public class CourierRestaurantIndex {
+
+    private final transient RestaurantRepository restaurantRepository;
+
+    private final transient Map<String, String> restaurantOfCourier = new ConcurrentHashMap<>();
+
+    private final transient Map<String, Set<String>> couriersOfRestaurant = new ConcurrentHashMap<>();
+
+    private transient volatile boolean loaded;
+
+    /**
+     * Constructor.
+     *
+     * @param restaurantRepository database for restaurants
+     */
+    public CourierRestaurantIndex(RestaurantRepository restaurantRepository) {
+        this.restaurantRepository = restaurantRepository;
+    }
+
+    /**
+     * Get the restaurant a courier works for.
+     *
+     * @param courierId ID of the courier
+     * @return ID of the restaurant, empty if the courier works for all restaurants
+     */
+    public Optional<String> getRestaurantOf(String courierId) {
+        if (courierId == null) {
+            return Optional.empty();
+        }
+        if (!loaded) {
+            load();
+        }
+        return Optional.ofNullable(restaurantOfCourier.get(courierId));
+    }
+
+    /**
+     * Get the restaurants several couriers work for at once.
+     *
+     * @param courierIds IDs of the couriers
+     * @return ID of the restaurant of every courier that works for one, couriers of all restaurants are left out
+     */
+    public Map<String, String> getRestaurantsOf(Collection<String> courierIds) {
+        if (!loaded) {
+            load();
+        }
+        Map<String, String> restaurants = new HashMap<>();
+        for (String courierId : courierIds) {
+            String restaurantId = courierId == null ? null : restaurantOfCourier.get(courierId);
+            if (restaurantId != null) {
+                restaurants.put(courierId, restaurantId);
+            }
+        }
+        return restaurants;
+    }
+
+    /**
+     * Moves the couriers of a restaurant that changed or was deleted.
+     *
+     * @param event the change to the restaurant
+     */
+    @EventListener
+    public synchronized void onRestaurantChanged(RestaurantChangedEvent event) {
+        if (loaded) {
+            index(event.getRestaurantId(), event.getRestaurant() == null ? null : event.getRestaurant().getCouriers());
+        }
+    }
+
+    /**
+     * Forget all restaurants, the next lookup loads them again.
+     */
+    public synchronized void clear() {
+        loaded = false;
+        restaurantOfCourier.clear();
+        couriersOfRestaurant.clear();
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        for (Restaurant restaurant : restaurantRepository.findAll()) {
+            index(restaurant.getRestaurantID(), restaurant.getCouriers());
+        }
+        loaded = true;
+    }
+
+    private void index(String restaurantId, List<String> couriers) {
+        Set<String> previous = couriers == null || couriers.isEmpty()
+            ? couriersOfRestaurant.remove(restaurantId)
+            : couriersOfRestaurant.put(restaurantId, Set.copyOf(couriers));
+        if (previous != null) {
+            previous.forEach(courierId -> restaurantOfCourier.remove(courierId, restaurantId));
+        }
+        if (couriers != null) {
+            couriers.forEach(courierId -> restaurantOfCourier.put(courierId, restaurantId));
+        }
+    }
+}
@@ -1,13 +1,14 @@
 package nl.tudelft.sem.template.delivery.services;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
 import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
 import nl.tudelft.sem.template.model.Delivery;
-import nl.tudelft.sem.template.model.Restaurant;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -18,7 +19,7 @@ public class CouriersService {
 
     private final transient DeliveryRepository deliveryRepository;
 
-    private final transient RestaurantRepository restaurantRepository;
+    private final transient CourierRestaurantIndex courierRestaurantIndex;
 
     /**
      * Constructor for CouriersService.
@@ -26,10 +27,20 @@ public class CouriersService {
      * @param deliveryRepository   database for deliveries
      * @param restaurantRepository database for restaurants
      */
-    @Autowired
     public CouriersService(DeliveryRepository deliveryRepository, RestaurantRepository restaurantRepository) {
+        this(deliveryRepository, new CourierRestaurantIndex(restaurantRepository));
+    }
+
+    /**
+     * Constructor for CouriersService.
+     *
+     * @param deliveryRepository     database for deliveries
+     * @param courierRestaurantIndex index of the restaurants couriers work for
+     */
+    @Autowired
+    public CouriersService(DeliveryRepository deliveryRepository, CourierRestaurantIndex courierRestaurantIndex) {
         this.deliveryRepository = deliveryRepository;
-        this.restaurantRepository = restaurantRepository;
+        this.courierRestaurantIndex = courierRestaurantIndex;
     }
 
     /**
@@ -52,8 +63,27 @@ public class CouriersService {
      * @return boolean value indicating if courier belongs to a restaurant
      */
     public boolean courierBelongsToRestaurant(String courierId) {
-        Optional<Restaurant> restaurant = restaurantRepository.findRestaurantByCouriersContains(courierId);
-        return restaurant.isPresent();
+        return getRestaurantOfCourier(courierId).isPresent();
+    }
+
+    /**
+     * Gets the restaurant a courier works for.
+     *
+     * @param courierId id of the courier
+     * @return id of the restaurant, empty if the courier works for all restaurants
+     */
+    public Optional<String> getRestaurantOfCourier(String courierId) {
+        return courierRestaurantIndex.getRestaurantOf(courierId);
+    }
+
+    /**
+     * Finds which of several couriers belong to a restaurant, with one lookup for all of them.
+     *
+     * @param courierIds ids of the couriers being checked
+     * @return ids of the couriers that belong to a restaurant
+     */
+    public Set<String> getCouriersBelongingToRestaurants(Collection<String> courierIds) {
+        return courierRestaurantIndex.getRestaurantsOf(courierIds).keySet();
     }
 
     public List<Delivery> getDeliveriesForCourierRatings(String courierId) {
@@ -9,13 +9,15 @@ import nl.tudelft.sem.template.model.Error;
 import nl.tudelft.sem.template.model.Restaurant;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 
 
@@ -25,6 +27,13 @@ import java.util.stream.Collectors;
 @Service
 public class DeliveryService {
 
+    /**
+     * ID that sorts before every other, the IDs being compared as bytes.
+     */
+    private static final UUID FIRST_ID = new UUID(0, 0);
+
+    private static final double EARTH_RADIUS_KM = 6371;
+
     private final transient DeliveryRepository deliveryRepository;
     @Lazy
     private final transient RestaurantRepository restaurantRepository;
@@ -32,6 +41,8 @@ public class DeliveryService {
     @Lazy
     private final transient ErrorRepository errorRepository;
 
+    private final transient RestaurantCourierCache restaurantCourierCache;
+
     /**
      * Constructor for DeliveryService.
      *
@@ -39,13 +50,30 @@ public class DeliveryService {
      * @param restaurantRepository database for restaurants
      * @param errorRepository      database for errors
      */
-    @Autowired
     public DeliveryService(DeliveryRepository deliveryRepository,
                            RestaurantRepository restaurantRepository,
                            ErrorRepository errorRepository) {
+        this(deliveryRepository, restaurantRepository, errorRepository,
+            new RestaurantCourierCache(restaurantRepository));
+    }
+
+    /**
+     * Constructor for DeliveryService.
+     *
+     * @param deliveryRepository     database for deliveries
+     * @param restaurantRepository   database for restaurants
+     * @param errorRepository        database for errors
+     * @param restaurantCourierCache own couriers and locations of restaurants
+     */
+    @Autowired
+    public DeliveryService(DeliveryRepository deliveryRepository,
+                           RestaurantRepository restaurantRepository,
+                           ErrorRepository errorRepository,
+                           RestaurantCourierCache restaurantCourierCache) {
         this.deliveryRepository = deliveryRepository;
         this.restaurantRepository = restaurantRepository;
         this.errorRepository = errorRepository;
+        this.restaurantCourierCache = restaurantCourierCache;
     }
 
     /**
@@ -55,14 +83,54 @@ public class DeliveryService {
      * @return boolean value showing whether restaurant uses own couriers
      */
     public boolean restaurantUsesOwnCouriers(Delivery delivery) {
-        List<String> couriers = getRestaurant(delivery.getRestaurantID()).getCouriers();
+        return restaurantCourierCache.usesOwnCouriers(delivery.getRestaurantID());
+    }
+
+    /**
+     * Check if restaurant uses own couriers.
+     *
+     * @param restaurant restaurant that prepares the delivery
+     * @return boolean value showing whether restaurant uses own couriers
+     */
+    public boolean restaurantUsesOwnCouriers(Restaurant restaurant) {
+        List<String> couriers = restaurant.getCouriers();
         return !(couriers == null || couriers.isEmpty());
     }
 
+    /**
+     * Get the own couriers of a restaurant.
+     *
+     * @param restaurantId ID of restaurant
+     * @return the couriers, empty if the restaurant works with all couriers
+     */
+    public Set<String> getOwnCouriers(String restaurantId) {
+        return restaurantCourierCache.getCouriers(restaurantId);
+    }
+
+    /**
+     * Get the location of a restaurant.
+     *
+     * @param restaurantId ID of restaurant
+     * @return latitude and longitude of the restaurant, null if unknown
+     */
+    public List<Double> getRestaurantLocation(String restaurantId) {
+        return restaurantCourierCache.getLocation(restaurantId);
+    }
+
     public Delivery getDelivery(UUID deliveryId) {
         return deliveryRepository.findById(deliveryId).orElseThrow(DeliveryNotFoundException::new);
     }
 
+    /**
+     * Get a delivery and lock it until the surrounding transaction ends.
+     *
+     * @param deliveryId ID of the delivery
+     * @return the delivery
+     */
+    public Delivery getDeliveryForUpdate(UUID deliveryId) {
+        return deliveryRepository.findByIdForUpdate(deliveryId).orElseThrow(DeliveryNotFoundException::new);
+    }
+
     /**
      * Adds a delivery object to the database.
      *
@@ -130,15 +198,56 @@ public class DeliveryService {
     }
 
     /**
-     * Retrieves all accepted deliveries without an assigned courier.
+     * Retrieves a page of the accepted deliveries without an assigned courier, ordered by ID.
+     * Latitude, longitude and radius either all limit the deliveries to restaurants in an area, or are all null.
      *
+     * @param after        ID the IDs of the deliveries come after, null for the first page
+     * @param limit        most deliveries returned
+     * @param restaurantId ID of the restaurant of the deliveries, null for any restaurant
+     * @param latitude     latitude of the center of the area
+     * @param longitude    longitude of the center of the area
+     * @param radius       radius of the area in kilometers
+     * @return a list of delivery objects
+     */
+    public List<Delivery> getAcceptedDeliveries(UUID after, int limit, String restaurantId,
+                                                Double latitude, Double longitude, Double radius) {
+        UUID from = after == null ? FIRST_ID : after;
+        Pageable page = PageRequest.of(0, limit);
+        if (latitude == null) {
+            return restaurantId == null
+                ? deliveryRepository.findUnassignedPage(DeliveryStatus.ACCEPTED, from, page)
+                : deliveryRepository.findUnassignedRestaurantPage(DeliveryStatus.ACCEPTED, restaurantId, from, page);
+        }
+        double longitudeScale = Math.cos(Math.toRadians(latitude));
+        double squaredLongitudeScale = longitudeScale * longitudeScale;
+        double radiusDegrees = Math.toDegrees(radius / EARTH_RADIUS_KM);
+        double squaredRadiusDegrees = radiusDegrees * radiusDegrees;
+        return restaurantId == null
+            ? deliveryRepository.findUnassignedPageNear(DeliveryStatus.ACCEPTED, latitude, longitude,
+                squaredLongitudeScale, squaredRadiusDegrees, from, page)
+            : deliveryRepository.findUnassignedRestaurantPageNear(DeliveryStatus.ACCEPTED, restaurantId, latitude,
+                longitude, squaredLongitudeScale, squaredRadiusDegrees, from, page);
+    }
+
+    /**
+     * Retrieves the deliveries of a restaurant that are accepted or being prepared and have no courier yet.
+     *
+     * @param restaurantId ID of restaurant
+     * @return a list of delivery objects
+     */
+    public List<Delivery> getUnassignedRestaurantDeliveries(String restaurantId) {
+        return deliveryRepository.findUnassignedByRestaurant(restaurantId,
+            List.of(DeliveryStatus.ACCEPTED, DeliveryStatus.PREPARING));
+    }
+
+    /**
+     * Retrieves all deliveries prepared by a restaurant.
+     *
+     * @param restaurantId ID of restaurant
      * @return a list of delivery objects
      */
-    public List<Delivery> getAcceptedDeliveries() {
-        return deliveryRepository.findAll().stream()
-                .filter(delivery -> delivery.getCourierID() == null
-                        && delivery.getStatus().equals(DeliveryStatus.ACCEPTED))
-                .collect(Collectors.toList());
+    public List<Delivery> getRestaurantDeliveries(String restaurantId) {
+        return deliveryRepository.findAllByrestaurantID(restaurantId);
     }
 
     /**
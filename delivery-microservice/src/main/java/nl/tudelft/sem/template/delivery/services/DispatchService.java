@@ -0,0 +1,129 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import nl.tudelft.sem.template.delivery.AvailableDeliveryProxy;
+import nl.tudelft.sem.template.delivery.HungarianAlgorithm;
+import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
+import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
+import nl.tudelft.sem.template.model.CourierAssignment;
+import nl.tudelft.sem.template.model.CourierPosition;
+import nl.tudelft.sem.template.model.Delivery;
+import nl.tudelft.sem.template.model.DeliveryStatus;
+import nl.tudelft.sem.template.model.Restaurant;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Assigns available deliveries to a group of couriers in a single round,
+ * minimizing the total time the couriers need to reach the restaurants.
+ */
+@Service
+public class DispatchService {
+
+    private final transient AvailableDeliveryProxy availableDeliveryProxy;
+
+    private final transient DeliveryRepository deliveryRepository;
+
+    private final transient RestaurantRepository restaurantRepository;
+
+    private final transient TimeCalculationService timeCalculationService;
+
+    private final transient UpdateService updateService;
+
+    private final transient int maxCandidates;
+
+    /**
+     * Constructor.
+     *
+     * @param availableDeliveryProxy proxy that keeps track of the deliveries without courier
+     * @param deliveryRepository     database for deliveries
+     * @param restaurantRepository   database for restaurants
+     * @param timeCalculationService service estimating the travel times
+     * @param updateService          service of all updates
+     * @param maxCandidates          maximum number of (earliest ready) deliveries considered in a round
+     */
+    public DispatchService(AvailableDeliveryProxy availableDeliveryProxy,
+                           DeliveryRepository deliveryRepository,
+                           RestaurantRepository restaurantRepository,
+                           TimeCalculationService timeCalculationService,
+                           UpdateService updateService,
+                           @Value("${delivery.dispatch.batch.max-candidates:2000}") int maxCandidates) {
+        if (maxCandidates <= 0) {
+            throw new IllegalArgumentException("Maximum number of dispatch candidates must be positive");
+        }
+        this.availableDeliveryProxy = availableDeliveryProxy;
+        this.deliveryRepository = deliveryRepository;
+        this.restaurantRepository = restaurantRepository;
+        this.timeCalculationService = timeCalculationService;
+        this.updateService = updateService;
+        this.maxCandidates = maxCandidates;
+    }
+
+    /**
+     * Assigns one available delivery to as many of the couriers as possible.
+     * A delivery taken by someone else while the round is computed is not assigned,
+     * its courier can simply ask again.
+     *
+     * @param couriers idle couriers with their locations
+     * @return the assignments that were made
+     */
+    public List<CourierAssignment> dispatch(List<CourierPosition> couriers) {
+        List<CourierAssignment> assignments = new ArrayList<>();
+        if (couriers.isEmpty()) {
+            return assignments;
+        }
+        List<Delivery> deliveries = deliveryRepository
+            .findAllById(availableDeliveryProxy.getAvailableDeliveryIds(maxCandidates));
+        Map<String, Restaurant> restaurants = restaurantRepository.findAllById(deliveries.stream()
+                .map(Delivery::getRestaurantID).filter(Objects::nonNull).distinct().collect(Collectors.toList()))
+            .stream().collect(Collectors.toMap(Restaurant::getRestaurantID, Function.identity()));
+        List<Delivery> candidates = deliveries.stream()
+            .filter(delivery -> isDispatchable(delivery, restaurants.get(delivery.getRestaurantID())))
+            .collect(Collectors.toList());
+
+        double[][] cost = new double[couriers.size()][candidates.size()];
+        for (int i = 0; i < couriers.size(); i++) {
+            for (int j = 0; j < candidates.size(); j++) {
+                List<Double> restaurantLocation = restaurants.get(candidates.get(j).getRestaurantID()).getLocation();
+                cost[i][j] = timeCalculationService.computeExactTransitTime(couriers.get(i).getLocation(),
+                    restaurantLocation);
+            }
+        }
+        int[] assignment = HungarianAlgorithm.solve(cost);
+
+        for (int i = 0; i < couriers.size(); i++) {
+            if (assignment[i] < 0) {
+                continue;
+            }
+            UUID deliveryId = candidates.get(assignment[i]).getDeliveryID();
+            String courierId = couriers.get(i).getCourierID();
+            if (availableDeliveryProxy.claimDelivery(deliveryId)
+                    && updateService.claimDelivery(deliveryId, courierId).isPresent()) {
+                assignments.add(new CourierAssignment()
+                    .courierID(courierId)
+                    .deliveryID(deliveryId)
+                    .transitTime((int) Math.round(cost[i][assignment[i]])));
+            }
+        }
+        return assignments;
+    }
+
+    private boolean isDispatchable(Delivery delivery, Restaurant restaurant) {
+        if (restaurant == null || delivery.getCourierID() != null) {
+            return false;
+        }
+        List<Double> location = restaurant.getLocation();
+        List<String> ownCouriers = restaurant.getCouriers();
+        return location != null && location.size() == 2
+            && (ownCouriers == null || ownCouriers.isEmpty())
+            && (DeliveryStatus.ACCEPTED.equals(delivery.getStatus())
+            || DeliveryStatus.PREPARING.equals(delivery.getStatus()));
+    }
+}
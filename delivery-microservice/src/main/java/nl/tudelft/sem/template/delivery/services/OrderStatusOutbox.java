@@ -0,0 +1,173 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import nl.tudelft.sem.template.delivery.communication.UsersCommunication;
+import nl.tudelft.sem.template.delivery.domain.OrderStatusOutboxRepository;
+import nl.tudelft.sem.template.delivery.domain.OrderStatusUpdate;
+import nl.tudelft.sem.template.model.DeliveryStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Sends the status changes of orders to the Orders microservice after they are committed.
+ * A status change is stored in the same transaction as the delivery it belongs to, and sent in the background,
+ * so that changing the status of a delivery does not wait for, or fail with, the Orders microservice.
+ * Changes of different orders are sent concurrently, those of one order one after the other in the order they were
+ * made. A change that cannot be sent is retried with exponential backoff, holding back the later changes of its order.
+ * Changes are claimed before they are sent, so that dispatches of several instances never send the same change, and
+ * the claim of an instance that stops while sending runs out after a while.
+ */
+@Service
+public class OrderStatusOutbox {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatusOutbox.class);
+
+    private final transient OrderStatusOutboxRepository outboxRepository;
+
+    private final transient UsersCommunication usersCommunication;
+
+    private final transient int batchSize;
+
+    private final transient long initialBackoffMillis;
+
+    private final transient long maxBackoffMillis;
+
+    private final transient long claimMillis;
+
+    private final transient Clock clock;
+
+    /**
+     * Constructor.
+     *
+     * @param outboxRepository     table the status changes are stored in until they are sent
+     * @param usersCommunication   client of the Orders microservice
+     * @param batchSize            most status changes sent per dispatch
+     * @param initialBackoffMillis milliseconds before the first retry of a change that could not be sent
+     * @param maxBackoffMillis     most milliseconds between two retries
+     * @param claimMillis          milliseconds a dispatch has to send the changes it claimed
+     */
+    @Autowired
+    public OrderStatusOutbox(OrderStatusOutboxRepository outboxRepository,
+                             UsersCommunication usersCommunication,
+                             @Value("${delivery.outbox.batch-size:100}") int batchSize,
+                             @Value("${delivery.outbox.initial-backoff-ms:1000}") long initialBackoffMillis,
+                             @Value("${delivery.outbox.max-backoff-ms:60000}") long maxBackoffMillis,
+                             @Value("${delivery.outbox.claim-ms:60000}") long claimMillis) {
+        this(outboxRepository, usersCommunication, batchSize, initialBackoffMillis, maxBackoffMillis, claimMillis,
+            Clock.systemUTC());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param outboxRepository     table the status changes are stored in until they are sent
+     * @param usersCommunication   client of the Orders microservice
+     * @param batchSize            most status changes sent per dispatch
+     * @param initialBackoffMillis milliseconds before the first retry of a change that could not be sent
+     * @param maxBackoffMillis     most milliseconds between two retries
+     * @param claimMillis          milliseconds a dispatch has to send the changes it claimed
+     * @param clock                source of the time
+     */
+    public OrderStatusOutbox(OrderStatusOutboxRepository outboxRepository, UsersCommunication usersCommunication,
+                             int batchSize, long initialBackoffMillis, long maxBackoffMillis, long claimMillis,
+                             Clock clock) {
+        if (batchSize <= 0 || initialBackoffMillis <= 0 || maxBackoffMillis < initialBackoffMillis
+            || claimMillis <= 0) {
+            throw new IllegalArgumentException("Outbox batch size, backoff and claim time must be positive");
+        }
+        this.outboxRepository = outboxRepository;
+        this.usersCommunication = usersCommunication;
+        this.batchSize = batchSize;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.claimMillis = claimMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Stores a status change of an order, to be sent once the current transaction commits.
+     *
+     * @param orderId ID of the order
+     * @param status  new status of the order
+     */
+    public void enqueue(UUID orderId, DeliveryStatus status) {
+        outboxRepository.save(new OrderStatusUpdate(orderId, status.toString(), clock.millis()));
+    }
+
+    /**
+     * Claims and sends the oldest status changes that are due, and removes the ones the Orders microservice received.
+     *
+     * @return number of status changes sent
+     */
+    @Scheduled(fixedDelayString = "${delivery.outbox.poll-interval-ms:500}")
+    public int dispatch() {
+        long claimedAt = clock.millis();
+        List<OrderStatusUpdate> due = outboxRepository.claimDue(claimedAt, claimedAt + claimMillis,
+            PageRequest.of(0, batchSize));
+        if (due.isEmpty()) {
+            return 0;
+        }
+        Map<UUID, List<OrderStatusUpdate>> updatesByOrder = due.stream()
+            .collect(Collectors.groupingBy(OrderStatusUpdate::getOrderId, LinkedHashMap::new, Collectors.toList()));
+        Set<Long> sentIds = ConcurrentHashMap.newKeySet();
+        List<CompletableFuture<Void>> orders = new ArrayList<>();
+        updatesByOrder.values().forEach(updates -> orders.add(sendInOrder(updates, sentIds)));
+        CompletableFuture.allOf(orders.toArray(new CompletableFuture[0])).join();
+
+        List<OrderStatusUpdate> sent = new ArrayList<>();
+        List<OrderStatusUpdate> failed = new ArrayList<>();
+        List<Long> unsentIds = new ArrayList<>();
+        long now = clock.millis();
+        for (List<OrderStatusUpdate> updates : updatesByOrder.values()) {
+            boolean orderFailed = false;
+            for (OrderStatusUpdate update : updates) {
+                if (orderFailed) {
+                    // The later changes of the order wait for the failed one
+                    unsentIds.add(update.getId());
+                } else if (sentIds.contains(update.getId())) {
+                    sent.add(update);
+                } else {
+                    update.failedAttempt(now + backoffMillis(update.getAttempts() + 1));
+                    failed.add(update);
+                    orderFailed = true;
+                    logger.warn("Could not send status {} of order {}, attempt {}", update.getStatus(),
+                        update.getOrderId(), update.getAttempts());
+                }
+            }
+        }
+        outboxRepository.finishDispatch(sent, failed, unsentIds, now);
+        return sent.size();
+    }
+
+    /**
+     * Sends the changes of one order one after the other, stopping at the first one that fails.
+     */
+    private CompletableFuture<Void> sendInOrder(List<OrderStatusUpdate> updates, Set<Long> sentIds) {
+        CompletableFuture<Void> sending = CompletableFuture.completedFuture(null);
+        for (OrderStatusUpdate update : updates) {
+            sending = sending.thenCompose(previous -> usersCommunication
+                .updateOrderStatusAsync(update.getOrderId(), update.getStatus())
+                .thenRun(() -> sentIds.add(update.getId())));
+        }
+        return sending.exceptionally(e -> null);
+    }
+
+    private long backoffMillis(int attempts) {
+        return Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempts - 1, 30));
+    }
+}
@@ -0,0 +1,33 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import nl.tudelft.sem.template.model.Restaurant;
+
+/**
+ * Published when a restaurant is created, its own couriers or location change, or it is deleted,
+ * so that state kept in memory about the restaurant can be brought up to date.
+ */
+public class RestaurantChangedEvent {
+
+    private final transient String restaurantId;
+
+    private final transient Restaurant restaurant;
+
+    /**
+     * Constructor.
+     *
+     * @param restaurantId ID of the restaurant that changed
+     * @param restaurant   the restaurant after the change, null if it was deleted
+     */
+    public RestaurantChangedEvent(String restaurantId, Restaurant restaurant) {
+        this.restaurantId = restaurantId;
+        this.restaurant = restaurant;
+    }
+
+    public String getRestaurantId() {
+        return restaurantId;
+    }
+
+    public Restaurant getRestaurant() {
+        return restaurant;
+    }
+}
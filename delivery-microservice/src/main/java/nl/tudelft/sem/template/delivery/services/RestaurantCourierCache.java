@@ -0,0 +1,158 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
+import nl.tudelft.sem.template.model.Restaurant;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps the own couriers and the location of restaurants in memory, so that deciding whether a delivery
+ * can be handed out to any courier does not load the restaurant and its collections every time.
+ * Entries are dropped when a {@link RestaurantChangedEvent} reports that they changed.
+ */
+@Service
+public class RestaurantCourierCache implements MeterBinder {
+
+    private final transient RestaurantRepository restaurantRepository;
+
+    private final transient Map<String, CachedRestaurant> restaurants = new ConcurrentHashMap<>();
+
+    private final transient AtomicLong hits = new AtomicLong();
+
+    private final transient AtomicLong misses = new AtomicLong();
+
+    /**
+     * Number of invalidations so far, a restaurant loaded before an invalidation may be outdated and is not cached.
+     */
+    private final transient AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param restaurantRepository database for restaurants
+     */
+    public RestaurantCourierCache(RestaurantRepository restaurantRepository) {
+        this.restaurantRepository = restaurantRepository;
+    }
+
+    /**
+     * Get the own couriers of a restaurant.
+     *
+     * @param restaurantId ID of the restaurant
+     * @return the couriers, empty if the restaurant works with all couriers
+     */
+    public Set<String> getCouriers(String restaurantId) {
+        return get(restaurantId).couriers;
+    }
+
+    /**
+     * Check if restaurant uses own couriers.
+     *
+     * @param restaurantId ID of the restaurant
+     * @return boolean value showing whether restaurant uses own couriers
+     */
+    public boolean usesOwnCouriers(String restaurantId) {
+        return !getCouriers(restaurantId).isEmpty();
+    }
+
+    /**
+     * Get the location of a restaurant.
+     *
+     * @param restaurantId ID of the restaurant
+     * @return latitude and longitude of the restaurant, null if unknown
+     */
+    public List<Double> getLocation(String restaurantId) {
+        return get(restaurantId).location;
+    }
+
+    /**
+     * Forget everything about a restaurant, the next lookup loads it again.
+     *
+     * @param restaurantId ID of the restaurant
+     */
+    public void invalidate(String restaurantId) {
+        invalidations.incrementAndGet();
+        restaurants.remove(restaurantId);
+    }
+
+    /**
+     * Drops a restaurant when its couriers or location changed, or when it was deleted.
+     *
+     * @param event the change to the restaurant
+     */
+    @EventListener
+    public void onRestaurantChanged(RestaurantChangedEvent event) {
+        invalidate(event.getRestaurantId());
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Exposes the hits and misses as the {@code cache.gets} metric of the {@code restaurantCouriers} cache.
+     *
+     * @param registry registry to add the counters to
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get)
+            .tags("cache", "restaurantCouriers", "result", "hit")
+            .description("Restaurant courier lookups answered from memory")
+            .register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get)
+            .tags("cache", "restaurantCouriers", "result", "miss")
+            .description("Restaurant courier lookups that loaded the restaurant")
+            .register(registry);
+    }
+
+    private CachedRestaurant get(String restaurantId) {
+        if (restaurantId == null) {
+            throw new RestaurantService.RestaurantNotFoundException();
+        }
+        CachedRestaurant cached = restaurants.get(restaurantId);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        long invalidationsBefore = invalidations.get();
+        Restaurant restaurant = restaurantRepository.findById(restaurantId)
+            .orElseThrow(RestaurantService.RestaurantNotFoundException::new);
+        cached = new CachedRestaurant(restaurant);
+        if (invalidations.get() == invalidationsBefore) {
+            restaurants.putIfAbsent(restaurantId, cached);
+        }
+        return cached;
+    }
+
+    private static final class CachedRestaurant {
+
+        private final transient Set<String> couriers;
+
+        private final transient List<Double> location;
+
+        private CachedRestaurant(Restaurant restaurant) {
+            this.couriers = restaurant.getCouriers() == null ? Set.of()
+                : Collections.unmodifiableSet(new HashSet<>(restaurant.getCouriers()));
+            this.location = restaurant.getLocation() == null ? null
+                : Collections.unmodifiableList(new ArrayList<>(restaurant.getLocation()));
+        }
+    }
+}
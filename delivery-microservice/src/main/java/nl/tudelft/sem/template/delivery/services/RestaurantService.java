@@ -2,12 +2,12 @@ package nl.tudelft.sem.template.delivery.services;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
 import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
 import nl.tudelft.sem.template.model.Delivery;
 import nl.tudelft.sem.template.model.DeliveryStatus;
 import nl.tudelft.sem.template.model.Restaurant;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -24,14 +24,20 @@ public class RestaurantService {
     @Lazy
     private final transient DeliveryRepository deliveryRepository;
 
+    private final transient ApplicationEventPublisher eventPublisher;
+
     /**
      * Constructor.
      *
      * @param restaurantRepository repository restaurant is stored in
+     * @param deliveryRepository   repository deliveries are stored in
+     * @param eventPublisher       publisher of restaurant changes
      */
-    public RestaurantService(RestaurantRepository restaurantRepository, DeliveryRepository deliveryRepository) {
+    public RestaurantService(RestaurantRepository restaurantRepository, DeliveryRepository deliveryRepository,
+                             ApplicationEventPublisher eventPublisher) {
         this.restaurantRepository = restaurantRepository;
         this.deliveryRepository = deliveryRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -49,7 +55,9 @@ public class RestaurantService {
         try {
             getRestaurant(restaurant.getRestaurantID());
         } catch (RestaurantNotFoundException e) {
-            return restaurantRepository.save(restaurant);
+            Restaurant saved = restaurantRepository.save(restaurant);
+            eventPublisher.publishEvent(new RestaurantChangedEvent(saved.getRestaurantID(), saved));
+            return saved;
         }
         throw new IllegalRestaurantParametersException();
     }
@@ -93,16 +101,24 @@ public class RestaurantService {
 
 
     /**
-     * Gets all orders with status Preparing or Accepted.
+     * Gets all orders with status Preparing or Accepted that have no courier yet.
      *
      * @param restaurantId given restaurant for which we retrieve the new orders
      * @return a list of new orders
      */
     public List<Delivery> getAllNewOrders(String restaurantId) {
-        Restaurant r = restaurantRepository.findById(restaurantId).orElseThrow(RestaurantNotFoundException::new);
-        return deliveryRepository.findAllByrestaurantID(restaurantId).stream().filter(d -> d.getCourierID() == null)
-                .filter(d -> List.of(DeliveryStatus.PREPARING, DeliveryStatus.ACCEPTED)
-                        .contains(d.getStatus())).collect(Collectors.toList());
+        List<Object[]> rows = deliveryRepository.findUnassignedOfRestaurant(restaurantId,
+                List.of(DeliveryStatus.PREPARING, DeliveryStatus.ACCEPTED));
+        if (rows.isEmpty()) {
+            throw new RestaurantNotFoundException();
+        }
+        List<Delivery> orders = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            if (row[1] != null) {
+                orders.add((Delivery) row[1]);
+            }
+        }
+        return orders;
     }
 
     /**
@@ -119,6 +135,7 @@ public class RestaurantService {
             deliveryRepository.save(d);
         }
         restaurantRepository.deleteById(restaurantId);
+        eventPublisher.publishEvent(new RestaurantChangedEvent(restaurantId, null));
 
     }
 
@@ -148,6 +165,7 @@ public class RestaurantService {
                 .orElseThrow(RestaurantService.RestaurantNotFoundException::new);
         r.location(new ArrayList<>(requestBody));
         restaurantRepository.save(r);
+        eventPublisher.publishEvent(new RestaurantChangedEvent(restaurantId, r));
     }
 
     /**
@@ -175,6 +193,7 @@ public class RestaurantService {
                 .orElseThrow(RestaurantService.RestaurantNotFoundException::new);
         r.couriers(couriers);
         restaurantRepository.save(r);
+        eventPublisher.publishEvent(new RestaurantChangedEvent(restaurantId, r));
         return r;
     }
 }
@@ -142,6 +142,17 @@ public class TimeCalculationService {
      * @return minutes indicating the estimated time for bringing the food
      */
     public Integer computeTransitTime(List<Double> coordA, List<Double> coordB) {
+        return (int) Math.round(computeExactTransitTime(coordA, coordB));
+    }
+
+    /**
+     * Compute an estimate for the transit time between two points, without rounding to whole minutes.
+     *
+     * @param coordA provide coordinates of starting point
+     * @param coordB provide coordinates of finishing point
+     * @return minutes indicating the estimated time for travelling between the points
+     */
+    public double computeExactTransitTime(List<Double> coordA, List<Double> coordB) {
         double lat1 = coordA.get(0);
         double lon1 = coordA.get(1);
         double lat2 = coordB.get(0);
@@ -150,7 +161,7 @@ public class TimeCalculationService {
         // Average car speed worldwide km/h
         double avgVelocity = 30;
         // Return minutes
-        return (int) Math.round(60 * distance / avgVelocity);
+        return 60 * distance / avgVelocity;
     }
 
     /**
@@ -8,11 +8,15 @@ import org.springframework.stereotype.Service;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 @Service
 public class UpdateService {
 
+    private static final List<DeliveryStatus> CLAIMABLE_STATUSES = List.of(DeliveryStatus.ACCEPTED,
+        DeliveryStatus.PREPARING);
+
     private final transient DeliveryRepository deliveryRepository;
 
     /**
@@ -37,6 +41,21 @@ public class UpdateService {
         return deliveryRepository.save(delivery);
     }
 
+    /**
+     * Assign a courier to a delivery that is still waiting for one.
+     * The check and the assignment are a single conditional update, so a delivery is never claimed twice.
+     *
+     * @param deliveryId ID of a delivery to be claimed
+     * @param courierId ID of the courier claiming it
+     * @return the claimed delivery, or empty if it already has a courier or is no longer accepted or preparing
+     */
+    public Optional<Delivery> claimDelivery(UUID deliveryId, String courierId) {
+        if (deliveryRepository.claimDelivery(deliveryId, courierId, CLAIMABLE_STATUSES) == 0) {
+            return Optional.empty();
+        }
+        return deliveryRepository.findById(deliveryId);
+    }
+
     /**
      * Update the rating of a restaurant.
      *
@@ -1,26 +1,113 @@
 package nl.tudelft.sem.template.delivery.services;
 
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import nl.tudelft.sem.template.delivery.communication.UsersCommunication;
 import nl.tudelft.sem.template.model.Delivery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.apache.commons.lang3.tuple.Pair;
 
 
 @Service
 public class UsersAuthenticationService {
 
-    private final transient UsersCommunication usersCommunication;
+    private static final String RESOLVED_ACCOUNT_TYPES = UsersAuthenticationService.class.getName() + ".accountTypes";
+
+    private final transient AccountTypeCache accountTypeCache;
+
+    private final transient AccountTypeTokens accountTypeTokens;
 
     public UsersAuthenticationService(UsersCommunication usersCommunication) {
-        this.usersCommunication = usersCommunication;
+        this(new AccountTypeCache(usersCommunication), AccountTypeTokens.disabled());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param accountTypeCache  account types asked from the Users microservice
+     * @param accountTypeTokens account types read from the signed token of the caller
+     */
+    @Autowired
+    public UsersAuthenticationService(AccountTypeCache accountTypeCache, AccountTypeTokens accountTypeTokens) {
+        this.accountTypeCache = accountTypeCache;
+        this.accountTypeTokens = accountTypeTokens;
     }
 
+    /**
+     * Gets the account type of a user, from memory when it was looked up recently.
+     * Within an HTTP request a user is looked up once, later checks of the same request get the same answer.
+     * The caller of a request with a valid signed token gets the account type in the token, without a lookup.
+     *
+     * @param userId ID of the user
+     * @return the account type, INVALID if the user is unknown or the Users microservice cannot be reached
+     */
     public AccountType getUserAccountType(String userId) {
-        String accountTypeString = usersCommunication.getAccountType(userId);
-        return AccountType.fromValue(accountTypeString);
+        Map<String, AccountType> resolved = resolvedInCurrentRequest();
+        if (userId == null || resolved == null) {
+            return accountTypeCache.get(userId);
+        }
+        return resolved.computeIfAbsent(userId, accountTypeCache::get);
+    }
+
+    /**
+     * Gets the account types of several users, the ones not looked up recently are asked from the Users microservice
+     * together instead of one after the other.
+     *
+     * @param userIds IDs of the users
+     * @return the account type of every user, INVALID if the user is unknown or the Users microservice cannot be reached
+     */
+    public Map<String, AccountType> getUserAccountTypes(Collection<String> userIds) {
+        Map<String, AccountType> resolved = resolvedInCurrentRequest();
+        if (resolved == null) {
+            return accountTypeCache.getAll(userIds);
+        }
+        List<String> unresolved = userIds.stream()
+            .filter(userId -> userId != null && !resolved.containsKey(userId))
+            .distinct()
+            .collect(Collectors.toList());
+        resolved.putAll(accountTypeCache.getAll(unresolved));
+        Map<String, AccountType> types = new HashMap<>();
+        userIds.forEach(userId -> types.put(userId, userId == null ? AccountType.INVALID : resolved.get(userId)));
+        return types;
+    }
+
+    /**
+     * Account types already looked up while handling the current HTTP request, starting with the one in the token
+     * of the caller.
+     *
+     * @return the account types by user ID, null when not called from a request thread
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, AccountType> resolvedInCurrentRequest() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return null;
+        }
+        Map<String, AccountType> resolved = (Map<String, AccountType>) attributes
+            .getAttribute(RESOLVED_ACCOUNT_TYPES, RequestAttributes.SCOPE_REQUEST);
+        if (resolved == null) {
+            resolved = new HashMap<>();
+            if (attributes instanceof ServletRequestAttributes) {
+                Pair<String, AccountType> caller = accountTypeTokens.read(((ServletRequestAttributes) attributes)
+                    .getRequest().getHeader(HttpHeaders.AUTHORIZATION));
+                if (caller != null) {
+                    resolved.put(caller.getKey(), caller.getValue());
+                }
+            }
+            attributes.setAttribute(RESOLVED_ACCOUNT_TYPES, resolved, RequestAttributes.SCOPE_REQUEST);
+        }
+        return resolved;
     }
 
 
@@ -0,0 +1,201 @@
+package nl.tudelft.sem.template.delivery;
+
+import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
+import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
+import nl.tudelft.sem.template.delivery.services.AccountTypeCache;
+import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType;
+import nl.tudelft.sem.template.model.Delivery;
+import nl.tudelft.sem.template.model.DeliveryStatus;
+import nl.tudelft.sem.template.model.Restaurant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.transaction.Transactional;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Counts the account type lookups every endpoint sends to the {@link AccountTypeCache}, each of which may have to
+ * ask the Users microservice, and checks that one HTTP request looks up every user at most once.
+ */
+@SpringBootTest(properties = {"delivery.auth.tokens.enabled=true",
+    "jwt.secret=a-secret-of-at-least-thirty-two-bytes"})
+@AutoConfigureMockMvc
+@Transactional
+public class AccountTypeLookupBudgetTest {
+
+    private static final String ADMIN = "admin@testmail.com";
+    private static final String VENDOR = "budget-vendor@testmail.com";
+    private static final String COURIER = "budget-courier@testmail.com";
+    private static final String CUSTOMER = "budget-customer@testmail.com";
+    private static final String IN_AN_HOUR = ",\"exp\":" + (System.currentTimeMillis() / 1000 + 3600) + "}";
+
+    @MockBean
+    private AccountTypeCache accountTypeCache;
+
+    @Autowired
+    private DeliveryRepository deliveryRepository;
+    @Autowired
+    private RestaurantRepository restaurantRepository;
+    @Autowired
+    private MockMvc mockMvc;
+    @Value("${jwt.secret}")
+    private String jwtSecret;
+
+    private UUID deliveryId;
+
+    @BeforeEach
+    void setUp() {
+        when(accountTypeCache.get(anyString())).thenAnswer(invocation -> accountType(invocation.getArgument(0)));
+        restaurantRepository.save(new Restaurant()
+                .restaurantID(VENDOR)
+                .location(List.of(10.0, 10.0))
+                .deliveryZone(10.0)
+                .couriers(new ArrayList<>(List.of(COURIER))));
+        deliveryId = deliveryRepository.save(new Delivery()
+                .deliveryID(UUID.randomUUID())
+                .restaurantID(VENDOR)
+                .customerID(CUSTOMER)
+                .courierID(COURIER)
+                .status(DeliveryStatus.ACCEPTED)).getDeliveryID();
+    }
+
+    private static AccountType accountType(String userId) {
+        return switch (userId) {
+            case ADMIN -> AccountType.ADMIN;
+            case VENDOR -> AccountType.VENDOR;
+            case COURIER -> AccountType.COURIER;
+            case CUSTOMER -> AccountType.CLIENT;
+            default -> AccountType.INVALID;
+        };
+    }
+
+    /**
+     * Performs the request and returns the number of lookups per user.
+     */
+    private Map<String, Long> lookupsOf(RequestBuilder request, int expectedStatus) throws Exception {
+        clearInvocations(accountTypeCache);
+        mockMvc.perform(request).andExpect(status().is(expectedStatus));
+        return Mockito.mockingDetails(accountTypeCache).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("get"))
+                .map(invocation -> (String) invocation.getArgument(0))
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()));
+    }
+
+    @Test
+    void deliveryRestaurantGetLooksUpUserOnce() throws Exception {
+        assertThat(lookupsOf(get("/deliveries/{deliveryId}/restaurant", deliveryId).header("userId", VENDOR), 200))
+                .containsExactly(Map.entry(VENDOR, 1L));
+    }
+
+    @Test
+    void deliveryPickupPutLooksUpUserOnce() throws Exception {
+        assertThat(lookupsOf(put("/deliveries/{deliveryId}/pickup", deliveryId).header("userId", COURIER)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("\"2023-12-10T13:00:00Z\""), 200))
+                .containsExactly(Map.entry(COURIER, 1L));
+    }
+
+    @Test
+    void forbiddenCustomerIsLookedUpOnce() throws Exception {
+        assertThat(lookupsOf(put("/deliveries/{deliveryId}/pickup", deliveryId).header("userId", CUSTOMER)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("\"2023-12-10T13:00:00Z\""), 403))
+                .containsExactly(Map.entry(CUSTOMER, 1L));
+    }
+
+    @Test
+    void deliveryCourierPutLooksUpEveryUserOnce() throws Exception {
+        assertThat(lookupsOf(put("/deliveries/{deliveryId}/courier", deliveryId).header("userId", VENDOR)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(COURIER), 200))
+                .containsOnly(Map.entry(VENDOR, 1L), Map.entry(COURIER, 1L));
+    }
+
+    @Test
+    void restaurantGetLooksUpUserOnce() throws Exception {
+        assertThat(lookupsOf(get("/restaurants/{restaurantId}", VENDOR).header("userId", ADMIN), 200))
+                .containsExactly(Map.entry(ADMIN, 1L));
+    }
+
+    @Test
+    void restaurantDeliverZonePutLooksUpUserOnce() throws Exception {
+        assertThat(lookupsOf(put("/restaurants/{restaurantId}/deliver-zone", VENDOR).header("userId", VENDOR)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("20.0"), 200))
+                .containsExactly(Map.entry(VENDOR, 1L));
+    }
+
+    @Test
+    void everyRequestLooksUpAgain() throws Exception {
+        RequestBuilder request = get("/deliveries/{deliveryId}/restaurant", deliveryId).header("userId", VENDOR);
+
+        assertThat(lookupsOf(request, 200)).containsExactly(Map.entry(VENDOR, 1L));
+        assertThat(lookupsOf(request, 200)).containsExactly(Map.entry(VENDOR, 1L));
+    }
+
+    @Test
+    void callerWithSignedTokenIsNotLookedUp() throws Exception {
+        String token = token("{\"sub\":\"" + VENDOR + "\",\"type\":\"vendor\"" + IN_AN_HOUR, jwtSecret);
+
+        assertThat(lookupsOf(put("/deliveries/{deliveryId}/courier", deliveryId).header("userId", VENDOR)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(COURIER), 200))
+                .containsOnly(Map.entry(COURIER, 1L));
+        assertThat(lookupsOf(get("/restaurants/{restaurantId}", VENDOR).header("userId", VENDOR)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token), 200))
+                .isEmpty();
+    }
+
+    @Test
+    void callerWithForeignTokenIsLookedUp() throws Exception {
+        String vendorToken = token("{\"sub\":\"" + VENDOR + "\",\"type\":\"vendor\"" + IN_AN_HOUR, jwtSecret);
+        String forged = token("{\"sub\":\"" + CUSTOMER + "\",\"type\":\"admin\"" + IN_AN_HOUR, "guessedSecret");
+
+        assertThat(lookupsOf(get("/restaurants/{restaurantId}", VENDOR).header("userId", ADMIN)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + vendorToken), 200))
+                .containsExactly(Map.entry(ADMIN, 1L));
+        assertThat(lookupsOf(get("/deliveries/{deliveryId}/restaurant", deliveryId).header("userId", CUSTOMER)
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + forged), 200))
+                .containsExactly(Map.entry(CUSTOMER, 1L));
+    }
+
+    /**
+     * A JWT signed with HS256, as the Users microservice hands them out.
+     */
+    private static String token(String payload, String secret) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String content = encoder.encodeToString("{\"alg\":\"HS256\"}".getBytes(StandardCharsets.UTF_8)) + "."
+                + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return content + "." + encoder.encodeToString(mac.doFinal(content.getBytes(StandardCharsets.US_ASCII)));
+    }
+}
@@ -0,0 +1,139 @@
+package nl.tudelft.sem.template.delivery;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Throughput of the available-delivery index against the previous LinkedList queue
+ * (guarded by a single lock, the least it needs to be usable from several request threads).
+ * Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+class AvailableDeliveryIndexBenchmark {
+
+    private static final int OPEN_DELIVERIES = 5_000;
+    private static final long WARMUP_MILLIS = 1_000;
+    private static final long MEASURE_MILLIS = 2_000;
+
+    @Test
+    void compareThroughput() throws Exception {
+        System.out.printf("%-8s %18s %18s%n", "threads", "linked list ops/ms", "index ops/ms");
+        for (int threads : List.of(1, 2, 4, 8)) {
+            double linkedList = measure(new LockedLinkedList(), threads);
+            double index = measure(new Index(), threads);
+            System.out.printf("%-8d %18.1f %18.1f%n", threads, linkedList, index);
+            assertThat(index).isPositive();
+        }
+    }
+
+    /**
+     * Runs the dispatch mix (new delivery, status change, next-order) on a pre-filled queue.
+     *
+     * @return operations per millisecond
+     */
+    private double measure(DeliveryQueue queue, int threads) throws Exception {
+        List<UUID> open = Stream.generate(UUID::randomUUID).limit(OPEN_DELIVERIES).collect(Collectors.toList());
+        open.forEach(queue::insert);
+        run(queue, threads, open, WARMUP_MILLIS);
+        return run(queue, threads, open, MEASURE_MILLIS) / (double) MEASURE_MILLIS;
+    }
+
+    private long run(DeliveryQueue queue, int threads, List<UUID> open, long millis) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = Stream.generate(() -> pool.submit(() -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long ops = 0;
+            start.await();
+            while (running.get()) {
+                UUID id = open.get(random.nextInt(open.size()));
+                switch (random.nextInt(3)) {
+                    case 0 -> queue.insert(id);
+                    case 1 -> queue.remove(id);
+                    default -> {
+                        UUID polled = queue.poll();
+                        if (polled != null) {
+                            queue.insert(polled);
+                        }
+                    }
+                }
+                ops++;
+            }
+            return ops;
+        })).limit(threads).collect(Collectors.toList());
+        start.countDown();
+        TimeUnit.MILLISECONDS.sleep(millis);
+        running.set(false);
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        pool.shutdown();
+        return total;
+    }
+
+    private interface DeliveryQueue {
+        void insert(UUID id);
+
+        void remove(UUID id);
+
+        UUID poll();
+    }
+
+    private static final class LockedLinkedList implements DeliveryQueue {
+        private final transient Queue<UUID> queue = new LinkedList<>();
+
+        @Override
+        public synchronized void insert(UUID id) {
+            if (!queue.contains(id)) {
+                queue.offer(id);
+            }
+        }
+
+        @Override
+        public synchronized void remove(UUID id) {
+            queue.remove(id);
+        }
+
+        @Override
+        public synchronized UUID poll() {
+            return queue.poll();
+        }
+    }
+
+    private static final class Index implements DeliveryQueue {
+        private final transient AvailableDeliveryIndex index = new AvailableDeliveryIndex();
+
+        @Override
+        public void insert(UUID id) {
+            index.offer(id);
+        }
+
+        @Override
+        public void remove(UUID id) {
+            index.remove(id);
+        }
+
+        @Override
+        public UUID poll() {
+            return index.poll();
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package nl.tudelft.sem.template.delivery;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AvailableDeliveryIndexTest {
+
+    private transient AvailableDeliveryIndex sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new AvailableDeliveryIndex();
+    }
+
+    @Test
+    void pollsInInsertionOrder() {
+        List<UUID> ids = Stream.generate(UUID::randomUUID).limit(5).collect(Collectors.toList());
+        ids.forEach(sut::offer);
+
+        List<UUID> polled = Stream.generate(sut::poll).limit(5).collect(Collectors.toList());
+
+        assertThat(polled).containsExactlyElementsOf(ids);
+        assertThat(sut.poll()).isNull();
+        assertThat(sut.isEmpty()).isTrue();
+    }
+
+    @Test
+    void ignoresDuplicateOffers() {
+        UUID id = UUID.randomUUID();
+
+        assertThat(sut.offer(id)).isTrue();
+        assertThat(sut.offer(id)).isFalse();
+        assertThat(sut.size()).isEqualTo(1);
+        assertThat(sut.poll()).isEqualTo(id);
+        assertThat(sut.poll()).isNull();
+    }
+
+    @Test
+    void skipsRemovedDeliveries() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        sut.offer(first);
+        sut.offer(second);
+
+        assertThat(sut.remove(first)).isTrue();
+        assertThat(sut.remove(first)).isFalse();
+        assertThat(sut.contains(first)).isFalse();
+        assertThat(sut.poll()).isEqualTo(second);
+        assertThat(sut.poll()).isNull();
+    }
+
+    @Test
+    void reofferedDeliveryMovesToTheBack() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        sut.offer(first);
+        sut.offer(second);
+        sut.remove(first);
+        sut.offer(first);
+
+        assertThat(sut.poll()).isEqualTo(second);
+        assertThat(sut.poll()).isEqualTo(first);
+        assertThat(sut.poll()).isNull();
+    }
+
+    @Test
+    void frequentRemovalsKeepIndexConsistent() {
+        UUID kept = UUID.randomUUID();
+        sut.offer(kept);
+        for (int i = 0; i < 10_000; i++) {
+            UUID id = UUID.randomUUID();
+            sut.offer(id);
+            sut.remove(id);
+        }
+
+        assertThat(sut.size()).isEqualTo(1);
+        assertThat(sut.poll()).isEqualTo(kept);
+        assertThat(sut.poll()).isNull();
+    }
+
+    @Test
+    void partitionsKeepTheirOwnOrder() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+        sut.offer(first, 1L);
+        sut.offer(second, 2L);
+        sut.offer(third, 1L);
+
+        assertThat(sut.poll(2L)).isEqualTo(second);
+        assertThat(sut.poll(2L)).isNull();
+        assertThat(sut.firstPriority(2L)).isNull();
+        assertThat(sut.poll()).isEqualTo(first);
+        assertThat(sut.poll(1L)).isEqualTo(third);
+        assertThat(sut.poll(1L)).isNull();
+        assertThat(sut.isEmpty()).isTrue();
+    }
+
+    @Test
+    void deliveriesPolledOrRemovedElsewhereLeaveThePartition() {
+        UUID removed = UUID.randomUUID();
+        UUID polled = UUID.randomUUID();
+        UUID kept = UUID.randomUUID();
+        sut.offer(removed, 7L);
+        sut.offer(polled, 7L);
+        sut.offer(kept, 7L);
+        sut.remove(removed);
+
+        assertThat(sut.poll()).isEqualTo(polled);
+        assertThat(sut.poll(7L)).isEqualTo(kept);
+        assertThat(sut.poll(7L)).isNull();
+    }
+
+    @Test
+    void pollsOnlyDeliveriesUpToTheGivenPriority() {
+        UUID id = UUID.randomUUID();
+        sut.offer(id, 3L, 100);
+
+        assertThat(sut.pollUpTo(99)).isNull();
+        assertThat(sut.pollUpTo(100)).isEqualTo(id);
+        assertThat(sut.poll(3L)).isNull();
+    }
+
+    @Test
+    void pollsLowestPriorityFirst() {
+        UUID late = UUID.randomUUID();
+        UUID early = UUID.randomUUID();
+        UUID alsoEarly = UUID.randomUUID();
+        sut.offer(late, 1L, 300);
+        sut.offer(early, 2L, 100);
+        sut.offer(alsoEarly, 1L, 100);
+
+        assertThat(sut.firstPriority(1L)).isEqualTo(100);
+        assertThat(sut.peek(3)).containsExactly(early, alsoEarly, late);
+        assertThat(sut.poll()).isEqualTo(early);
+        assertThat(sut.poll(1L)).isEqualTo(alsoEarly);
+        assertThat(sut.poll(1L)).isEqualTo(late);
+        assertThat(sut.isEmpty()).isTrue();
+    }
+
+    @Test
+    void reprioritizedDeliveryMovesWithinIndexAndPartition() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        sut.offer(first, 1L, 100);
+        sut.offer(second, 1L, 200);
+
+        assertThat(sut.offer(first, 1L, 300)).isFalse();
+        assertThat(sut.priorityOf(first)).isEqualTo(300);
+        assertThat(sut.size()).isEqualTo(2);
+        assertThat(sut.firstPriority(1L)).isEqualTo(200);
+
+        assertThat(sut.offer(second, 2L, 200)).isFalse();
+        assertThat(sut.poll(1L)).isEqualTo(first);
+        assertThat(sut.poll(1L)).isNull();
+        assertThat(sut.poll()).isEqualTo(second);
+        assertThat(sut.priorityOf(second)).isNull();
+    }
+
+    @Test
+    void frequentPartitionedRemovalsKeepIndexConsistent() {
+        UUID kept = UUID.randomUUID();
+        sut.offer(kept, 0L);
+        for (int i = 0; i < 10_000; i++) {
+            UUID id = UUID.randomUUID();
+            sut.offer(id, (long) (i % 10));
+            if (i % 2 == 0) {
+                sut.remove(id);
+            } else {
+                assertThat(sut.poll((long) (i % 10))).isEqualTo(id);
+            }
+        }
+
+        assertThat(sut.size()).isEqualTo(1);
+        assertThat(sut.poll(0L)).isEqualTo(kept);
+        assertThat(sut.poll()).isNull();
+    }
+
+    @Test
+    void concurrentProducersAndConsumersHandOutEveryDeliveryExactlyOnce() throws Exception {
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 20_000;
+        ExecutorService pool = Executors.newFixedThreadPool(producers + consumers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger producersDone = new AtomicInteger();
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger handedOut = new AtomicInteger();
+        Set<UUID> offered = ConcurrentHashMap.newKeySet();
+        Set<UUID> polled = ConcurrentHashMap.newKeySet();
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int p = 0; p < producers; p++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < perProducer; i++) {
+                    UUID id = UUID.randomUUID();
+                    offered.add(id);
+                    // Offering twice must only enqueue the delivery again if it was handed out in between
+                    for (int attempt = 0; attempt < 2; attempt++) {
+                        if (sut.offer(id)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                }
+                producersDone.incrementAndGet();
+                return null;
+            }));
+        }
+        for (int c = 0; c < consumers; c++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                while (producersDone.get() < producers || !sut.isEmpty()) {
+                    UUID id = sut.poll();
+                    if (id != null) {
+                        polled.add(id);
+                        handedOut.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        assertThat(handedOut.get()).isEqualTo(accepted.get());
+        assertThat(polled).hasSize(producers * perProducer);
+        assertThat(polled.containsAll(offered)).isTrue();
+        assertThat(sut.isEmpty()).isTrue();
+    }
+
+    @Test
+    void concurrentRemovalsNeverHandOutRemovedDeliveries() throws Exception {
+        int deliveries = 50_000;
+        List<UUID> ids = Stream.generate(UUID::randomUUID).limit(deliveries).collect(Collectors.toList());
+        ids.forEach(sut::offer);
+        Set<UUID> removed = ConcurrentHashMap.newKeySet();
+        Set<UUID> polled = ConcurrentHashMap.newKeySet();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+
+        Future<?> remover = pool.submit(() -> {
+            start.await();
+            for (int i = 0; i < deliveries; i += 2) {
+                if (sut.remove(ids.get(i))) {
+                    removed.add(ids.get(i));
+                }
+            }
+            return null;
+        });
+        List<Future<?>> pollers = new ArrayList<>();
+        for (int c = 0; c < 3; c++) {
+            pollers.add(pool.submit(() -> {
+                start.await();
+                UUID id;
+                while ((id = sut.poll()) != null) {
+                    polled.add(id);
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        remover.get(60, TimeUnit.SECONDS);
+        for (Future<?> poller : pollers) {
+            poller.get(60, TimeUnit.SECONDS);
+        }
+        UUID id;
+        while ((id = sut.poll()) != null) {
+            polled.add(id);
+        }
+        pool.shutdown();
+
+        assertThat(Collections.disjoint(polled, removed)).isTrue();
+        assertThat(polled.size() + removed.size()).isEqualTo(deliveries);
+    }
+}
@@ -4,6 +4,7 @@ import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
 import nl.tudelft.sem.template.delivery.domain.ErrorRepository;
 import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
 import nl.tudelft.sem.template.delivery.services.DeliveryService;
+import nl.tudelft.sem.template.delivery.services.RestaurantChangedEvent;
 import nl.tudelft.sem.template.model.Delivery;
 import nl.tudelft.sem.template.model.DeliveryStatus;
 import nl.tudelft.sem.template.model.Restaurant;
@@ -15,9 +16,15 @@ import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.http.HttpStatus;
 
 import javax.transaction.Transactional;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -40,7 +47,7 @@ class AvailableDeliveryProxyImplementationTest {
 
     @BeforeEach
     void setUp() {
-        sut = new AvailableDeliveryProxyImplementation(new DeliveryService(dr, rr, er));
+        sut = new AvailableDeliveryProxyImplementation(new DeliveryService(dr, rr, er), 0.01, 3, 600, Runnable::run);
     }
 
     List<Delivery> getMockData() {
@@ -148,7 +155,214 @@ class AvailableDeliveryProxyImplementationTest {
         d2.setCourierID("oh_no_me_too");
         dr.save(d1);
         dr.save(d2);
+        sut.insertDelivery(d1);
+        sut.insertDelivery(d2);
 
         assertEquals(d3.getDeliveryID(), sut.getAvailableDeliveryId());
     }
-}
\ No newline at end of file
+
+    @Test
+    void deliveriesFollowOwnCouriersOfTheirRestaurant() {
+        List<Delivery> test = getMockData();
+        sut.insertDelivery(test.get(1));
+        Restaurant restaurant = rr.findById("vendor@testmail.com").get();
+
+        restaurant.setCouriers(List.of("own-courier"));
+        sut.onRestaurantChanged(new RestaurantChangedEvent(restaurant.getRestaurantID(), restaurant));
+        assertThatThrownBy(() -> sut.getAvailableDeliveryId())
+            .extracting("status")
+            .isEqualTo(HttpStatus.NOT_FOUND);
+
+        restaurant.setCouriers(List.of());
+        sut.onRestaurantChanged(new RestaurantChangedEvent(restaurant.getRestaurantID(), restaurant));
+        assertThat(List.of(sut.getAvailableDeliveryId(), sut.getAvailableDeliveryId(), sut.getAvailableDeliveryId()))
+            .containsExactlyInAnyOrder(test.get(1).getDeliveryID(), test.get(2).getDeliveryID(),
+                test.get(4).getDeliveryID());
+    }
+
+    @Test
+    void deliveriesOfRestaurantWithOwnCouriersOnlyGoToItsPool() {
+        List<Delivery> test = getMockData();
+        Delivery own = dr.save(new Delivery().deliveryID(UUID.randomUUID())
+            .restaurantID("vendor2@testmail.com").status(DeliveryStatus.ACCEPTED));
+        List<Runnable> woken = new ArrayList<>();
+        sut.awaitDelivery(() -> woken.add(null), "vendor2@testmail.com", false);
+        sut.awaitDelivery(() -> woken.add(null), "vendor2@testmail.com", false);
+        sut.insertDelivery(test.get(1));
+        assertThat(woken).isEmpty();
+
+        sut.insertDelivery(own);
+        assertThat(woken).hasSize(2);
+        assertEquals(test.get(1).getDeliveryID(), sut.getAvailableDeliveryId());
+        assertThatThrownBy(() -> sut.getAvailableDeliveryId())
+            .extracting("status")
+            .isEqualTo(HttpStatus.NOT_FOUND);
+        assertNull(sut.pollRestaurantDeliveryId("vendor@testmail.com"));
+        assertEquals(own.getDeliveryID(), sut.pollRestaurantDeliveryId("vendor2@testmail.com"));
+        assertNull(sut.pollRestaurantDeliveryId("vendor2@testmail.com"));
+    }
+
+    @Test
+    void waitersAreNotRunOnTheInsertingThread() throws InterruptedException {
+        sut = new AvailableDeliveryProxyImplementation(new DeliveryService(dr, rr, er));
+        List<Delivery> test = getMockData();
+        AtomicReference<Thread> wokenOn = new AtomicReference<>();
+        CountDownLatch woken = new CountDownLatch(1);
+        sut.awaitDelivery(() -> {
+            wokenOn.set(Thread.currentThread());
+            woken.countDown();
+        }, null, false);
+
+        sut.insertDelivery(test.get(1));
+
+        assertTrue(woken.await(5, TimeUnit.SECONDS));
+        assertThat(wokenOn.get()).isNotSameAs(Thread.currentThread());
+        assertEquals(test.get(1).getDeliveryID(), sut.getAvailableDeliveryId());
+    }
+
+    @Test
+    void deliveriesMoveToThePoolOfTheirRestaurant() {
+        List<Delivery> test = getMockData();
+        sut.insertDelivery(test.get(1));
+        Restaurant restaurant = rr.findById("vendor@testmail.com").get();
+
+        restaurant.setCouriers(List.of("own-courier"));
+        sut.onRestaurantChanged(new RestaurantChangedEvent(restaurant.getRestaurantID(), restaurant));
+        assertThat(List.of(sut.pollRestaurantDeliveryId("vendor@testmail.com"),
+            sut.pollRestaurantDeliveryId("vendor@testmail.com"), sut.pollRestaurantDeliveryId("vendor@testmail.com")))
+            .containsExactlyInAnyOrder(test.get(1).getDeliveryID(), test.get(2).getDeliveryID(),
+                test.get(4).getDeliveryID());
+        assertNull(sut.pollRestaurantDeliveryId("vendor@testmail.com"));
+    }
+
+    @Test
+    void deliveriesOfDeletedRestaurantAreRemoved() {
+        List<Delivery> test = getMockData();
+        sut.insertDelivery(test.get(1));
+        sut.insertDelivery(test.get(2));
+
+        sut.onRestaurantChanged(new RestaurantChangedEvent("vendor@testmail.com", null));
+
+        assertThatThrownBy(() -> sut.getAvailableDeliveryId())
+            .extracting("status")
+            .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    private Delivery saveAvailableDelivery(String restaurantId, List<Double> restaurantLocation) {
+        // Ordered long enough ago for the food to be ready, but not for the delivery to be starving
+        return saveAvailableDelivery(restaurantId, restaurantLocation, OffsetDateTime.now().minusMinutes(31));
+    }
+
+    private Delivery saveAvailableDelivery(String restaurantId, List<Double> restaurantLocation,
+                                           OffsetDateTime orderTime) {
+        Restaurant restaurant = new Restaurant();
+        restaurant.setRestaurantID(restaurantId);
+        restaurant.setLocation(restaurantLocation);
+        rr.save(restaurant);
+        return dr.save(new Delivery()
+            .deliveryID(UUID.randomUUID())
+            .restaurantID(restaurantId)
+            .orderTime(orderTime)
+            .status(DeliveryStatus.ACCEPTED));
+    }
+
+    @Test
+    void testNearbyDeliveriesGoFirst() {
+        Delivery farAway = saveAvailableDelivery("far@testmail.com", List.of(52.0, 4.3));
+        Delivery twoCellsAway = saveAvailableDelivery("two@testmail.com", List.of(39.025, 34.005));
+        Delivery nextCell = saveAvailableDelivery("next@testmail.com", List.of(39.015, 34.005));
+        Delivery sameCell = saveAvailableDelivery("same@testmail.com", List.of(39.005, 34.005));
+        sut.insertDelivery(farAway);
+        sut.insertDelivery(twoCellsAway);
+        sut.insertDelivery(nextCell);
+        sut.insertDelivery(sameCell);
+
+        List<Double> courierLocation = List.of(39.001, 34.001);
+        assertEquals(sameCell.getDeliveryID(), sut.getAvailableDeliveryId(courierLocation));
+        assertEquals(nextCell.getDeliveryID(), sut.getAvailableDeliveryId(courierLocation));
+        assertEquals(twoCellsAway.getDeliveryID(), sut.getAvailableDeliveryId(courierLocation));
+        assertEquals(farAway.getDeliveryID(), sut.getAvailableDeliveryId(courierLocation));
+        assertThatThrownBy(() -> sut.getAvailableDeliveryId(courierLocation))
+            .extracting("status")
+            .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void testNearbyDeliveryReadyFirstGoesFirst() {
+        Delivery second = saveAvailableDelivery("second@testmail.com", List.of(38.995, 33.995),
+            OffsetDateTime.now().minusMinutes(32));
+        Delivery first = saveAvailableDelivery("first@testmail.com", List.of(39.015, 34.005),
+            OffsetDateTime.now().minusMinutes(35));
+        sut.insertDelivery(first);
+        sut.insertDelivery(second);
+
+        assertEquals(first.getDeliveryID(), sut.getAvailableDeliveryId(List.of(39.001, 34.001)));
+        assertEquals(second.getDeliveryID(), sut.getAvailableDeliveryId(List.of(39.001, 34.001)));
+    }
+
+    @Test
+    void testStarvingDeliveryGoesFirst() {
+        sut = new AvailableDeliveryProxyImplementation(new DeliveryService(dr, rr, er), 0.01, 3, 0, Runnable::run);
+        Delivery farAway = saveAvailableDelivery("far@testmail.com", List.of(52.0, 4.3));
+        Delivery nearby = saveAvailableDelivery("near@testmail.com", List.of(39.005, 34.005));
+        sut.insertDelivery(farAway);
+        sut.insertDelivery(nearby);
+
+        assertEquals(farAway.getDeliveryID(), sut.getAvailableDeliveryId(List.of(39.001, 34.001)));
+        assertEquals(nearby.getDeliveryID(), sut.getAvailableDeliveryId(List.of(39.001, 34.001)));
+    }
+
+    @Test
+    void testUnknownLocationsFallBackToTheOldest() {
+        Delivery noLocation = saveAvailableDelivery("nowhere@testmail.com", null);
+        Delivery located = saveAvailableDelivery("somewhere@testmail.com", List.of(39.005, 34.005));
+        sut.insertDelivery(noLocation);
+        sut.insertDelivery(located);
+
+        assertEquals(noLocation.getDeliveryID(), sut.getAvailableDeliveryId(null));
+        assertEquals(located.getDeliveryID(), sut.getAvailableDeliveryId(null));
+    }
+
+    @Test
+    void testDeliveryReadyFirstGoesFirstWithinAnArea() {
+        Delivery readyLater = saveAvailableDelivery("later@testmail.com", List.of(39.005, 34.005),
+            OffsetDateTime.now().minusMinutes(20));
+        Delivery readyEarlier = saveAvailableDelivery("earlier@testmail.com", List.of(39.004, 34.004),
+            OffsetDateTime.now().minusMinutes(38));
+        sut.insertDelivery(readyLater);
+        sut.insertDelivery(readyEarlier);
+
+        assertEquals(readyEarlier.getDeliveryID(), sut.getAvailableDeliveryId(List.of(39.001, 34.001)));
+        assertEquals(readyLater.getDeliveryID(), sut.getAvailableDeliveryId(List.of(39.001, 34.001)));
+    }
+
+    @Test
+    void testNearbyDeliveryNotReadyOnArrivalIsSkipped() {
+        Delivery notReady = saveAvailableDelivery("notready@testmail.com", List.of(39.005, 34.005),
+            OffsetDateTime.now());
+        Delivery ready = saveAvailableDelivery("ready@testmail.com", List.of(39.025, 34.005));
+        sut.insertDelivery(notReady);
+        sut.insertDelivery(ready);
+
+        assertEquals(ready.getDeliveryID(), sut.getAvailableDeliveryId(List.of(39.001, 34.001)));
+        assertEquals(notReady.getDeliveryID(), sut.getAvailableDeliveryId(List.of(39.001, 34.001)));
+    }
+
+    @Test
+    void testChangedPrepTimeReordersDelivery() {
+        OffsetDateTime orderTime = OffsetDateTime.now();
+        Delivery first = saveAvailableDelivery("first@testmail.com", List.of(39.005, 34.005), orderTime);
+        Delivery second = saveAvailableDelivery("second@testmail.com", List.of(39.005, 34.005), orderTime);
+        first.setEstimatedPrepTime(10);
+        second.setEstimatedPrepTime(20);
+        sut.insertDelivery(first);
+        sut.insertDelivery(second);
+
+        first.setEstimatedPrepTime(40);
+        sut.insertDelivery(first);
+
+        assertEquals(List.of(second.getDeliveryID(), first.getDeliveryID()), sut.getAvailableDeliveryIds(2));
+        assertEquals(second.getDeliveryID(), sut.getAvailableDeliveryId(null));
+        assertEquals(first.getDeliveryID(), sut.getAvailableDeliveryId(null));
+    }
+}
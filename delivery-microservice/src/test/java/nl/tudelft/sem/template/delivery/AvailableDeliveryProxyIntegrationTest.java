@@ -4,7 +4,10 @@ import nl.tudelft.sem.template.delivery.communication.UsersCommunication;
 import nl.tudelft.sem.template.delivery.controllers.CouriersController;
 import nl.tudelft.sem.template.delivery.controllers.DeliveryController;
 import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
+import nl.tudelft.sem.template.delivery.domain.OrderStatusOutboxRepository;
 import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
+import nl.tudelft.sem.template.delivery.services.RestaurantCourierCache;
+import nl.tudelft.sem.template.delivery.services.RestaurantService;
 import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService;
 import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType;
 import nl.tudelft.sem.template.model.DeliveriesPostRequest;
@@ -15,10 +18,15 @@ import org.assertj.core.groups.Tuple;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Propagation;
 
 import javax.transaction.Transactional;
 import java.util.ArrayList;
@@ -32,8 +40,14 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
 @Transactional
 public class AvailableDeliveryProxyIntegrationTest {
 
@@ -46,6 +60,8 @@ public class AvailableDeliveryProxyIntegrationTest {
     private DeliveryRepository deliveryRepository;
     @Autowired
     private RestaurantRepository restaurantRepository;
+    @Autowired
+    private OrderStatusOutboxRepository outboxRepository;
 
     @Autowired
     private DeliveryController deliveryController;
@@ -53,6 +69,12 @@ public class AvailableDeliveryProxyIntegrationTest {
     private CouriersController couriersController;
     @Autowired
     private AvailableDeliveryProxy availableDeliveryProxy;
+    @Autowired
+    private RestaurantService restaurantService;
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private RestaurantCourierCache restaurantCourierCache;
 
     private DeliveriesPostRequest createDeliveriesPostRequest() {
         return new DeliveriesPostRequest()
@@ -74,6 +96,8 @@ public class AvailableDeliveryProxyIntegrationTest {
     @BeforeEach
     void setUp() {
         insertSampleRestaurant();
+        // Saved directly and rolled back after every test, so the cached restaurant of an earlier test is outdated
+        restaurantCourierCache.invalidate("restaurant-id");
 
         when(usersAuth.getUserAccountType("restaurant-id")).thenReturn(AccountType.VENDOR);
         when(usersAuth.getUserAccountType("courier-id")).thenReturn(AccountType.COURIER);
@@ -91,11 +115,41 @@ public class AvailableDeliveryProxyIntegrationTest {
         deliveryRepository.save(delivery);
         availableDeliveryProxy.insertDelivery(delivery);
 
-        assertThat(couriersController.couriersCourierIdNextOrderPut("courier-id").getBody())
+        assertThat(couriersController.couriersCourierIdNextOrderPut("courier-id", null, null).getBody())
                 .extracting("deliveryID", "courierID")
                 .containsExactly(delivery.getDeliveryID(), "courier-id");
     }
 
+    @Test
+    @org.springframework.transaction.annotation.Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void courierWaitingForNextOrderGetsDeliveryOnceAccepted() throws Exception {
+        // Committed, since the waiting courier claims the delivery on a waiter thread
+        MvcResult waiting = mockMvc.perform(put("/couriers/courier-id/next-order").param("waitTimeout", "5"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        Delivery delivery = deliveryRepository.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("restaurant-id").status(DeliveryStatus.PENDING));
+        try {
+            mockMvc.perform(put("/deliveries/{deliveryId}/status", delivery.getDeliveryID())
+                            .header("userId", "restaurant-id")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content("ACCEPTED"))
+                    .andExpect(status().isOk());
+
+            mockMvc.perform(asyncDispatch(waiting))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.deliveryID").value(delivery.getDeliveryID().toString()))
+                    .andExpect(jsonPath("$.courierID").value("courier-id"));
+        } finally {
+            deliveryRepository.deleteById(delivery.getDeliveryID());
+            outboxRepository.deleteAll(outboxRepository.findAll().stream()
+                    .filter(update -> update.getOrderId().equals(delivery.getDeliveryID()))
+                    .collect(Collectors.toList()));
+            restaurantRepository.deleteById("restaurant-id");
+        }
+    }
+
     @Test
     void insertThreeDeliveriesChangeStatusAndQueryNextAvailable() {
 
@@ -108,7 +162,7 @@ public class AvailableDeliveryProxyIntegrationTest {
                 .collect(Collectors.toList());
 
         List<Delivery> courierDeliveries = Stream
-                .generate(() -> couriersController.couriersCourierIdNextOrderPut("courier-id"))
+                .generate(() -> couriersController.couriersCourierIdNextOrderPut("courier-id", null, null))
                 .limit(3)
                 .map(HttpEntity::getBody)
                 .collect(Collectors.toList());
@@ -117,7 +171,7 @@ public class AvailableDeliveryProxyIntegrationTest {
                 .extracting("deliveryID", "courierID")
                 .containsExactlyInAnyOrderElementsOf(insertedDeliveries
                         .stream()
-                        .map(x -> Tuple.tuple(x.getDeliveryID(), x.getCourierID()))
+                        .map(x -> Tuple.tuple(x.getDeliveryID(), "courier-id"))
                         .collect(Collectors.toList()));
     }
 
@@ -136,9 +190,7 @@ public class AvailableDeliveryProxyIntegrationTest {
     @Test
     void deliveryCourierSetByVendorWithOwnCouriers() {
 
-        Restaurant restaurant = restaurantRepository.findById("restaurant-id").get();
-        restaurant.setCouriers(new ArrayList<>(List.of("own-courier-id")));
-        restaurantRepository.save(restaurant);
+        restaurantService.setListOfCouriers("restaurant-id", new ArrayList<>(List.of("own-courier-id")));
 
         Delivery delivery = deliveryController.deliveriesPost(createDeliveriesPostRequest().status("ACCEPTED")).getBody();
 
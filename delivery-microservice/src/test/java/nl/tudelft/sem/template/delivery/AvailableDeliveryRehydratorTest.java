@@ -0,0 +1,147 @@
+package nl.tudelft.sem.template.delivery;
+
+import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
+import nl.tudelft.sem.template.model.Delivery;
+import nl.tudelft.sem.template.model.DeliveryStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@EntityScan("nl.tudelft.sem.template.*")
+@DataJpaTest
+class AvailableDeliveryRehydratorTest {
+
+    @Autowired
+    private transient DeliveryRepository deliveryRepository;
+
+    @Autowired
+    private transient TestEntityManager entityManager;
+
+    private transient AvailableDeliveryProxy availableDeliveryProxy;
+
+    private transient OffsetDateTime now;
+
+    @BeforeEach
+    void setUp() {
+        availableDeliveryProxy = mock(AvailableDeliveryProxy.class);
+        now = OffsetDateTime.now();
+    }
+
+    private Delivery saveDelivery(DeliveryStatus status, String courierId, OffsetDateTime orderTime) {
+        return deliveryRepository.save(new Delivery()
+                .deliveryID(UUID.randomUUID())
+                .restaurantID("vendor@testmail.com")
+                .status(status)
+                .courierID(courierId)
+                .orderTime(orderTime));
+    }
+
+    /**
+     * Rehydration runs on a fresh persistence context, so read the deliveries back as stored.
+     */
+    private void detachAll() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void offersUnassignedDeliveriesInOrderTimeOrderAcrossChunks() {
+        Delivery third = saveDelivery(DeliveryStatus.ACCEPTED, null, now.minusMinutes(10));
+        Delivery first = saveDelivery(DeliveryStatus.PREPARING, null, now.minusMinutes(30));
+        Delivery fourth = saveDelivery(DeliveryStatus.PREPARING, null, now.minusMinutes(5));
+        Delivery second = saveDelivery(DeliveryStatus.ACCEPTED, null, now.minusMinutes(20));
+        Delivery fifth = saveDelivery(DeliveryStatus.ACCEPTED, null, now.minusMinutes(1));
+        saveDelivery(DeliveryStatus.ACCEPTED, "courier@testmail.com", now.minusMinutes(25));
+        saveDelivery(DeliveryStatus.PENDING, null, now.minusMinutes(15));
+        saveDelivery(DeliveryStatus.DELIVERED, null, now.minusMinutes(40));
+        detachAll();
+
+        AvailableDeliveryRehydrator sut = new AvailableDeliveryRehydrator(deliveryRepository,
+                availableDeliveryProxy, 2);
+
+        assertThat(sut.rehydrate()).isEqualTo(5);
+
+        ArgumentCaptor<Delivery> captor = ArgumentCaptor.forClass(Delivery.class);
+        verify(availableDeliveryProxy, times(5)).insertDelivery(captor.capture());
+        assertThat(captor.getAllValues().stream().map(Delivery::getDeliveryID).collect(Collectors.toList()))
+                .containsExactly(first.getDeliveryID(), second.getDeliveryID(), third.getDeliveryID(),
+                        fourth.getDeliveryID(), fifth.getDeliveryID());
+        assertThat(sut.getLastDuration()).isNotNull();
+    }
+
+    @Test
+    void deliveriesWithTheSameOrderTimeAreNotSkippedBetweenChunks() {
+        List<Delivery> deliveries = List.of(
+                saveDelivery(DeliveryStatus.ACCEPTED, null, now),
+                saveDelivery(DeliveryStatus.ACCEPTED, null, now),
+                saveDelivery(DeliveryStatus.ACCEPTED, null, now));
+        detachAll();
+
+        AvailableDeliveryRehydrator sut = new AvailableDeliveryRehydrator(deliveryRepository,
+                availableDeliveryProxy, 1);
+
+        assertThat(sut.rehydrate()).isEqualTo(3);
+
+        ArgumentCaptor<Delivery> captor = ArgumentCaptor.forClass(Delivery.class);
+        verify(availableDeliveryProxy, times(3)).insertDelivery(captor.capture());
+        assertThat(captor.getAllValues().stream().map(Delivery::getDeliveryID).collect(Collectors.toList()))
+                .containsExactlyInAnyOrderElementsOf(deliveries.stream()
+                        .map(Delivery::getDeliveryID).collect(Collectors.toList()));
+    }
+
+    @Test
+    void deliveriesWithoutOrderTimeFollowAcrossChunks() {
+        Delivery ordered = saveDelivery(DeliveryStatus.ACCEPTED, null, now);
+        List<Delivery> undated = List.of(
+                saveDelivery(DeliveryStatus.ACCEPTED, null, null),
+                saveDelivery(DeliveryStatus.PREPARING, null, null),
+                saveDelivery(DeliveryStatus.ACCEPTED, null, null));
+        saveDelivery(DeliveryStatus.ACCEPTED, "courier@testmail.com", null);
+        saveDelivery(DeliveryStatus.PENDING, null, null);
+        detachAll();
+
+        AvailableDeliveryRehydrator sut = new AvailableDeliveryRehydrator(deliveryRepository,
+                availableDeliveryProxy, 2);
+
+        assertThat(sut.rehydrate()).isEqualTo(4);
+
+        ArgumentCaptor<Delivery> captor = ArgumentCaptor.forClass(Delivery.class);
+        verify(availableDeliveryProxy, times(4)).insertDelivery(captor.capture());
+        List<UUID> offered = captor.getAllValues().stream().map(Delivery::getDeliveryID).collect(Collectors.toList());
+        assertThat(offered.get(0)).isEqualTo(ordered.getDeliveryID());
+        assertThat(offered.subList(1, 4)).containsExactlyInAnyOrderElementsOf(undated.stream()
+                .map(Delivery::getDeliveryID).collect(Collectors.toList()));
+    }
+
+    @Test
+    void emptyDatabaseRehydratesNothing() {
+        AvailableDeliveryRehydrator sut = new AvailableDeliveryRehydrator(deliveryRepository,
+                availableDeliveryProxy, 10);
+
+        assertThat(sut.rehydrate()).isZero();
+        verify(availableDeliveryProxy, never()).insertDelivery(any());
+    }
+
+    @Test
+    void rejectsNonPositiveChunkSize() {
+        assertThatThrownBy(() -> new AvailableDeliveryRehydrator(deliveryRepository, availableDeliveryProxy, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
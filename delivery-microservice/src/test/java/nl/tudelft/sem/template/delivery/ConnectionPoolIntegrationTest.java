@@ -0,0 +1,50 @@
+package nl.tudelft.sem.template.delivery;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import javax.sql.DataSource;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The pool of database connections and the metrics it is watched through.
+ */
+@SpringBootTest
+public class ConnectionPoolIntegrationTest {
+
+    @Autowired
+    private transient DataSource dataSource;
+
+    @Autowired
+    private transient MeterRegistry meterRegistry;
+
+    @Autowired
+    private transient DeliveryRepository deliveryRepository;
+
+    @Test
+    void repositoriesUseThePool() {
+        assertThat(dataSource).isInstanceOf(HikariDataSource.class);
+        assertThat(((HikariDataSource) dataSource).getMaximumPoolSize()).isEqualTo(10);
+    }
+
+    @Test
+    void poolIsMeasured() {
+        long acquired = meterRegistry.get("hikaricp.connections.acquire").tag("pool", "delivery").timer().count();
+        deliveryRepository.findById(UUID.randomUUID());
+
+        assertThat(meterRegistry.get("hikaricp.connections.acquire").tag("pool", "delivery").timer().count())
+            .isGreaterThan(acquired);
+        assertThat(meterRegistry.get("hikaricp.connections.acquire.percentile").tag("pool", "delivery")
+            .tag("phi", "0.99").gauge()).isNotNull();
+        for (String gauge : new String[] {"active", "idle", "pending"}) {
+            assertThat(meterRegistry.get("hikaricp.connections." + gauge).tag("pool", "delivery").gauge().value())
+                .isNotNegative();
+        }
+    }
+}
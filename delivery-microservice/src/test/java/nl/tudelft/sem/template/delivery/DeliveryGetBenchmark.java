@@ -0,0 +1,147 @@
+package nl.tudelft.sem.template.delivery;
+
+import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
+import nl.tudelft.sem.template.delivery.services.AccountTypeCache;
+import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType;
+import nl.tudelft.sem.template.model.Delivery;
+import nl.tudelft.sem.template.model.DeliveryStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Throughput and latency of GET /deliveries/{deliveryId}, whose time goes to loading the delivery, with the pooled
+ * data source of {@link nl.tudelft.sem.template.delivery.config.H2Config} and with a data source that opens a
+ * connection to the database for every transaction. The caller is an admin answered from a mocked account type cache.
+ * Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+class DeliveryGetBenchmark {
+
+    private static final String ADMIN = "admin@testmail.com";
+    private static final int DELIVERIES = 1_000;
+    private static final int CLIENTS = 8;
+    private static final int WARMUP_REQUESTS = 2_000;
+    private static final int REQUESTS = 10_000;
+
+    @SpringBootTest
+    @AutoConfigureMockMvc
+    abstract static class Measurement {
+
+        @MockBean
+        private transient AccountTypeCache accountTypeCache;
+
+        @Autowired
+        private transient MockMvc mockMvc;
+
+        @Autowired
+        private transient DeliveryRepository deliveryRepository;
+
+        private final transient List<UUID> deliveryIds = new ArrayList<>();
+
+        @BeforeEach
+        void setUp() {
+            when(accountTypeCache.get(anyString())).thenReturn(AccountType.ADMIN);
+            for (int i = 0; i < DELIVERIES; i++) {
+                deliveryIds.add(deliveryRepository.save(new Delivery().deliveryID(UUID.randomUUID())
+                    .restaurantID("benchmark-vendor@testmail.com").customerID("benchmark-customer@testmail.com")
+                    .status(DeliveryStatus.PENDING)).getDeliveryID());
+            }
+        }
+
+        @AfterEach
+        void tearDown() {
+            deliveryIds.forEach(deliveryRepository::deleteById);
+        }
+
+        @Test
+        void deliveryGet() throws Exception {
+            run(WARMUP_REQUESTS);
+            long start = System.nanoTime();
+            long[] nanos = run(REQUESTS);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(nanos);
+            System.out.printf("%-24s %10s %8s %8s%n", "data source", "req/s", "p50 ms", "p99 ms");
+            System.out.printf("%-24s %10.0f %8.2f %8.2f%n", getClass().getSimpleName(), REQUESTS / seconds,
+                nanos[REQUESTS / 2] / 1e6, nanos[REQUESTS * 99 / 100] / 1e6);
+        }
+
+        private long[] run(int requests) throws Exception {
+            ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+            try {
+                List<Future<Long>> responses = new ArrayList<>();
+                for (int i = 0; i < requests; i++) {
+                    UUID deliveryId = deliveryIds.get(i % DELIVERIES);
+                    responses.add(clients.submit(() -> {
+                        long requestStart = System.nanoTime();
+                        int status = mockMvc.perform(get("/deliveries/{deliveryId}", deliveryId).header("userId", ADMIN))
+                            .andReturn().getResponse().getStatus();
+                        assertThat(status).isEqualTo(200);
+                        return System.nanoTime() - requestStart;
+                    }));
+                }
+                long[] nanos = new long[requests];
+                for (int i = 0; i < requests; i++) {
+                    nanos[i] = responses.get(i).get();
+                }
+                return nanos;
+            } finally {
+                clients.shutdown();
+            }
+        }
+    }
+
+    @Nested
+    class Pooled extends Measurement {
+    }
+
+    @Nested
+    @Import(UnpooledDataSource.class)
+    class Unpooled extends Measurement {
+    }
+
+    /**
+     * The data source used before connections were pooled.
+     */
+    @TestConfiguration
+    static class UnpooledDataSource {
+
+        @Bean
+        @Primary
+        DataSource unpooledDataSource(Environment environment) {
+            DriverManagerDataSource dataSource = new DriverManagerDataSource();
+            dataSource.setDriverClassName(environment.getProperty("jdbc.driverClassName"));
+            dataSource.setUrl(environment.getProperty("jdbc.url"));
+            dataSource.setUsername(environment.getProperty("jdbc.user"));
+            dataSource.setPassword(environment.getProperty("jdbc.pass"));
+            return dataSource;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package nl.tudelft.sem.template.delivery;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DeliveryGridTest {
+
+    private final transient DeliveryGrid sut = new DeliveryGrid(0.01);
+
+    @Test
+    void nearbyLocationsShareACell() {
+        assertThat(sut.cellOf(List.of(39.001, 34.001))).isEqualTo(sut.cellOf(List.of(39.009, 34.009)));
+        assertThat(sut.cellOf(List.of(39.001, 34.001))).isNotEqualTo(sut.cellOf(List.of(39.011, 34.001)));
+        assertThat(sut.cellOf(List.of(-0.001, -0.001))).isNotEqualTo(sut.cellOf(List.of(0.001, 0.001)));
+    }
+
+    @Test
+    void malformedLocationsHaveNoCell() {
+        assertThat(sut.cellOf(null)).isNull();
+        assertThat(sut.cellOf(List.of(39.0))).isNull();
+        assertThat(sut.ring(null, 1)).isEmpty();
+    }
+
+    @Test
+    void ringsCoverTheSquareAroundTheCentreExactlyOnce() {
+        List<Double> centre = List.of(39.005, -34.005);
+        Set<Long> covered = new HashSet<>();
+        for (int distance = 0; distance <= 3; distance++) {
+            List<Long> ring = sut.ring(centre, distance);
+            assertThat(ring).hasSize(distance == 0 ? 1 : 8 * distance);
+            for (Long cell : ring) {
+                assertThat(covered.add(cell)).isTrue();
+            }
+        }
+        assertThat(sut.ring(centre, 0)).containsExactly(sut.cellOf(centre));
+        assertThat(sut.ring(centre, 1)).contains(sut.cellOf(List.of(39.015, -33.995)));
+        assertThat(sut.ring(centre, 3)).contains(sut.cellOf(List.of(38.975, -34.035)));
+    }
+
+    @Test
+    void rejectsNonPositiveCellSize() {
+        assertThatThrownBy(() -> new DeliveryGrid(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,103 @@
+package nl.tudelft.sem.template.delivery;
+
+import nl.tudelft.sem.template.delivery.services.TimeCalculationService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Total travel time of the couriers to the restaurants, and runtime, of a dispatch round
+ * when every courier takes the oldest delivery (the next-order endpoint), when every courier in turn takes the
+ * nearest remaining delivery, and with the optimal assignment used by the batch dispatch endpoint.
+ * Couriers and restaurants are spread over a 20 by 20 km city. Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+class DispatchBenchmark {
+
+    private static final double CITY_SIZE = 0.18;
+    private static final int WARMUP_ROUNDS = 3;
+
+    private final transient TimeCalculationService timeCalculationService =
+        new TimeCalculationService(null, new GPS(), null);
+
+    @Test
+    void compareAssignments() {
+        System.out.printf("%-9s %-10s %14s %14s %14s %12s%n", "couriers", "deliveries",
+            "oldest (min)", "nearest (min)", "optimal (min)", "optimal ms");
+        for (int[] size : new int[][] {{200, 200}, {500, 500}, {50, 500}, {100, 1_000}, {200, 2_000}, {500, 5_000}}) {
+            Random random = new Random(size[0] * 31L + size[1]);
+            double[][] cost = costMatrix(locations(random, size[0]), locations(random, size[1]));
+            for (int i = 0; i < WARMUP_ROUNDS; i++) {
+                HungarianAlgorithm.solve(cost);
+            }
+            long start = System.nanoTime();
+            int[] optimal = HungarianAlgorithm.solve(cost);
+            double millis = (System.nanoTime() - start) / 1e6;
+
+            double oldest = total(cost, oldestFirst(cost));
+            double nearest = total(cost, nearestFirst(cost));
+            double best = total(cost, optimal);
+            System.out.printf("%-9d %-10d %14.0f %14.0f %14.0f %12.1f%n", size[0], size[1],
+                oldest, nearest, best, millis);
+            assertThat(best).isLessThanOrEqualTo(nearest);
+        }
+    }
+
+    private static List<Double>[] locations(Random random, int count) {
+        @SuppressWarnings("unchecked")
+        List<Double>[] locations = new List[count];
+        for (int i = 0; i < count; i++) {
+            locations[i] = List.of(52.0 + random.nextDouble() * CITY_SIZE, 4.3 + random.nextDouble() * CITY_SIZE);
+        }
+        return locations;
+    }
+
+    private double[][] costMatrix(List<Double>[] couriers, List<Double>[] restaurants) {
+        double[][] cost = new double[couriers.length][restaurants.length];
+        for (int i = 0; i < couriers.length; i++) {
+            for (int j = 0; j < restaurants.length; j++) {
+                cost[i][j] = timeCalculationService.computeExactTransitTime(couriers[i], restaurants[j]);
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Deliveries are in order time order, so the i-th courier gets the i-th oldest delivery.
+     */
+    private static int[] oldestFirst(double[][] cost) {
+        int[] assignment = new int[cost.length];
+        for (int i = 0; i < cost.length; i++) {
+            assignment[i] = i;
+        }
+        return assignment;
+    }
+
+    private static int[] nearestFirst(double[][] cost) {
+        int[] assignment = new int[cost.length];
+        boolean[] taken = new boolean[cost[0].length];
+        for (int i = 0; i < cost.length; i++) {
+            int nearest = -1;
+            for (int j = 0; j < cost[i].length; j++) {
+                if (!taken[j] && (nearest < 0 || cost[i][j] < cost[i][nearest])) {
+                    nearest = j;
+                }
+            }
+            taken[nearest] = true;
+            assignment[i] = nearest;
+        }
+        return assignment;
+    }
+
+    private static double total(double[][] cost, int[] assignment) {
+        double total = 0;
+        for (int i = 0; i < assignment.length; i++) {
+            total += cost[i][assignment[i]];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,106 @@
+package nl.tudelft.sem.template.delivery;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HungarianAlgorithmTest {
+
+    @Test
+    void solvesSquareProblem() {
+        double[][] cost = {
+            {4, 1, 3},
+            {2, 0, 5},
+            {3, 2, 2}
+        };
+
+        assertThat(HungarianAlgorithm.solve(cost)).containsExactly(1, 0, 2);
+    }
+
+    @Test
+    void leavesExtraColumnsUnmatched() {
+        double[][] cost = {
+            {9, 1, 9, 9},
+            {1, 2, 9, 9}
+        };
+
+        assertThat(HungarianAlgorithm.solve(cost)).containsExactly(1, 0);
+    }
+
+    @Test
+    void leavesExtraRowsUnmatched() {
+        double[][] cost = {
+            {5},
+            {1},
+            {3}
+        };
+
+        assertThat(HungarianAlgorithm.solve(cost)).containsExactly(-1, 0, -1);
+    }
+
+    @Test
+    void handlesEmptyProblems() {
+        assertThat(HungarianAlgorithm.solve(new double[0][0])).isEmpty();
+        assertThat(HungarianAlgorithm.solve(new double[2][0])).containsExactly(-1, -1);
+    }
+
+    @Test
+    void matchesBruteForceOnRandomProblems() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            boolean wide = round % 2 == 1;
+            int rows = 1 + random.nextInt(wide ? 3 : 6);
+            // Also covers far more columns than rows, where only the cheapest columns of each row are kept
+            int columns = 1 + random.nextInt(wide ? 40 : 6);
+            double[][] cost = new double[rows][columns];
+            for (double[] row : cost) {
+                Arrays.setAll(row, column -> random.nextInt(20));
+            }
+
+            int[] assignment = HungarianAlgorithm.solve(cost);
+
+            assertThat(Arrays.stream(assignment).filter(column -> column >= 0).distinct().count())
+                .isEqualTo(Math.min(rows, columns));
+            assertThat(total(cost, assignment)).isCloseTo(bruteForce(cost, 0, new boolean[columns]), within(1e-9));
+        }
+    }
+
+    private static double total(double[][] cost, int[] assignment) {
+        double total = 0;
+        for (int row = 0; row < assignment.length; row++) {
+            if (assignment[row] >= 0) {
+                total += cost[row][assignment[row]];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Cheapest assignment of rows {@code row..} to free columns, where rows may stay unmatched only if columns run out.
+     */
+    private static double bruteForce(double[][] cost, int row, boolean[] used) {
+        if (row == cost.length) {
+            return 0;
+        }
+        int freeColumns = 0;
+        for (boolean columnUsed : used) {
+            freeColumns += columnUsed ? 0 : 1;
+        }
+        double best = Double.POSITIVE_INFINITY;
+        if (freeColumns < cost.length - row) {
+            best = bruteForce(cost, row + 1, used);
+        }
+        for (int column = 0; column < used.length; column++) {
+            if (!used[column]) {
+                used[column] = true;
+                best = Math.min(best, cost[row][column] + bruteForce(cost, row + 1, used));
+                used[column] = false;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,89 @@
+package nl.tudelft.sem.template.delivery;
+
+import nl.tudelft.sem.template.delivery.communication.StubUsersServer;
+import nl.tudelft.sem.template.delivery.communication.StubUsersServer.Latency;
+import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
+import nl.tudelft.sem.template.model.Restaurant;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Requests against a Users microservice, stood in for by a {@link StubUsersServer}, that answers too slowly for
+ * the request budget.
+ */
+@SpringBootTest(properties = "delivery.http.request-budget-ms=300")
+@AutoConfigureMockMvc
+@Transactional
+public class RequestDeadlineIntegrationTest {
+
+    private static final String VENDOR = "deadline-vendor@testmail.com";
+
+    private static final String LATE_VENDOR = "late-vendor@testmail.com";
+
+    private static final StubUsersServer stub = startStub();
+
+    @Autowired
+    private transient MockMvc mockMvc;
+
+    @Autowired
+    private transient RestaurantRepository restaurantRepository;
+
+    private static StubUsersServer startStub() {
+        try {
+            return StubUsersServer.start(1).accountType(VENDOR, "vendor").accountType(LATE_VENDOR, "vendor");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void stubbedServices(DynamicPropertyRegistry registry) {
+        registry.add("delivery.users.url", stub::url);
+        registry.add("delivery.orders.url", stub::url);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        restaurantRepository.save(new Restaurant().restaurantID(VENDOR).location(List.of(52.0, 4.3)).deliveryZone(5.0));
+        restaurantRepository.save(new Restaurant().restaurantID(LATE_VENDOR).location(List.of(52.0, 4.3)).deliveryZone(5.0));
+    }
+
+    @Test
+    void requestFailsOnceItsBudgetRunsOut() throws Exception {
+        stub.latency(Latency.fixed(3000));
+
+        long start = System.nanoTime();
+        mockMvc.perform(get("/restaurants/{restaurantId}", LATE_VENDOR).header("userId", LATE_VENDOR))
+            .andExpect(status().isGatewayTimeout());
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(2500));
+    }
+
+    @Test
+    void requestWithinBudgetSucceeds() throws Exception {
+        stub.latency(Latency.fixed(20));
+
+        mockMvc.perform(get("/restaurants/{restaurantId}", VENDOR).header("userId", VENDOR))
+            .andExpect(status().isOk());
+    }
+}
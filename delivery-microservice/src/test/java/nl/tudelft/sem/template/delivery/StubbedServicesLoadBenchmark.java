@@ -0,0 +1,131 @@
+package nl.tudelft.sem.template.delivery;
+
+import nl.tudelft.sem.template.delivery.communication.StubUsersServer;
+import nl.tudelft.sem.template.delivery.communication.StubUsersServer.Latency;
+import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
+import nl.tudelft.sem.template.model.Restaurant;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/**
+ * Throughput and latency of an authorized endpoint when every request has to look up its caller in the Users
+ * microservice over HTTP, stood in for by a {@link StubUsersServer} with realistic latency and a share of failures.
+ * Every request comes from another user, so none is answered from the account type cache.
+ * Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@AutoConfigureMockMvc
+class StubbedServicesLoadBenchmark {
+
+    private static final String RESTAURANT = "load-vendor@testmail.com";
+    private static final int CLIENTS = 16;
+    private static final int REQUESTS = 2_000;
+
+    private static final StubUsersServer stub = startStub();
+
+    @Autowired
+    private transient MockMvc mockMvc;
+
+    @Autowired
+    private transient RestaurantRepository restaurantRepository;
+
+    private final transient AtomicInteger users = new AtomicInteger();
+
+    private static StubUsersServer startStub() {
+        try {
+            return StubUsersServer.start(1).defaultAccountType("admin");
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @DynamicPropertySource
+    static void stubbedServices(DynamicPropertyRegistry registry) {
+        registry.add("delivery.users.url", stub::url);
+        registry.add("delivery.orders.url", stub::url);
+    }
+
+    @AfterAll
+    static void stopStub() {
+        stub.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        restaurantRepository.save(new Restaurant().restaurantID(RESTAURANT).location(List.of(52.0, 4.3))
+            .deliveryZone(5.0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        restaurantRepository.deleteById(RESTAURANT);
+    }
+
+    @Test
+    void restaurantGetUnderDependencyLatency() throws Exception {
+        System.out.printf("%-34s %10s %8s %8s %8s  %s%n", "users service", "req/s", "p50 ms", "p99 ms", "max ms",
+            "responses");
+        measure("no latency", Latency.none(), 0);
+        measure("fixed 5 ms", Latency.fixed(5), 0);
+        measure("log-normal 5 ms, p99 50 ms", Latency.logNormal(5, 50), 0);
+        measure("log-normal 5 ms, p99 50 ms, 5% err", Latency.logNormal(5, 50), 0.05);
+        measure("log-normal 20 ms, p99 200 ms", Latency.logNormal(20, 200), 0);
+    }
+
+    private void measure(String name, Latency latency, double errorRate) throws Exception {
+        stub.latency(latency).errorRate(errorRate);
+        Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            long start = System.nanoTime();
+            List<Future<Long>> requests = new ArrayList<>();
+            for (int i = 0; i < REQUESTS; i++) {
+                requests.add(clients.submit(() -> {
+                    long requestStart = System.nanoTime();
+                    int status = mockMvc.perform(get("/restaurants/{restaurantId}", RESTAURANT)
+                            .header("userId", "load-user" + users.incrementAndGet() + "@testmail.com"))
+                        .andReturn().getResponse().getStatus();
+                    statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+                    return System.nanoTime() - requestStart;
+                }));
+            }
+            long[] nanos = new long[REQUESTS];
+            for (int i = 0; i < REQUESTS; i++) {
+                nanos[i] = requests.get(i).get();
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Arrays.sort(nanos);
+            System.out.printf("%-34s %10.0f %8.1f %8.1f %8.1f  %s%n", name, REQUESTS / seconds,
+                nanos[REQUESTS / 2] / 1e6, nanos[REQUESTS * 99 / 100] / 1e6, nanos[REQUESTS - 1] / 1e6,
+                new TreeMap<>(statuses));
+        } finally {
+            clients.shutdown();
+        }
+        assertThat(statuses.get(200)).isNotNull();
+    }
+}
@@ -0,0 +1,74 @@
+package nl.tudelft.sem.template.delivery.communication;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveTimeoutTest {
+
+    private static final Duration MAX = Duration.ofSeconds(5);
+
+    private final transient AdaptiveTimeout sut = new AdaptiveTimeout(Duration.ofMillis(50), 2);
+
+    private void record(int times, long millis) {
+        for (int i = 0; i < times; i++) {
+            sut.record(Duration.ofMillis(millis));
+        }
+    }
+
+    @Test
+    void isTheMaximumUntilEnoughCallsWereSeen() {
+        record(31, 10);
+        assertThat(sut.current(MAX)).isEqualTo(MAX);
+        assertThat(sut.p99()).isNull();
+
+        record(1, 10);
+        assertThat(sut.p99()).isEqualTo(Duration.ofMillis(10));
+    }
+
+    @Test
+    void followsThe99thPercentile() {
+        record(126, 20);
+        record(2, 200);
+
+        assertThat(sut.p99()).isEqualTo(Duration.ofMillis(200));
+        assertThat(sut.current(MAX)).isEqualTo(Duration.ofMillis(400));
+        assertThat(sut.current(Duration.ofMillis(300))).isEqualTo(Duration.ofMillis(300));
+    }
+
+    @Test
+    void isNeverBelowTheMinimum() {
+        record(100, 1);
+
+        assertThat(sut.current(MAX)).isEqualTo(Duration.ofMillis(50));
+    }
+
+    @Test
+    void forgetsOldLatencies() {
+        record(512, 300);
+        record(512, 40);
+
+        assertThat(sut.p99()).isEqualTo(Duration.ofMillis(40));
+        assertThat(sut.current(MAX)).isEqualTo(Duration.ofMillis(80));
+    }
+
+    @Test
+    void growsWhenCallsTimeOut() {
+        record(100, 40);
+        Duration before = sut.current(MAX);
+
+        // Calls that time out count as taking the timeout
+        record(16, before.toMillis());
+
+        assertThat(sut.current(MAX)).isEqualTo(before.multipliedBy(2));
+    }
+
+    @Test
+    void rejectsATimeoutBelowTheLatency() {
+        assertThatThrownBy(() -> new AdaptiveTimeout(Duration.ofMillis(50), 0.5))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,145 @@
+package nl.tudelft.sem.template.delivery.communication;
+
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ServiceGuardsTest {
+
+    private static final long OPEN_MILLIS = 200;
+
+    private transient ServiceGuards guards;
+
+    private transient SimpleMeterRegistry meterRegistry;
+
+    private final transient AtomicInteger calls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        guards = new ServiceGuards(50, 50, 20, 4, 4, OPEN_MILLIS, 2, 2, 100, 2);
+        meterRegistry = new SimpleMeterRegistry();
+        guards.bindTo(meterRegistry);
+    }
+
+    private String fail() {
+        calls.incrementAndGet();
+        throw new IllegalStateException("down");
+    }
+
+    private String answerSlowly() {
+        calls.incrementAndGet();
+        try {
+            Thread.sleep(40);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "slow";
+    }
+
+    private String answer() {
+        calls.incrementAndGet();
+        return "fine";
+    }
+
+    private double counter(String name, String service) {
+        return meterRegistry.get(name).tag("name", service).functionCounter().count();
+    }
+
+    @Test
+    void failingCallsOpenTheBreaker() {
+        ServiceGuard users = guards.users();
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> users.call(this::fail)).isInstanceOf(IllegalStateException.class);
+        }
+
+        assertThat(users.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> users.call(this::answer)).isInstanceOf(CallNotPermittedException.class);
+        assertThat(calls.get()).isEqualTo(4);
+        assertThat(guards.orders().call(this::answer)).isEqualTo("fine");
+        assertThat(meterRegistry.get("resilience4j.circuitbreaker.not.permitted.calls").tag("name", "users")
+            .counter().count()).isEqualTo(1);
+        assertThat(counter("resilience4j.circuitbreaker.state.transitions", "users")).isEqualTo(1);
+    }
+
+    @Test
+    void slowCallsOpenTheBreaker() {
+        ServiceGuard orders = guards.orders();
+        for (int i = 0; i < 4; i++) {
+            assertThat(orders.call(this::answerSlowly)).isEqualTo("slow");
+        }
+
+        assertThat(orders.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThatThrownBy(() -> orders.callAsync(() -> CompletableFuture.completedFuture(answer()))
+            .get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(CallNotPermittedException.class);
+        assertThat(calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    void probingCallsCloseTheBreakerOnceTheServiceIsBack() throws InterruptedException {
+        ServiceGuard users = guards.users();
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> users.call(this::fail)).isInstanceOf(IllegalStateException.class);
+        }
+
+        Thread.sleep(OPEN_MILLIS * 2);
+        assertThat(users.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(users.call(this::answer)).isEqualTo("fine");
+        assertThat(users.call(this::answer)).isEqualTo("fine");
+
+        assertThat(users.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(counter("resilience4j.circuitbreaker.state.transitions", "users")).isEqualTo(3);
+    }
+
+    @Test
+    void failingProbeOpensTheBreakerAgain() throws InterruptedException {
+        ServiceGuard users = guards.users();
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> users.call(this::fail)).isInstanceOf(IllegalStateException.class);
+        }
+
+        Thread.sleep(OPEN_MILLIS * 2);
+        assertThatThrownBy(() -> users.call(this::fail)).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> users.call(this::fail)).isInstanceOf(IllegalStateException.class);
+
+        assertThat(users.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    void fullBulkheadRejectsCallsWithoutOpeningTheBreaker() {
+        ServiceGuard users = guards.users();
+        CompletableFuture<String> first = new CompletableFuture<>();
+        CompletableFuture<String> second = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = users.callAsync(() -> first);
+        CompletableFuture<String> alsoInFlight = users.callAsync(() -> second);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(users.callAsync(() -> CompletableFuture.completedFuture(answer())))
+                .isCompletedExceptionally();
+        }
+        assertThatThrownBy(() -> users.call(this::answer)).isInstanceOf(BulkheadFullException.class);
+        assertThat(calls.get()).isZero();
+        assertThat(counter("resilience4j.bulkhead.rejected.calls", "users")).isEqualTo(5);
+        assertThat(meterRegistry.get("resilience4j.bulkhead.available.concurrent.calls").tag("name", "users")
+            .gauge().value()).isZero();
+
+        first.complete("fine");
+        second.complete("fine");
+        assertThat(inFlight).isCompletedWithValue("fine");
+        assertThat(alsoInFlight).isCompletedWithValue("fine");
+        assertThat(users.call(this::answer)).isEqualTo("fine");
+        assertThat(users.getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+}
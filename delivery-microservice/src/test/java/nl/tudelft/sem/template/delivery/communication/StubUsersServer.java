@@ -0,0 +1,310 @@
+package nl.tudelft.sem.template.delivery.communication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stands in for the Users and Orders microservices on a local port, so that {@link UsersCommunication} can be
+ * exercised over real HTTP without either of them running. Serves {@code GET /account/type?email=},
+ * {@code POST /account/types} and {@code PUT /internal/order/{orderId}/status?orderStatus=}.
+ * Every answer waits for a latency drawn from a configurable distribution, and fails with a 500 at the configured
+ * error rate. Account types come from fixtures, users without one are unknown (404). The configuration may be
+ * changed while the server runs, for example to take the service down halfway through a load test.
+ */
+public final class StubUsersServer implements AutoCloseable {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private static final Pattern ORDER_STATUS = Pattern.compile("/internal/order/([^/]+)/status");
+
+    static {
+        // Otherwise the stub answers calls on a reused connection only after the client's delayed ACK, ~40 ms
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private final transient HttpServer server;
+
+    private final transient ExecutorService serverThreads;
+
+    private final transient Random random;
+
+    private final transient Map<String, String> accountTypes = new ConcurrentHashMap<>();
+
+    private final transient List<String> orderStatusUpdates = new CopyOnWriteArrayList<>();
+
+    private final transient AtomicInteger accountTypeRequests = new AtomicInteger();
+
+    private final transient AtomicInteger failedRequests = new AtomicInteger();
+
+    private transient volatile Latency latency = Latency.none();
+
+    private transient volatile double errorRate;
+
+    private transient volatile String defaultAccountType;
+
+    private StubUsersServer(long seed) throws IOException {
+        this.random = new Random(seed);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/account/type", this::handleAccountType);
+        server.createContext("/account/types", this::handleAccountTypes);
+        server.createContext("/internal/order", this::handleOrderStatus);
+        server.start();
+    }
+
+    /**
+     * Starts a stub that answers right away and never fails.
+     *
+     * @param seed seed of the random latencies and failures, the same seed gives the same sequence
+     * @return the running stub
+     * @throws IOException when no local port could be bound
+     */
+    public static StubUsersServer start(long seed) throws IOException {
+        return new StubUsersServer(seed);
+    }
+
+    /**
+     * Base URL to point {@code delivery.users.url} and {@code delivery.orders.url} at.
+     *
+     * @return the URL
+     */
+    public String url() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Sets the time every answer waits for.
+     *
+     * @param latency distribution of the wait
+     * @return this stub
+     */
+    public StubUsersServer latency(Latency latency) {
+        this.latency = latency;
+        return this;
+    }
+
+    /**
+     * Sets the share of calls that fail with a 500.
+     *
+     * @param errorRate share between 0 and 1
+     * @return this stub
+     */
+    public StubUsersServer errorRate(double errorRate) {
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("Error rate must be between 0 and 1");
+        }
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * Sets the account type of a user.
+     *
+     * @param userId      ID of the user
+     * @param accountType type as the Users microservice names it, e.g. "courier"
+     * @return this stub
+     */
+    public StubUsersServer accountType(String userId, String accountType) {
+        accountTypes.put(userId, accountType);
+        return this;
+    }
+
+    /**
+     * Sets the account type of every user without a fixture of their own.
+     *
+     * @param accountType type as the Users microservice names it, null for unknown users
+     * @return this stub
+     */
+    public StubUsersServer defaultAccountType(String accountType) {
+        this.defaultAccountType = accountType;
+        return this;
+    }
+
+    /**
+     * Account type lookups received, one per batch.
+     *
+     * @return number of lookups
+     */
+    public int accountTypeRequests() {
+        return accountTypeRequests.get();
+    }
+
+    /**
+     * Calls answered with a 500 because of the error rate.
+     *
+     * @return number of calls
+     */
+    public int failedRequests() {
+        return failedRequests.get();
+    }
+
+    /**
+     * Order status updates received, successful or not.
+     *
+     * @return every update as "orderId status", in the order received
+     */
+    public List<String> orderStatusUpdates() {
+        return orderStatusUpdates;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private void handleAccountType(HttpExchange exchange) throws IOException {
+        accountTypeRequests.incrementAndGet();
+        String query = exchange.getRequestURI().getQuery();
+        String userId = query != null && query.startsWith("email=") ? query.substring("email=".length()) : null;
+        if (delayOrFail(exchange)) {
+            return;
+        }
+        String type = userId == null ? null : accountTypes.getOrDefault(userId, defaultAccountType);
+        if (type == null) {
+            respond(exchange, 404, "");
+        } else {
+            respond(exchange, 200, mapper.writeValueAsString(Map.of("type", type)));
+        }
+    }
+
+    private void handleAccountTypes(HttpExchange exchange) throws IOException {
+        accountTypeRequests.incrementAndGet();
+        List<?> userIds = mapper.readValue(exchange.getRequestBody(), List.class);
+        if (delayOrFail(exchange)) {
+            return;
+        }
+        Map<String, String> types = new LinkedHashMap<>();
+        for (Object userId : userIds) {
+            String type = accountTypes.getOrDefault(String.valueOf(userId), defaultAccountType);
+            if (type != null) {
+                types.put(String.valueOf(userId), type);
+            }
+        }
+        respond(exchange, 200, mapper.writeValueAsString(types));
+    }
+
+    private void handleOrderStatus(HttpExchange exchange) throws IOException {
+        Matcher matcher = ORDER_STATUS.matcher(exchange.getRequestURI().getPath());
+        String query = exchange.getRequestURI().getQuery();
+        if (!matcher.matches() || !"PUT".equals(exchange.getRequestMethod()) || query == null
+            || !query.startsWith("orderStatus=")) {
+            respond(exchange, 400, "");
+            return;
+        }
+        orderStatusUpdates.add(matcher.group(1) + " " + query.substring("orderStatus=".length()));
+        if (!delayOrFail(exchange)) {
+            respond(exchange, 200, "");
+        }
+    }
+
+    /**
+     * Waits for the latency, then answers with a 500 at the error rate.
+     *
+     * @return whether the call was failed
+     */
+    private boolean delayOrFail(HttpExchange exchange) throws IOException {
+        long millis;
+        boolean fail;
+        synchronized (random) {
+            millis = Math.max(0, latency.nextMillis(random));
+            fail = random.nextDouble() < errorRate;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (fail) {
+            failedRequests.incrementAndGet();
+            respond(exchange, 500, "");
+        }
+        return fail;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        // An empty body is sent chunked, as without a body the server may close a connection the client reuses
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Distribution of the time the stub waits before it answers.
+     */
+    @FunctionalInterface
+    public interface Latency {
+
+        /**
+         * Draws the next wait.
+         *
+         * @param random source of randomness, seeded by the stub
+         * @return milliseconds to wait
+         */
+        long nextMillis(Random random);
+
+        /**
+         * Answers right away.
+         *
+         * @return the distribution
+         */
+        static Latency none() {
+            return random -> 0;
+        }
+
+        /**
+         * Always waits the same time.
+         *
+         * @param millis milliseconds to wait
+         * @return the distribution
+         */
+        static Latency fixed(long millis) {
+            return random -> millis;
+        }
+
+        /**
+         * Waits a time spread evenly between two bounds.
+         *
+         * @param minMillis shortest wait in milliseconds
+         * @param maxMillis longest wait in milliseconds
+         * @return the distribution
+         */
+        static Latency uniform(long minMillis, long maxMillis) {
+            return random -> minMillis + (long) (random.nextDouble() * (maxMillis - minMillis + 1));
+        }
+
+        /**
+         * Waits a log-normally distributed time, mostly close to the median with a long tail of slow answers,
+         * as real services tend to.
+         *
+         * @param medianMillis median wait in milliseconds
+         * @param p99Millis    99th percentile of the wait in milliseconds
+         * @return the distribution
+         */
+        static Latency logNormal(double medianMillis, double p99Millis) {
+            // 2.326 is the 99th percentile of the standard normal distribution
+            double sigma = Math.log(p99Millis / medianMillis) / 2.326;
+            return random -> Math.round(medianMillis * Math.exp(sigma * random.nextGaussian()));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package nl.tudelft.sem.template.delivery.communication;
+
+import nl.tudelft.sem.template.delivery.communication.StubUsersServer.Latency;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StubUsersServerTest {
+
+    private transient StubUsersServer stub;
+
+    private transient UsersCommunication usersCommunication;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = StubUsersServer.start(42)
+            .accountType("courier@testmail.com", "courier")
+            .accountType("vendor@testmail.com", "vendor");
+        usersCommunication = new UsersCommunication(stub.url(), stub.url(), 1000, 1000, "/account/types", 4,
+            new ServiceGuards());
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void answersFromFixtures() {
+        assertThat(usersCommunication.getAccountType("courier@testmail.com")).isEqualTo("courier");
+        assertThat(usersCommunication.getAccountType("unknown@testmail.com")).isEqualTo("non-existent");
+        assertThat(usersCommunication.getAccountTypes(List.of("vendor@testmail.com", "unknown@testmail.com")))
+            .containsExactly(Map.entry("vendor@testmail.com", "vendor"), Map.entry("unknown@testmail.com", "non-existent"));
+
+        stub.defaultAccountType("customer");
+        assertThat(usersCommunication.getAccountType("unknown@testmail.com")).isEqualTo("customer");
+        assertThat(stub.accountTypeRequests()).isEqualTo(4);
+    }
+
+    @Test
+    void recordsOrderStatusUpdates() {
+        UUID orderId = UUID.randomUUID();
+
+        usersCommunication.updateOrderStatus(orderId, "PREPARING");
+        usersCommunication.updateOrderStatusAsync(orderId, "DELIVERED").join();
+
+        assertThat(stub.orderStatusUpdates()).containsExactly(orderId + " preparing", orderId + " delivered");
+    }
+
+    @Test
+    void failsAtTheErrorRate() {
+        stub.errorRate(1);
+        assertThatThrownBy(() -> usersCommunication.getAccountType("courier@testmail.com"))
+            .isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> usersCommunication.updateOrderStatus(UUID.randomUUID(), "DELIVERED"))
+            .isInstanceOf(ResponseStatusException.class);
+
+        stub.errorRate(0.25);
+        UsersCommunication unguarded = new UsersCommunication(stub.url(), stub.url(), 1000, 1000, "", 4,
+            new ServiceGuards(100, 100, 1000, 100, 100, 1000, 1, 32, 100, 2));
+        long failed = IntStream.range(0, 400).filter(i -> {
+            try {
+                unguarded.getAccountType("courier" + i + "@testmail.com");
+                return false;
+            } catch (ResponseStatusException e) {
+                return true;
+            }
+        }).count();
+        assertThat(failed).isBetween(60L, 140L);
+        assertThat(stub.failedRequests()).isEqualTo(2 + (int) failed);
+    }
+
+    @Test
+    void waitsForTheLatency() {
+        stub.latency(Latency.fixed(30));
+
+        long start = System.nanoTime();
+        assertThat(usersCommunication.getAccountType("courier@testmail.com")).isEqualTo("courier");
+
+        assertThat((System.nanoTime() - start) / 1_000_000).isGreaterThanOrEqualTo(30);
+    }
+
+    @Test
+    void drawsLatenciesFromTheDistribution() {
+        Random random = new Random(7);
+        Latency uniform = Latency.uniform(10, 20);
+        assertThat(IntStream.range(0, 1000).mapToLong(i -> uniform.nextMillis(random)).summaryStatistics())
+            .extracting("min", "max")
+            .containsExactly(10L, 20L);
+
+        long[] logNormal = IntStream.range(0, 10_000)
+            .mapToLong(i -> Latency.logNormal(20, 200).nextMillis(random))
+            .sorted()
+            .toArray();
+        assertThat(logNormal[5_000]).isBetween(18L, 22L);
+        assertThat(logNormal[9_900]).isBetween(160L, 250L);
+    }
+}
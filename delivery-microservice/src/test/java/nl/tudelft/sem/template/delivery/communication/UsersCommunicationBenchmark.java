@@ -0,0 +1,126 @@
+package nl.tudelft.sem.template.delivery.communication;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Per-call latency and live threads of account type lookups against a {@link StubUsersServer},
+ * when every call creates its own {@link HttpClient} (as {@link UsersCommunication} used to), with the shared
+ * client, and with the shared client's asynchronous API. Also the time it takes to check a list of couriers
+ * one after the other, concurrently and through a batch endpoint, when every lookup takes a few milliseconds.
+ * Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+class UsersCommunicationBenchmark {
+
+    private static final int CALLS = 2_000;
+    private static final int WARMUP_CALLS = 200;
+    private static final int CONCURRENT_CALLS = 50;
+    private static final int COURIERS = 200;
+    private static final int LOOKUP_MILLIS = 5;
+
+    private final transient ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @Test
+    void compareClients() throws Exception {
+        try (StubUsersServer stub = StubUsersServer.start(1).defaultAccountType("courier")) {
+            String url = stub.url();
+            System.out.printf("%-28s %12s %12s %12s%n", "client", "us/call", "peak threads", "threads after");
+            UsersCommunication shared = new UsersCommunication(url, url, 2000, 5000);
+            measure("shared client", call -> assertThat(shared.getAccountType("courier@testmail.com"))
+                .isEqualTo("courier"));
+            measure("shared client, async x" + CONCURRENT_CALLS, call -> {
+                if (call % CONCURRENT_CALLS == 0) {
+                    List<CompletableFuture<String>> types = new ArrayList<>();
+                    for (int i = 0; i < CONCURRENT_CALLS; i++) {
+                        types.add(shared.getAccountTypeAsync("courier@testmail.com"));
+                    }
+                    types.forEach(type -> assertThat(type.join()).isEqualTo("courier"));
+                }
+            });
+            // Last, the selector threads of the abandoned clients only stop once they are garbage collected
+            measure("new client per call", call -> assertThat(newClientPerCall(url)).isEqualTo("courier"));
+        }
+    }
+
+    @Test
+    void compareCourierListChecks() throws Exception {
+        List<String> couriers = IntStream.range(0, COURIERS)
+            .mapToObj(i -> "courier" + i + "@testmail.com")
+            .collect(Collectors.toList());
+        try (StubUsersServer stub = StubUsersServer.start(1)
+                .defaultAccountType("courier")
+                .latency(StubUsersServer.Latency.fixed(LOOKUP_MILLIS))) {
+            String url = stub.url();
+            System.out.printf("%-28s %12s%n", COURIERS + " couriers", "ms/list");
+            UsersCommunication oneByOne = new UsersCommunication(url, url, 2000, 5000);
+            measureList("one after the other", () -> couriers.forEach(courier ->
+                assertThat(oneByOne.getAccountType(courier)).isEqualTo("courier")));
+            UsersCommunication concurrent = new UsersCommunication(url, url, 2000, 5000, "", 16, new ServiceGuards());
+            measureList("concurrently, 16 in flight", () -> assertThat(concurrent.getAccountTypes(couriers))
+                .hasSize(COURIERS).containsValue("courier"));
+            UsersCommunication batch = new UsersCommunication(url, url, 2000, 5000, "/account/types", 16,
+                new ServiceGuards());
+            measureList("batch endpoint", () -> assertThat(batch.getAccountTypes(couriers))
+                .hasSize(COURIERS).containsValue("courier"));
+        }
+    }
+
+    private static void measureList(String name, Runnable check) {
+        check.run();
+        int runs = 5;
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i++) {
+            check.run();
+        }
+        System.out.printf("%-28s %12.1f%n", name, (System.nanoTime() - start) / 1e6 / runs);
+    }
+
+    private void measure(String name, IntConsumer call) {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            call.accept(i);
+        }
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+        for (int i = 0; i < CALLS; i++) {
+            call.accept(i);
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / CALLS;
+        System.out.printf("%-28s %12.0f %12d %12d%n", name, micros, threads.getPeakThreadCount(),
+            threads.getThreadCount());
+    }
+
+    /**
+     * What every lookup did before: a new client, and with it a new connection and selector thread.
+     */
+    private static String newClientPerCall(String url) {
+        HttpClient httpClient = HttpClient.newHttpClient();
+        HttpRequest request = HttpRequest.newBuilder()
+            .uri(URI.create(url + "/account/type?email=courier@testmail.com"))
+            .timeout(Duration.ofSeconds(5))
+            .GET()
+            .build();
+        try {
+            String body = httpClient.send(request, HttpResponse.BodyHandlers.ofString()).body();
+            return body.contains("courier") ? "courier" : "non-existent";
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
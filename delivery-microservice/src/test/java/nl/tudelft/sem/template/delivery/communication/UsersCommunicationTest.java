@@ -0,0 +1,451 @@
+package nl.tudelft.sem.template.delivery.communication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UsersCommunicationTest {
+
+    private transient HttpServer server;
+
+    private transient ExecutorService serverThreads;
+
+    private transient String url;
+
+    private transient UsersCommunication sut;
+
+    private final transient List<String> orderStatusUpdates = new CopyOnWriteArrayList<>();
+
+    private final transient Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private final transient AtomicInteger lookupsInFlight = new AtomicInteger();
+
+    private final transient AtomicInteger maxLookupsInFlight = new AtomicInteger();
+
+    private final transient List<String> batches = new CopyOnWriteArrayList<>();
+
+    private final transient AtomicInteger popularLookups = new AtomicInteger();
+
+    private final transient CountDownLatch popularAnswered = new CountDownLatch(1);
+
+    private final transient AtomicInteger lookups = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        serverThreads = Executors.newCachedThreadPool();
+        server.setExecutor(serverThreads);
+        server.createContext("/account/type", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            lookups.incrementAndGet();
+            maxLookupsInFlight.accumulateAndGet(lookupsInFlight.incrementAndGet(), Math::max);
+            try {
+                String query = exchange.getRequestURI().getQuery();
+                if (query.startsWith("email=slow")) {
+                    Thread.sleep(50);
+                }
+                if (query.startsWith("email=stalled")) {
+                    Thread.sleep(3000);
+                }
+                if (query.equals("email=popular@testmail.com")) {
+                    popularLookups.incrementAndGet();
+                    popularAnswered.await(5, TimeUnit.SECONDS);
+                }
+                if (query.equals("email=courier@testmail.com") || query.equals("email=popular@testmail.com")
+                    || query.startsWith("email=slow-courier")) {
+                    respond(exchange, 200, "{\"type\":\"courier\"}");
+                } else if (query.equals("email=broken@testmail.com")) {
+                    respond(exchange, 500, "");
+                } else {
+                    respond(exchange, 404, "");
+                }
+            } catch (InterruptedException e) {
+                respond(exchange, 500, "");
+            } finally {
+                lookupsInFlight.decrementAndGet();
+            }
+        });
+        server.createContext("/account/types", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            batches.add(body);
+            List<?> emails = new ObjectMapper().readValue(body, List.class);
+            if (emails.contains("broken@testmail.com")) {
+                respond(exchange, 500, "");
+            } else {
+                respond(exchange, 200, "{\"courier@testmail.com\":\"courier\",\"vendor@testmail.com\":\"vendor\"}");
+            }
+        });
+        server.createContext("/internal/order", exchange -> {
+            orderStatusUpdates.add(exchange.getRequestMethod() + " " + exchange.getRequestURI());
+            if (exchange.getRequestURI().getPath().contains("ffffffff")) {
+                try {
+                    Thread.sleep(3000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            respond(exchange, exchange.getRequestURI().getPath().contains("00000000") ? 500 : 200, "");
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort();
+        sut = new UsersCommunication(url, url, 1000, 1000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        server.stop(0);
+        serverThreads.shutdown();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        // An empty body is sent chunked, as without a body the stub may close a connection the client reuses
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Test
+    void getsAccountType() throws Exception {
+        assertThat(sut.getAccountType("courier@testmail.com")).isEqualTo("courier");
+        assertThat(sut.getAccountType("unknown@testmail.com")).isEqualTo("non-existent");
+        assertThat(sut.getAccountTypeAsync("courier@testmail.com").get(5, TimeUnit.SECONDS)).isEqualTo("courier");
+        assertThat(sut.getAccountTypeAsync("unknown@testmail.com").get(5, TimeUnit.SECONDS))
+            .isEqualTo("non-existent");
+    }
+
+    @Test
+    void reusesConnections() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(sut.getAccountType("courier@testmail.com")).isEqualTo("courier");
+        }
+
+        assertThat(clientPorts).hasSize(1);
+    }
+
+    @Test
+    void unreachableServiceIsReported() {
+        server.stop(0);
+
+        assertThatThrownBy(() -> sut.getAccountType("courier@testmail.com"))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThatThrownBy(() -> sut.getAccountTypeAsync("courier@testmail.com").get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .cause()
+            .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void failingServiceIsReported() {
+        assertThatThrownBy(() -> sut.getAccountType("broken@testmail.com"))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void concurrentLookupsOfOneUserShareOneRequest() throws Exception {
+        int callers = 16;
+        ExecutorService callerThreads = Executors.newFixedThreadPool(callers);
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        List<Future<String>> types = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                types.add(callerThreads.submit(() -> {
+                    threads.add(Thread.currentThread());
+                    return sut.getAccountType("popular@testmail.com");
+                }));
+            }
+            // Every caller waits for an answer, so every caller has asked
+            while (threads.size() < callers || popularLookups.get() == 0
+                || !threads.stream().allMatch(thread -> thread.getState() == Thread.State.WAITING)) {
+                Thread.sleep(10);
+            }
+            popularAnswered.countDown();
+
+            for (Future<String> type : types) {
+                assertThat(type.get(5, TimeUnit.SECONDS)).isEqualTo("courier");
+            }
+            assertThat(popularLookups.get()).isEqualTo(1);
+        } finally {
+            callerThreads.shutdownNow();
+        }
+    }
+
+    @Test
+    void asyncLookupsOfOneUserShareOneRequest() throws Exception {
+        List<CompletableFuture<String>> types = IntStream.range(0, 50)
+            .mapToObj(i -> sut.getAccountTypeAsync("popular@testmail.com"))
+            .collect(Collectors.toList());
+        // A caller giving up does not take the others down with it
+        types.get(0).cancel(true);
+        popularAnswered.countDown();
+
+        for (CompletableFuture<String> type : types.subList(1, types.size())) {
+            assertThat(type.get(5, TimeUnit.SECONDS)).isEqualTo("courier");
+        }
+        assertThat(popularLookups.get()).isEqualTo(1);
+
+        // Once answered, the next lookup asks again
+        assertThat(sut.getAccountType("popular@testmail.com")).isEqualTo("courier");
+        assertThat(popularLookups.get()).isEqualTo(2);
+    }
+
+    @Test
+    void getsAccountTypesConcurrently() {
+        sut = new UsersCommunication(url, url, 1000, 1000, "", 4, new ServiceGuards());
+        List<String> userIds = IntStream.range(0, 12)
+            .mapToObj(i -> "slow-courier" + i + "@testmail.com")
+            .collect(Collectors.toList());
+        userIds.add("slow-unknown@testmail.com");
+        userIds.add("slow-unknown@testmail.com");
+
+        Map<String, String> types = sut.getAccountTypes(userIds);
+
+        assertThat(types).hasSize(13)
+            .containsEntry("slow-courier0@testmail.com", "courier")
+            .containsEntry("slow-courier11@testmail.com", "courier")
+            .containsEntry("slow-unknown@testmail.com", "non-existent");
+        assertThat(maxLookupsInFlight.get()).isBetween(2, 4);
+    }
+
+    @Test
+    void failedLookupFailsAllAccountTypes() {
+        assertThatThrownBy(() -> sut.getAccountTypes(List.of("courier@testmail.com", "broken@testmail.com")))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void getsAccountTypesInBatch() {
+        sut = new UsersCommunication(url, url, 1000, 1000, "/account/types", 4, new ServiceGuards());
+
+        assertThat(sut.getAccountTypes(List.of("courier@testmail.com", "vendor@testmail.com", "unknown@testmail.com")))
+            .containsExactly(Map.entry("courier@testmail.com", "courier"), Map.entry("vendor@testmail.com", "vendor"),
+                Map.entry("unknown@testmail.com", "non-existent"));
+        assertThat(batches).containsExactly("[\"courier@testmail.com\",\"vendor@testmail.com\",\"unknown@testmail.com\"]");
+        assertThat(clientPorts).isEmpty();
+        assertThatThrownBy(() -> sut.getAccountTypes(List.of("broken@testmail.com")))
+            .isInstanceOf(ResponseStatusException.class);
+    }
+
+    @Test
+    void updatesOrderStatus() throws Exception {
+        UUID orderId = UUID.randomUUID();
+
+        sut.updateOrderStatus(orderId, "PREPARING");
+        sut.updateOrderStatusAsync(orderId, "ON_TRANSIT").get(5, TimeUnit.SECONDS);
+
+        assertThat(orderStatusUpdates).containsExactly(
+            "PUT /internal/order/" + orderId + "/status?orderStatus=preparing",
+            "PUT /internal/order/" + orderId + "/status?orderStatus=on_transit");
+    }
+
+    @Test
+    void failedOrderStatusUpdateIsReported() {
+        UUID orderId = new UUID(0, 0);
+
+        assertThatThrownBy(() -> sut.updateOrderStatus(orderId, "DELIVERED"))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThatThrownBy(() -> sut.updateOrderStatusAsync(orderId, "DELIVERED").get(5, TimeUnit.SECONDS))
+            .isInstanceOf(ExecutionException.class)
+            .cause()
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
+    @Test
+    void failingUsersServiceIsNoLongerAskedForAWhile() {
+        sut = new UsersCommunication(url, url, 1000, 1000, "", 4,
+            new ServiceGuards(50, 50, 1000, 4, 4, 60_000, 1, 32, 100, 2));
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> sut.getAccountType("broken@testmail.com"))
+                .isInstanceOf(ResponseStatusException.class);
+        }
+
+        assertThatThrownBy(() -> sut.getAccountType("courier@testmail.com"))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThatThrownBy(() -> sut.getAccountTypeAsync("courier@testmail.com").get(5, TimeUnit.SECONDS))
+            .cause()
+            .isInstanceOf(ResponseStatusException.class);
+        assertThat(lookups.get()).isEqualTo(4);
+    }
+
+    @Test
+    void failingOrdersServiceIsNoLongerAskedForAWhile() {
+        sut = new UsersCommunication(url, url, 1000, 1000, "", 4,
+            new ServiceGuards(50, 50, 1000, 4, 4, 60_000, 1, 32, 100, 2));
+        for (int i = 0; i < 4; i++) {
+            assertThatThrownBy(() -> sut.updateOrderStatus(new UUID(0, 0), "DELIVERED"))
+                .isInstanceOf(ResponseStatusException.class);
+        }
+
+        assertThatThrownBy(() -> sut.updateOrderStatusAsync(UUID.randomUUID(), "DELIVERED").get(5, TimeUnit.SECONDS))
+            .cause()
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(orderStatusUpdates).hasSize(4);
+        // The users service is guarded apart from the orders service
+        assertThat(sut.getAccountType("courier@testmail.com")).isEqualTo("courier");
+    }
+
+    private static void handlingRequestWithBudget(Duration budget) {
+        ServletRequestAttributes attributes = new ServletRequestAttributes(new MockHttpServletRequest());
+        RequestContextHolder.setRequestAttributes(attributes);
+        RequestDeadline.start(attributes, budget);
+    }
+
+    @Test
+    void nothingIsSentOnceTheRequestIsOutOfTime() {
+        handlingRequestWithBudget(Duration.ZERO);
+
+        assertThatThrownBy(() -> sut.getAccountType("courier@testmail.com"))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+        assertThatThrownBy(() -> sut.getAccountTypes(List.of("courier@testmail.com", "vendor@testmail.com")))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+        assertThatThrownBy(() -> sut.updateOrderStatus(UUID.randomUUID(), "DELIVERED"))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+        assertThat(lookups.get()).isZero();
+        assertThat(orderStatusUpdates).isEmpty();
+    }
+
+    @Test
+    void callGivesUpAtTheDeadline() {
+        sut = new UsersCommunication(url, url, 1000, 5000);
+        handlingRequestWithBudget(Duration.ofMillis(200));
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> sut.getAccountType("stalled@testmail.com"))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(2500));
+    }
+
+    @Test
+    void callsCutShortByTheDeadlineDoNotOpenTheBreaker() {
+        ServiceGuards guards = new ServiceGuards(50, 50, 5000, 4, 4, 60_000, 1, 32, 100, 2);
+        sut = new UsersCommunication(url, url, 1000, 5000, "", 4, guards);
+        UUID stalledOrder = new UUID(-1, -1);
+        for (int i = 0; i < 3; i++) {
+            handlingRequestWithBudget(Duration.ofMillis(100));
+            assertThatThrownBy(() -> sut.updateOrderStatus(stalledOrder, "DELIVERED"))
+                .isInstanceOf(ResponseStatusException.class)
+                .extracting("status")
+                .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+            handlingRequestWithBudget(Duration.ofMillis(100));
+            assertThatThrownBy(() -> sut.updateOrderStatusAsync(stalledOrder, "DELIVERED").get(5, TimeUnit.SECONDS))
+                .cause()
+                .isInstanceOf(ResponseStatusException.class)
+                .extracting("status")
+                .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+        }
+        RequestContextHolder.resetRequestAttributes();
+
+        assertThat(guards.orders().getCircuitBreaker().getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(guards.orders().getCircuitBreaker().getMetrics().getNumberOfFailedCalls()).isZero();
+        sut.updateOrderStatus(UUID.randomUUID(), "DELIVERED");
+    }
+
+    @Test
+    void callersJoiningOneLookupKeepTheirOwnDeadlines() throws Exception {
+        sut = new UsersCommunication(url, url, 1000, 5000);
+        ExecutorService callerThreads = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> hurried = callerThreads.submit(() -> {
+                handlingRequestWithBudget(Duration.ofMillis(200));
+                return sut.getAccountType("popular@testmail.com");
+            });
+            while (popularLookups.get() == 0) {
+                Thread.sleep(10);
+            }
+            Future<String> patient = callerThreads.submit(() -> {
+                handlingRequestWithBudget(Duration.ofSeconds(5));
+                return sut.getAccountType("popular@testmail.com");
+            });
+
+            assertThatThrownBy(() -> hurried.get(5, TimeUnit.SECONDS))
+                .cause()
+                .isInstanceOf(ResponseStatusException.class)
+                .extracting("status")
+                .isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+            // The lookup outlives the deadline of the caller that started it
+            popularAnswered.countDown();
+            assertThat(patient.get(5, TimeUnit.SECONDS)).isEqualTo("courier");
+            assertThat(popularLookups.get()).isEqualTo(1);
+        } finally {
+            callerThreads.shutdownNow();
+        }
+    }
+
+    @Test
+    void timeoutFollowsRecentLatency() {
+        ServiceGuards guards = new ServiceGuards(100, 100, 5000, 100, 100, 1000, 1, 32, 100, 2);
+        sut = new UsersCommunication(url, url, 1000, 5000, "", 4, guards);
+        for (int i = 0; i < 32; i++) {
+            assertThat(sut.getAccountType("courier@testmail.com")).isEqualTo("courier");
+        }
+        Duration timeout = guards.users().getTimeout().current(Duration.ofSeconds(5));
+        assertThat(timeout).isLessThan(Duration.ofSeconds(1));
+
+        // Not a request with a deadline, the service itself is answering too slowly
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> sut.getAccountType("stalled@testmail.com"))
+            .isInstanceOf(ResponseStatusException.class)
+            .extracting("status")
+            .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(2500));
+    }
+}
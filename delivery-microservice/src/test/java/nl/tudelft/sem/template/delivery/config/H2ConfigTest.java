@@ -0,0 +1,54 @@
+package nl.tudelft.sem.template.delivery.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class H2ConfigTest {
+
+    private transient HikariDataSource dataSource;
+
+    @BeforeEach
+    void setUp() {
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("jdbc.driverClassName", "org.h2.Driver")
+            .withProperty("jdbc.url", "jdbc:h2:mem:pool-test")
+            .withProperty("jdbc.pool.max-size", "4")
+            .withProperty("jdbc.pool.min-idle", "2")
+            .withProperty("jdbc.pool.idle-timeout-ms", "20000")
+            .withProperty("jdbc.pool.max-lifetime-ms", "60000");
+        dataSource = (HikariDataSource) new H2Config(environment).dataSource();
+    }
+
+    @AfterEach
+    void tearDown() {
+        dataSource.close();
+    }
+
+    @Test
+    void poolIsSizedFromTheProperties() {
+        assertThat(dataSource.getMaximumPoolSize()).isEqualTo(4);
+        assertThat(dataSource.getMinimumIdle()).isEqualTo(2);
+        assertThat(dataSource.getIdleTimeout()).isEqualTo(20_000);
+        assertThat(dataSource.getMaxLifetime()).isEqualTo(60_000);
+        assertThat(dataSource.getConnectionTimeout()).isEqualTo(30_000);
+    }
+
+    @Test
+    void connectionsAreReused() throws SQLException {
+        Connection first;
+        try (Connection connection = dataSource.getConnection()) {
+            first = connection.unwrap(Connection.class);
+        }
+        try (Connection connection = dataSource.getConnection()) {
+            assertThat(connection.unwrap(Connection.class)).isSameAs(first);
+        }
+    }
+}
@@ -2,36 +2,55 @@ package nl.tudelft.sem.template.delivery.controllers;
 
 import nl.tudelft.sem.template.delivery.AvailableDeliveryProxy;
 import nl.tudelft.sem.template.delivery.AvailableDeliveryProxyImplementation;
+import nl.tudelft.sem.template.delivery.GPS;
 import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
 import nl.tudelft.sem.template.delivery.domain.ErrorRepository;
 import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
 import nl.tudelft.sem.template.delivery.services.CouriersService;
 import nl.tudelft.sem.template.delivery.services.DeliveryService;
+import nl.tudelft.sem.template.delivery.services.DispatchService;
+import nl.tudelft.sem.template.delivery.services.TimeCalculationService;
 import nl.tudelft.sem.template.delivery.services.UpdateService;
 import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService;
+import nl.tudelft.sem.template.model.CourierAssignment;
+import nl.tudelft.sem.template.model.CourierPosition;
 import nl.tudelft.sem.template.model.Delivery;
 import nl.tudelft.sem.template.model.DeliveryStatus;
 import nl.tudelft.sem.template.model.Restaurant;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @EntityScan("nl.tudelft.sem.template.*")
@@ -62,9 +81,12 @@ class CouriersControllerTest {
     void setUp() {
         ds = new DeliveryService(dr, rr, er);
         cs = new CouriersService(dr, rr);
-        availableDeliveryProxy = new AvailableDeliveryProxyImplementation(ds);
-        sut = new CouriersController(ds, usersAuth, cs, availableDeliveryProxy,
-                new UpdateService(dr));
+        availableDeliveryProxy = new AvailableDeliveryProxyImplementation(ds, 0.01, 3, 600, Runnable::run);
+        UpdateService us = new UpdateService(dr);
+        DispatchService dispatchService = new DispatchService(availableDeliveryProxy, dr, rr,
+                new TimeCalculationService(dr, new GPS(), rr), us, 2000);
+        sut = new CouriersController(usersAuth, cs, availableDeliveryProxy,
+                us, new GPS(), dispatchService, 30);
     }
 
     @Test
@@ -78,10 +100,10 @@ class CouriersControllerTest {
         when(usersAuth.getUserAccountType("not_a_courier@testmail.com"))
                 .thenReturn(UsersAuthenticationService.AccountType.CLIENT);
 
-        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("not_a_courier@testmail.com"))
+        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("not_a_courier@testmail.com", null, null))
                 .extracting("status")
                 .isEqualTo(HttpStatus.BAD_REQUEST);
-        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("not_a_courier@testmail.com"))
+        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("not_a_courier@testmail.com", null, null))
                 .message()
                 .isEqualTo("400 BAD_REQUEST \"There is no such courier\"");
     }
@@ -104,10 +126,10 @@ class CouriersControllerTest {
         when(usersAuth.getUserAccountType("courier@testmail.com"))
                 .thenReturn(UsersAuthenticationService.AccountType.COURIER);
 
-        ResponseEntity<Delivery> res = sut.couriersCourierIdNextOrderPut("courier@testmail.com");
+        ResponseEntity<Delivery> res = sut.couriersCourierIdNextOrderPut("courier@testmail.com", null, null);
         assertEquals(HttpStatus.OK, res.getStatusCode());
 
-        res = sut.couriersCourierIdNextOrderPut("courier@testmail.com");
+        res = sut.couriersCourierIdNextOrderPut("courier@testmail.com", null, null);
         assertEquals(HttpStatus.OK, res.getStatusCode());
     }
 
@@ -128,40 +150,199 @@ class CouriersControllerTest {
         when(usersAuth.getUserAccountType("courier@testmail.com"))
                 .thenReturn(UsersAuthenticationService.AccountType.COURIER);
 
-        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("courier@testmail.com"))
+        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("courier@testmail.com", null, null))
                 .extracting("status")
                 .isEqualTo(HttpStatus.NOT_FOUND);
-        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("courier@testmail.com"))
+        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("courier@testmail.com", null, null))
                 .message()
                 .isEqualTo("404 NOT_FOUND \"There are no available deliveries at the moment.\"");
     }
 
     @Test
-    void couriersCourierIdNextOrderPut_CourierBelongsToRestaurant() {
-        List<UUID> deliveryUUIDs = Stream.generate(UUID::randomUUID).limit(3).collect(Collectors.toList());
-        List<Delivery> deliveries = deliveryUUIDs
-                .stream()
-                .map(x -> new Delivery().deliveryID(x))
-                .collect(Collectors.toList());
-        deliveries.forEach(y -> y.setStatus(DeliveryStatus.ACCEPTED));
-        deliveries.forEach(x -> x.setRestaurantID("vendor@testmail.com"));
+    void couriersCourierIdNextOrderPut_SkipsDeliveriesAssignedInTheMeantime() {
         Restaurant r = new Restaurant();
-        r.setCouriers(List.of("courier@testmail.com"));
         r.setRestaurantID("vendor@testmail.com");
         rr.save(r);
+        Delivery taken = dr.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("vendor@testmail.com").status(DeliveryStatus.ACCEPTED));
+        Delivery free = dr.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("vendor@testmail.com").status(DeliveryStatus.PREPARING));
+        availableDeliveryProxy.insertDelivery(taken);
+        availableDeliveryProxy.insertDelivery(free);
+        dr.save(taken.courierID("other@testmail.com"));
+        when(usersAuth.getUserAccountType("courier@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.COURIER);
 
-        deliveries.forEach(x -> availableDeliveryProxy.insertDelivery(x));
-        dr.saveAll(deliveries);
+        ResponseEntity<Delivery> res = sut.couriersCourierIdNextOrderPut("courier@testmail.com", null, null);
+
+        assertEquals(free.getDeliveryID(), Objects.requireNonNull(res.getBody()).getDeliveryID());
+        assertEquals("courier@testmail.com", res.getBody().getCourierID());
+        assertEquals("other@testmail.com", dr.findById(taken.getDeliveryID()).orElseThrow().getCourierID());
+        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("courier@testmail.com", null, null))
+                .extracting("status")
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void couriersCourierIdNextOrderPut_WaitsForNextDelivery() {
+        rr.save(new Restaurant().restaurantID("vendor@testmail.com"));
+        when(usersAuth.getUserAccountType("courier@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.COURIER);
+
+        DeferredResult<ResponseEntity<Delivery>> result =
+                sut.couriersCourierIdNextOrderPut("courier@testmail.com", 10, null, null);
+        assertFalse(result.hasResult());
+
+        Delivery delivery = dr.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("vendor@testmail.com").status(DeliveryStatus.ACCEPTED));
+        availableDeliveryProxy.insertDelivery(delivery);
+
+        assertThat(result.getResult())
+                .extracting("body.deliveryID", "body.courierID")
+                .containsExactly(delivery.getDeliveryID(), "courier@testmail.com");
+    }
+
+    @Test
+    void couriersCourierIdNextOrderPut_WaitingCourierGetsTheError() {
+        AvailableDeliveryProxy failingProxy = mock(AvailableDeliveryProxy.class);
+        CouriersController controller = new CouriersController(usersAuth, cs, failingProxy,
+                new UpdateService(dr), new GPS(), null, 30);
+        when(usersAuth.getUserAccountType("courier@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.COURIER);
+        DeferredResult<ResponseEntity<Delivery>> unavailable =
+                controller.couriersCourierIdNextOrderPut("courier@testmail.com", 10, 52.0, 4.3);
+        DeferredResult<ResponseEntity<Delivery>> conflict =
+                controller.couriersCourierIdNextOrderPut("courier@testmail.com", 10, 52.0, 4.3);
+        ArgumentCaptor<Runnable> waiters = ArgumentCaptor.forClass(Runnable.class);
+        verify(failingProxy, times(2)).awaitDelivery(waiters.capture(), isNull(), eq(false));
+
+        when(failingProxy.pollAvailableDeliveryId(List.of(52.0, 4.3)))
+                .thenThrow(new DataAccessResourceFailureException("Database is down"))
+                .thenThrow(new ResponseStatusException(HttpStatus.CONFLICT, "Delivery changed."));
+        waiters.getAllValues().forEach(Runnable::run);
+
+        assertThat(unavailable.getResult()).extracting("status").isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(conflict.getResult()).extracting("status").isEqualTo(HttpStatus.CONFLICT);
+    }
+
+    @Test
+    void couriersCourierIdNextOrderPut_ServesWaitingCouriersInOrder() {
+        rr.save(new Restaurant().restaurantID("vendor@testmail.com"));
+        when(usersAuth.getUserAccountType(anyString()))
+                .thenReturn(UsersAuthenticationService.AccountType.COURIER);
+        DeferredResult<ResponseEntity<Delivery>> first =
+                sut.couriersCourierIdNextOrderPut("first@testmail.com", 10, null, null);
+        DeferredResult<ResponseEntity<Delivery>> second =
+                sut.couriersCourierIdNextOrderPut("second@testmail.com", 10, null, null);
+
+        Delivery delivery = dr.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("vendor@testmail.com").status(DeliveryStatus.PREPARING));
+        availableDeliveryProxy.insertDelivery(delivery);
 
+        assertThat(first.getResult()).extracting("body.courierID").isEqualTo("first@testmail.com");
+        assertFalse(second.hasResult());
+
+        delivery = dr.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("vendor@testmail.com").status(DeliveryStatus.ACCEPTED));
+        availableDeliveryProxy.insertDelivery(delivery);
+
+        assertThat(second.getResult()).extracting("body.courierID").isEqualTo("second@testmail.com");
+    }
+
+    @Test
+    void couriersCourierIdNextOrderPut_WithoutWaiting() {
+        rr.save(new Restaurant().restaurantID("vendor@testmail.com"));
+        Delivery delivery = dr.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("vendor@testmail.com").status(DeliveryStatus.ACCEPTED));
+        availableDeliveryProxy.insertDelivery(delivery);
         when(usersAuth.getUserAccountType("courier@testmail.com"))
                 .thenReturn(UsersAuthenticationService.AccountType.COURIER);
 
-        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("courier@testmail.com"))
+        assertThat(sut.couriersCourierIdNextOrderPut("courier@testmail.com", 10, null, null).getResult())
+                .extracting("body.deliveryID")
+                .isEqualTo(delivery.getDeliveryID());
+        assertThat(sut.couriersCourierIdNextOrderPut("courier@testmail.com", 0, null, null).getResult())
+                .extracting("status")
+                .isEqualTo(HttpStatus.NOT_FOUND);
+        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("courier@testmail.com", 31, null, null))
                 .extracting("status")
                 .isEqualTo(HttpStatus.BAD_REQUEST);
-        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("courier@testmail.com"))
-                .message()
-                .isEqualTo("400 BAD_REQUEST \"This courier works for a specific restaurant\"");
+        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("courier@testmail.com", -1, null, null))
+                .extracting("status")
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void couriersCourierIdNextOrderPut_NearestToGivenLocation() {
+        // Ready five minutes ago, before they count as waiting too long
+        OffsetDateTime orderTime = OffsetDateTime.now().minusMinutes(35);
+        rr.save(new Restaurant().restaurantID("near-gps@testmail.com").location(List.of(39.0, 34.0)));
+        rr.save(new Restaurant().restaurantID("near-courier@testmail.com").location(List.of(52.0, 4.3)));
+        Delivery nearGps = dr.save(new Delivery().deliveryID(UUID.randomUUID()).orderTime(orderTime)
+                .restaurantID("near-gps@testmail.com").status(DeliveryStatus.ACCEPTED));
+        Delivery nearCourier = dr.save(new Delivery().deliveryID(UUID.randomUUID()).orderTime(orderTime)
+                .restaurantID("near-courier@testmail.com").status(DeliveryStatus.ACCEPTED));
+        availableDeliveryProxy.insertDelivery(nearGps);
+        availableDeliveryProxy.insertDelivery(nearCourier);
+        when(usersAuth.getUserAccountType("courier@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.COURIER);
+
+        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("courier@testmail.com", 52.0, null))
+                .extracting("status")
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(sut.couriersCourierIdNextOrderPut("courier@testmail.com", 52.001, 4.301).getBody())
+                .extracting("deliveryID")
+                .isEqualTo(nearCourier.getDeliveryID());
+        assertThat(sut.couriersCourierIdNextOrderPut("courier@testmail.com", null, null).getBody())
+                .extracting("deliveryID")
+                .isEqualTo(nearGps.getDeliveryID());
+    }
+
+    @Test
+    void couriersCourierIdNextOrderPut_CourierBelongsToRestaurant() {
+        Restaurant r = new Restaurant();
+        r.setCouriers(List.of("courier@testmail.com"));
+        r.setRestaurantID("vendor@testmail.com");
+        rr.save(r);
+        rr.save(new Restaurant().restaurantID("other@testmail.com"));
+        Delivery other = dr.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("other@testmail.com").status(DeliveryStatus.ACCEPTED));
+        Delivery own = dr.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("vendor@testmail.com").status(DeliveryStatus.ACCEPTED));
+        availableDeliveryProxy.insertDelivery(other);
+        availableDeliveryProxy.insertDelivery(own);
+
+        when(usersAuth.getUserAccountType("courier@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.COURIER);
+
+        assertThat(sut.couriersCourierIdNextOrderPut("courier@testmail.com", null, null).getBody())
+                .extracting("deliveryID", "courierID")
+                .containsExactly(own.getDeliveryID(), "courier@testmail.com");
+        assertThatThrownBy(() -> sut.couriersCourierIdNextOrderPut("courier@testmail.com", null, null))
+                .extracting("status")
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void couriersCourierIdNextOrderPut_CourierWaitsForOwnRestaurant() {
+        rr.save(new Restaurant().restaurantID("vendor@testmail.com").couriers(List.of("courier@testmail.com")));
+        rr.save(new Restaurant().restaurantID("other@testmail.com"));
+        when(usersAuth.getUserAccountType("courier@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.COURIER);
+
+        DeferredResult<ResponseEntity<Delivery>> result =
+                sut.couriersCourierIdNextOrderPut("courier@testmail.com", 10, null, null);
+        availableDeliveryProxy.insertDelivery(dr.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("other@testmail.com").status(DeliveryStatus.ACCEPTED)));
+        assertFalse(result.hasResult());
+
+        Delivery own = dr.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("vendor@testmail.com").status(DeliveryStatus.PREPARING));
+        availableDeliveryProxy.insertDelivery(own);
+
+        assertThat(result.getResult())
+                .extracting("body.deliveryID", "body.courierID")
+                .containsExactly(own.getDeliveryID(), "courier@testmail.com");
     }
 
     @Test
@@ -348,4 +529,118 @@ class CouriersControllerTest {
         assertEquals(2, Objects.requireNonNull(result.getBody()).size());
         assertTrue(result.getBody().containsAll(List.of(orderId1, orderId2)));
     }
+
+    private Delivery saveAvailableDelivery(String restaurantId, List<Double> restaurantLocation) {
+        Restaurant restaurant = new Restaurant();
+        restaurant.setRestaurantID(restaurantId);
+        restaurant.setLocation(restaurantLocation);
+        rr.save(restaurant);
+        Delivery delivery = dr.save(new Delivery()
+                .deliveryID(UUID.randomUUID())
+                .restaurantID(restaurantId)
+                .status(DeliveryStatus.ACCEPTED));
+        availableDeliveryProxy.insertDelivery(delivery);
+        return delivery;
+    }
+
+    @Test
+    void couriersDispatchPut_MinimizesTotalTravelTime() {
+        Delivery west = saveAvailableDelivery("west@testmail.com", List.of(52.0, 4.30));
+        Delivery east = saveAvailableDelivery("east@testmail.com", List.of(52.0, 4.40));
+        when(usersAuth.getUserAccountType("admin@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.ADMIN);
+        when(usersAuth.getUserAccountTypes(Set.of("courier1@testmail.com", "customer@testmail.com",
+                "courier2@testmail.com"))).thenReturn(Map.of(
+                        "courier1@testmail.com", UsersAuthenticationService.AccountType.COURIER,
+                        "customer@testmail.com", UsersAuthenticationService.AccountType.CLIENT,
+                        "courier2@testmail.com", UsersAuthenticationService.AccountType.COURIER));
+
+        // Handing out the oldest delivery first would send the first courier east and the second one west
+        ResponseEntity<List<CourierAssignment>> res = sut.couriersDispatchPut("admin@testmail.com", List.of(
+                new CourierPosition().courierID("courier1@testmail.com").location(List.of(52.0, 4.41)),
+                new CourierPosition().courierID("customer@testmail.com").location(List.of(52.0, 4.30)),
+                new CourierPosition().courierID("courier2@testmail.com").location(List.of(52.0, 4.31))));
+
+        assertEquals(HttpStatus.OK, res.getStatusCode());
+        assertThat(Objects.requireNonNull(res.getBody())).containsExactlyInAnyOrder(
+                new CourierAssignment().courierID("courier1@testmail.com").deliveryID(east.getDeliveryID())
+                        .transitTime(1),
+                new CourierAssignment().courierID("courier2@testmail.com").deliveryID(west.getDeliveryID())
+                        .transitTime(1));
+        assertEquals("courier1@testmail.com", dr.findById(east.getDeliveryID()).orElseThrow().getCourierID());
+        assertEquals("courier2@testmail.com", dr.findById(west.getDeliveryID()).orElseThrow().getCourierID());
+        assertThatThrownBy(() -> availableDeliveryProxy.getAvailableDeliveryId())
+                .extracting("status")
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    void couriersDispatchPut_MoreCouriersThanDeliveries() {
+        Delivery delivery = saveAvailableDelivery("vendor@testmail.com", List.of(52.0, 4.30));
+        when(usersAuth.getUserAccountType("admin@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.ADMIN);
+        when(usersAuth.getUserAccountTypes(Set.of("far@testmail.com", "near@testmail.com"))).thenReturn(Map.of(
+                "far@testmail.com", UsersAuthenticationService.AccountType.COURIER,
+                "near@testmail.com", UsersAuthenticationService.AccountType.COURIER));
+
+        ResponseEntity<List<CourierAssignment>> res = sut.couriersDispatchPut("admin@testmail.com", List.of(
+                new CourierPosition().courierID("far@testmail.com").location(List.of(53.0, 4.30)),
+                new CourierPosition().courierID("near@testmail.com").location(List.of(52.0, 4.31))));
+
+        assertThat(Objects.requireNonNull(res.getBody())).extracting(CourierAssignment::getCourierID,
+                CourierAssignment::getDeliveryID).containsExactly(tuple("near@testmail.com", delivery.getDeliveryID()));
+    }
+
+    @Test
+    void couriersDispatchPut_LeavesOutRestaurantCouriers() {
+        Delivery delivery = saveAvailableDelivery("vendor@testmail.com", List.of(52.0, 4.30));
+        rr.save(new Restaurant().restaurantID("other_vendor@testmail.com").location(List.of(52.0, 4.31))
+                .couriers(List.of("near@testmail.com")));
+        when(usersAuth.getUserAccountType("admin@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.ADMIN);
+        when(usersAuth.getUserAccountTypes(Set.of("far@testmail.com", "near@testmail.com"))).thenReturn(Map.of(
+                "far@testmail.com", UsersAuthenticationService.AccountType.COURIER,
+                "near@testmail.com", UsersAuthenticationService.AccountType.COURIER));
+
+        ResponseEntity<List<CourierAssignment>> res = sut.couriersDispatchPut("admin@testmail.com", List.of(
+                new CourierPosition().courierID("far@testmail.com").location(List.of(52.1, 4.30)),
+                new CourierPosition().courierID("near@testmail.com").location(List.of(52.0, 4.31))));
+
+        assertThat(Objects.requireNonNull(res.getBody())).extracting(CourierAssignment::getCourierID,
+                CourierAssignment::getDeliveryID).containsExactly(tuple("far@testmail.com", delivery.getDeliveryID()));
+    }
+
+    @Test
+    void couriersDispatchPut_OnlyAdmins() {
+        when(usersAuth.getUserAccountType("courier@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.COURIER);
+        when(usersAuth.getUserAccountType("nobody@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.INVALID);
+
+        assertThatThrownBy(() -> sut.couriersDispatchPut("courier@testmail.com", List.of()))
+                .extracting("status")
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        assertThatThrownBy(() -> sut.couriersDispatchPut("nobody@testmail.com", List.of()))
+                .extracting("status")
+                .isEqualTo(HttpStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    void couriersDispatchPut_BadRequest() {
+        when(usersAuth.getUserAccountType("admin@testmail.com"))
+                .thenReturn(UsersAuthenticationService.AccountType.ADMIN);
+        CourierPosition courier = new CourierPosition().courierID("courier@testmail.com").location(List.of(52.0, 4.3));
+
+        assertThatThrownBy(() -> sut.couriersDispatchPut("admin@testmail.com", List.of(courier, courier)))
+                .extracting("status")
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThatThrownBy(() -> sut.couriersDispatchPut("admin@testmail.com",
+                List.of(new CourierPosition().courierID("courier@testmail.com").location(List.of(52.0)))))
+                .extracting("status")
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThatThrownBy(() -> sut.couriersDispatchPut("admin@testmail.com",
+                List.of(new CourierPosition().location(List.of(52.0, 4.3)))))
+                .extracting("status")
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
 }
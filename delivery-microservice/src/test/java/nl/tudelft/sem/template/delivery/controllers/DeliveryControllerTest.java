@@ -14,6 +14,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
@@ -77,7 +78,7 @@ class DeliveryControllerTest {
         ds = new DeliveryService(deliveryRepository, restaurantRepository, errorRepository);
         es = new ErrorService(errorRepository, deliveryRepository);
         restaurantController = new RestaurantController(
-                new RestaurantService(restaurantRepository, deliveryRepository),
+                new RestaurantService(restaurantRepository, deliveryRepository, mock(ApplicationEventPublisher.class)),
                 usersCommunication);
         sut = new DeliveryController(ds, es, usersCommunication, deliveryStatusHandler,
             new TimeCalculationService(deliveryRepository, new GPS(), restaurantRepository), availableDeliveryProxy,
@@ -494,7 +495,7 @@ class DeliveryControllerTest {
 
         when(usersCommunication.getUserAccountType(userId)).thenReturn(type);
 
-        ResponseEntity<List<Delivery>> result = sut.deliveriesAllAcceptedGet(userId);
+        ResponseEntity<List<Delivery>> result = sut.deliveriesAllAcceptedGet(userId, null, null, null, null, null, null);
 
         assertEquals(HttpStatus.OK, result.getStatusCode());
         assert (Objects.requireNonNull(result.getBody()).contains(m1));
@@ -531,7 +532,7 @@ class DeliveryControllerTest {
 
         when(usersCommunication.getUserAccountType(userId)).thenReturn(type);
 
-        ResponseEntity<List<Delivery>> result = sut.deliveriesAllAcceptedGet(userId);
+        ResponseEntity<List<Delivery>> result = sut.deliveriesAllAcceptedGet(userId, null, null, null, null, null, null);
 
         assertEquals(HttpStatus.OK, result.getStatusCode());
         assert (Objects.requireNonNull(result.getBody()).contains(m1));
@@ -558,7 +559,7 @@ class DeliveryControllerTest {
         when(usersCommunication.getUserAccountType(userId)).thenReturn(type);
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class,
-                () -> sut.deliveriesAllAcceptedGet(userId));
+                () -> sut.deliveriesAllAcceptedGet(userId, null, null, null, null, null, null));
         assertEquals(HttpStatus.FORBIDDEN, exception.getStatus());
         assertEquals("User lacks necessary permissions.", exception.getReason());
 
@@ -583,7 +584,7 @@ class DeliveryControllerTest {
         when(usersCommunication.getUserAccountType(userId)).thenReturn(type);
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class,
-                () -> sut.deliveriesAllAcceptedGet(userId));
+                () -> sut.deliveriesAllAcceptedGet(userId, null, null, null, null, null, null));
         assertEquals(HttpStatus.FORBIDDEN, exception.getStatus());
         assertEquals("User lacks necessary permissions.", exception.getReason());
 
@@ -608,13 +609,96 @@ class DeliveryControllerTest {
         when(usersCommunication.getUserAccountType(userId)).thenReturn(type);
 
         ResponseStatusException exception = assertThrows(ResponseStatusException.class,
-                () -> sut.deliveriesAllAcceptedGet(userId));
+                () -> sut.deliveriesAllAcceptedGet(userId, null, null, null, null, null, null));
         assertEquals(HttpStatus.UNAUTHORIZED, exception.getStatus());
         assertEquals("User lacks valid authentication credentials.", exception.getReason());
 
         verify(usersCommunication, times(1)).getUserAccountType(userId);
     }
 
+    private Delivery acceptedDelivery(String restaurantId, long id) {
+        Delivery accepted = new Delivery().deliveryID(new UUID(0, id)).restaurantID(restaurantId)
+                .status(DeliveryStatus.ACCEPTED);
+        return deliveryRepository.save(accepted);
+    }
+
+    @Test
+    void deliveriesAllAcceptedGetPages() {
+        String courier = "courier@testmail.com";
+        when(usersCommunication.getUserAccountType(courier)).thenReturn(AccountType.COURIER);
+        Delivery d1 = acceptedDelivery("vendor@testmail.com", 1);
+        Delivery d2 = acceptedDelivery("vendor@testmail.com", 2);
+        Delivery d3 = acceptedDelivery("vendor@testmail.com", 3);
+        deliveryRepository.save(new Delivery().deliveryID(new UUID(0, 4)).status(DeliveryStatus.ACCEPTED)
+                .courierID(courier));
+
+        assertThat(sut.deliveriesAllAcceptedGet(courier, null, 2, null, null, null, null).getBody())
+                .containsExactly(d1, d2);
+        assertThat(sut.deliveriesAllAcceptedGet(courier, d2.getDeliveryID(), 2, null, null, null, null).getBody())
+                .containsExactly(d3);
+    }
+
+    @Test
+    void deliveriesAllAcceptedGetPagesThroughRandomIds() {
+        String courier = "courier@testmail.com";
+        when(usersCommunication.getUserAccountType(courier)).thenReturn(AccountType.COURIER);
+        Set<UUID> ids = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            ids.add(deliveryRepository.save(new Delivery().deliveryID(UUID.randomUUID())
+                    .status(DeliveryStatus.ACCEPTED)).getDeliveryID());
+        }
+
+        Set<UUID> seen = new HashSet<>();
+        UUID after = null;
+        List<Delivery> page;
+        do {
+            page = sut.deliveriesAllAcceptedGet(courier, after, 3, null, null, null, null).getBody();
+            page.forEach(d -> assertTrue(seen.add(d.getDeliveryID())));
+            after = page.isEmpty() ? after : page.get(page.size() - 1).getDeliveryID();
+        } while (!page.isEmpty());
+        assertEquals(ids, seen);
+    }
+
+    @Test
+    void deliveriesAllAcceptedGetOfRestaurant() {
+        String courier = "courier@testmail.com";
+        when(usersCommunication.getUserAccountType(courier)).thenReturn(AccountType.COURIER);
+        acceptedDelivery("vendor@testmail.com", 1);
+        Delivery other = acceptedDelivery("other@testmail.com", 2);
+
+        assertThat(sut.deliveriesAllAcceptedGet(courier, null, null, "other@testmail.com", null, null, null).getBody())
+                .containsExactly(other);
+    }
+
+    @Test
+    void deliveriesAllAcceptedGetInArea() {
+        String courier = "courier@testmail.com";
+        when(usersCommunication.getUserAccountType(courier)).thenReturn(AccountType.COURIER);
+        restaurantRepository.save(new Restaurant().restaurantID("delft@testmail.com").location(List.of(52.01, 4.36)));
+        restaurantRepository.save(new Restaurant().restaurantID("rotterdam@testmail.com").location(List.of(51.92, 4.48)));
+        Delivery delft = acceptedDelivery("delft@testmail.com", 1);
+        Delivery rotterdam = acceptedDelivery("rotterdam@testmail.com", 2);
+
+        // Rotterdam is about 12 km from Delft
+        assertThat(sut.deliveriesAllAcceptedGet(courier, null, null, null, 52.0, 4.35, 5.0).getBody())
+                .containsExactly(delft);
+        assertThat(sut.deliveriesAllAcceptedGet(courier, null, null, null, 52.0, 4.35, 15.0).getBody())
+                .containsExactly(delft, rotterdam);
+    }
+
+    @Test
+    void deliveriesAllAcceptedGetInvalidPageOrArea() {
+        assertThatThrownBy(() -> sut.deliveriesAllAcceptedGet(userId, null, 0, null, null, null, null))
+                .extracting("status").isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThatThrownBy(() -> sut.deliveriesAllAcceptedGet(userId, null, 501, null, null, null, null))
+                .extracting("status").isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThatThrownBy(() -> sut.deliveriesAllAcceptedGet(userId, null, null, null, 52.0, 4.35, null))
+                .extracting("status").isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThatThrownBy(() -> sut.deliveriesAllAcceptedGet(userId, null, null, null, 52.0, 4.35, -1.0))
+                .extracting("status").isEqualTo(HttpStatus.BAD_REQUEST);
+        verifyNoInteractions(usersCommunication);
+    }
+
     @Test
     void deliveriesDeliveryIdCourierGetAdmin() {
         UUID deliveryId = UUID.randomUUID();
@@ -2641,11 +2725,12 @@ class DeliveryControllerTest {
 
         when(usersCommunication.getUserAccountType(courierId)).thenReturn(AccountType.COURIER);
         when(usersCommunication.checkUserAccessToDelivery(courierId, delivery)).thenReturn(true);
-        when(deliveryStatusHandler.updateDeliveryStatus(eq(deliveryId), eq(courierId), any())).thenAnswer(input -> {
-            String statusString = input.getArgument(2);
-            delivery.setStatus(DeliveryStatus.fromValue(statusString));
-            return delivery;
-        });
+        when(deliveryStatusHandler.updateDeliveryStatus(eq(deliveryId), eq(AccountType.COURIER), any()))
+                .thenAnswer(input -> {
+                    String statusString = input.getArgument(2);
+                    delivery.setStatus(DeliveryStatus.fromValue(statusString));
+                    return delivery;
+                });
 
         assertThat(sut.deliveriesDeliveryIdStatusPut(deliveryId, courierId, "ON_TRANSIT").getBody())
                 .extracting("status")
@@ -3,9 +3,10 @@ package nl.tudelft.sem.template.delivery.controllers;
 import nl.tudelft.sem.template.delivery.communication.UsersCommunication;
 import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
 import nl.tudelft.sem.template.delivery.domain.ErrorRepository;
+import nl.tudelft.sem.template.delivery.domain.OrderStatusOutboxRepository;
 import nl.tudelft.sem.template.delivery.services.DeliveryService;
+import nl.tudelft.sem.template.delivery.services.OrderStatusOutbox;
 import nl.tudelft.sem.template.delivery.services.UpdateService;
-import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService;
 import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType;
 import nl.tudelft.sem.template.model.Delivery;
 import nl.tudelft.sem.template.model.DeliveryStatus;
@@ -18,12 +19,21 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.http.HttpStatus;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -37,8 +47,12 @@ public class DeliveryStatusHandlerTest {
 
     @Autowired
     private transient ErrorRepository errorRepository;
-    @Mock
-    private transient UsersAuthenticationService usersAuthentication;
+
+    @Autowired
+    private transient OrderStatusOutboxRepository outboxRepository;
+
+    @Autowired
+    private transient PlatformTransactionManager transactionManager;
     @Mock
     private transient UsersCommunication usersCommunication;
     private transient DeliveryStatusHandler statusHandler;
@@ -49,7 +63,8 @@ public class DeliveryStatusHandlerTest {
     @BeforeEach
     public void init() {
         DeliveryService deliveryService = new DeliveryService(deliveryRepository, null, errorRepository);
-        statusHandler = new DeliveryStatusHandler(deliveryService, usersAuthentication, usersCommunication,
+        statusHandler = new DeliveryStatusHandler(deliveryService,
+            new OrderStatusOutbox(outboxRepository, usersCommunication, 100, 1000, 60000, 60000),
             new UpdateService(deliveryRepository));
     }
 
@@ -66,51 +81,66 @@ public class DeliveryStatusHandlerTest {
     @Test
     void updateSucceedsWhenAuthenticatedUserMakesALegalUpdate() {
         Delivery delivery = insertExampleDelivery();
-        when(usersAuthentication.getUserAccountType("courier")).thenReturn(AccountType.COURIER);
 
-        assertThat(statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), "courier", "DELIVERED"))
+        assertThat(statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), AccountType.COURIER, "DELIVERED"))
                 .extracting("status")
                 .isEqualTo(DeliveryStatus.DELIVERED);
         assertThat(deliveryRepository.findById(delivery.getDeliveryID()))
                 .get()
                 .extracting("status")
                 .isEqualTo(DeliveryStatus.DELIVERED);
-        verify(usersCommunication, times(1)).updateOrderStatus(any(), any());
+        assertThat(outboxRepository.findAll())
+                .extracting("orderId", "status")
+                .containsExactly(tuple(delivery.getDeliveryID(), "DELIVERED"));
+        verifyNoInteractions(usersCommunication);
     }
 
     @Test
     void updateSucceedsWhenAuthenticatedUserMakesALegalUpdateAdmin() {
         Delivery delivery = insertExampleDelivery();
-        when(usersAuthentication.getUserAccountType("courier")).thenReturn(AccountType.ADMIN);
 
-        assertThat(statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), "courier", "DELIVERED"))
+        assertThat(statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), AccountType.ADMIN, "DELIVERED"))
                 .extracting("status")
                 .isEqualTo(DeliveryStatus.DELIVERED);
         assertThat(deliveryRepository.findById(delivery.getDeliveryID()))
                 .get()
                 .extracting("status")
                 .isEqualTo(DeliveryStatus.DELIVERED);
-        verify(usersCommunication, times(1)).updateOrderStatus(any(), any());
+        assertThat(outboxRepository.findAll())
+                .extracting("orderId", "status")
+                .containsExactly(tuple(delivery.getDeliveryID(), "DELIVERED"));
+        verifyNoInteractions(usersCommunication);
     }
 
     @Test
-    void updateDoesNotSucceedBecauseOtherServerUnavailable() {
+    void updateSucceedsWhileOtherServerUnavailable() {
         Delivery delivery = insertExampleDelivery();
-        when(usersAuthentication.getUserAccountType("courier")).thenReturn(AccountType.COURIER);
-        doThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE))
+        lenient().doThrow(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE))
             .when(usersCommunication).updateOrderStatus(any(), any());
-        assertThatThrownBy(() -> statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), "courier", "DELIVERED"))
+
+        assertThat(statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), AccountType.COURIER, "DELIVERED"))
                 .extracting("status")
-                .isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+                .isEqualTo(DeliveryStatus.DELIVERED);
+        assertThat(outboxRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void illegalUpdateIsNotSentToOtherServer() {
+        Delivery delivery = insertExampleDelivery();
 
+        assertThatThrownBy(() -> statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), AccountType.CLIENT,
+                "DELIVERED"))
+                .extracting("status")
+                .isEqualTo(HttpStatus.FORBIDDEN);
+        assertThat(outboxRepository.count()).isZero();
     }
 
     @Test
     void throwsForbiddenWhenAuthenticatedUserMakesNotChronologicalUpdate() {
         Delivery delivery = insertExampleDelivery();
-        when(usersAuthentication.getUserAccountType("restaurant")).thenReturn(AccountType.VENDOR);
 
-        assertThatThrownBy(() -> statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), "restaurant", "ACCEPTED"))
+        assertThatThrownBy(() -> statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), AccountType.VENDOR,
+                "ACCEPTED"))
                 .extracting("status")
                 .isEqualTo(HttpStatus.FORBIDDEN);
     }
@@ -118,9 +148,9 @@ public class DeliveryStatusHandlerTest {
     @Test
     void throwsForbiddenWhenAuthenticatedUserMakesUpdateNotBelongingToThem() {
         Delivery delivery = insertExampleDelivery();
-        when(usersAuthentication.getUserAccountType("client")).thenReturn(AccountType.CLIENT);
 
-        assertThatThrownBy(() -> statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), "client", "DELIVERED"))
+        assertThatThrownBy(() -> statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), AccountType.CLIENT,
+                "DELIVERED"))
                 .extracting("status")
                 .isEqualTo(HttpStatus.FORBIDDEN);
     }
@@ -128,13 +158,66 @@ public class DeliveryStatusHandlerTest {
     @Test
     void throwsBadRequestWhenAuthenticatedUserMakesUpdateWithInvalidDeliveryStatus() {
         Delivery delivery = insertExampleDelivery();
-        when(usersAuthentication.getUserAccountType("courier")).thenReturn(AccountType.COURIER);
 
-        assertThatThrownBy(() -> statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), "courier", "SOMETHING WEIRD"))
+        assertThatThrownBy(() -> statusHandler.updateDeliveryStatus(delivery.getDeliveryID(), AccountType.COURIER,
+                "SOMETHING WEIRD"))
                 .extracting("status")
                 .isEqualTo(HttpStatus.BAD_REQUEST);
     }
 
+    @Test
+    @org.springframework.transaction.annotation.Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void concurrentUpdateIsCheckedAgainstTheCommittedStatus() throws Exception {
+        UUID deliveryId = deliveryRepository.save(new Delivery().deliveryID(UUID.randomUUID())
+                .restaurantID("restaurant").status(DeliveryStatus.PENDING)).getDeliveryID();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        CountDownLatch accepted = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        try {
+            Future<?> first = pool.submit(() -> transaction.executeWithoutResult(status -> {
+                statusHandler.updateDeliveryStatus(deliveryId, AccountType.VENDOR, "ACCEPTED");
+                accepted.countDown();
+                try {
+                    commit.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertThat(accepted.await(10, TimeUnit.SECONDS)).isTrue();
+            // Rejecting was legal for the pending delivery, but waits until it is accepted
+            new Thread(() -> {
+                sleepQuietly(200);
+                commit.countDown();
+            }).start();
+            assertThatThrownBy(() -> transaction.executeWithoutResult(status ->
+                    statusHandler.updateDeliveryStatus(deliveryId, AccountType.VENDOR, "REJECTED")))
+                    .extracting("status")
+                    .isEqualTo(HttpStatus.FORBIDDEN);
+            first.get(10, TimeUnit.SECONDS);
+
+            assertThat(deliveryRepository.findById(deliveryId)).get()
+                    .extracting("status")
+                    .isEqualTo(DeliveryStatus.ACCEPTED);
+            assertThat(outboxRepository.findAll())
+                    .extracting("orderId", "status")
+                    .containsExactly(tuple(deliveryId, "ACCEPTED"));
+        } finally {
+            commit.countDown();
+            pool.shutdown();
+            outboxRepository.deleteAll();
+            deliveryRepository.deleteById(deliveryId);
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Test
     void isStatusUpdateLegalTest() {
 
@@ -13,6 +13,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
@@ -22,7 +23,9 @@ import org.springframework.web.server.ResponseStatusException;
 
 import javax.transaction.Transactional;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -53,7 +56,7 @@ class RestaurantControllerTest {
         coord = List.of(32.6, 50.4);
 
         usersCommunication = mock(UsersAuthenticationService.class);
-        rs = new RestaurantService(repo2, repo1);
+        rs = new RestaurantService(repo2, repo1, mock(ApplicationEventPublisher.class));
         sut = new RestaurantController(rs, usersCommunication);
     }
 
@@ -96,6 +99,11 @@ class RestaurantControllerTest {
         assertTrue(sut.isInvalidAddress(null));
     }
 
+    @Test
+    public void isValidAddressTest3() {
+        assertTrue(sut.isInvalidAddress(Arrays.asList(0.0, null)));
+    }
+
     @Test
     public void isNullOrEmptyTest() {
         assertTrue(sut.isNullOrEmpty(null));
@@ -740,6 +748,21 @@ class RestaurantControllerTest {
         assertEquals(res.getBody().getLocation(), List.of(0.1, 0.1));
     }
 
+    @Test
+    void restaurantsRestaurantIdLocationPutMalformed() {
+        String restaurantId = "restaurant_malformed@testmail.com";
+        repo2.save(new Restaurant().restaurantID(restaurantId).location(List.of(0.0, 0.0)));
+        when(usersCommunication.checkUserAccessToRestaurant(restaurantId, restaurantId, "Location"))
+                .thenReturn(Pair.of(HttpStatus.OK, "OK"));
+
+        for (List<Double> location : List.of(List.of(0.1), List.of(0.1, 0.1, 0.1), Arrays.asList(0.1, null))) {
+            ResponseStatusException exception = assertThrows(ResponseStatusException.class,
+                    () -> sut.restaurantsRestaurantIdLocationPut(restaurantId, restaurantId, location));
+            assertEquals(HttpStatus.BAD_REQUEST, exception.getStatus());
+        }
+        assertEquals(List.of(0.0, 0.0), repo2.findById(restaurantId).orElseThrow().getLocation());
+    }
+
     @Test
     void restaurantsRestaurantIdLocationPutSameVendor() {
         String restaurantId = "restaurant_sameVendor@testmail.com";
@@ -961,10 +984,11 @@ class RestaurantControllerTest {
     @Test
     void restaurantsRestaurantCourierAdminOk() {
         repo2.save(new Restaurant().restaurantID("bla").location(List.of(0.5, 0.1)));
-        when(usersCommunication.getUserAccountType("bl")).thenReturn(UsersAuthenticationService.AccountType.COURIER);
         when(usersCommunication.checkUserAccessToRestaurant(any(), any(), any())).thenReturn(Pair.of(HttpStatus.OK, "OK"));
         List<String> list = new ArrayList<>();
         list.add("bl");
+        when(usersCommunication.getUserAccountTypes(list))
+                .thenReturn(Map.of("bl", UsersAuthenticationService.AccountType.COURIER));
         ResponseEntity<Restaurant> r = sut.restaurantsRestaurantIdCouriersPut("bla", "bla", list);
         assertThat(r.getStatusCode()).isEqualTo(HttpStatus.OK);
     }
@@ -973,9 +997,12 @@ class RestaurantControllerTest {
     void restaurantsRestaurantCourierAdminInvalid() {
         repo2.save(new Restaurant().restaurantID("bla").location(List.of(0.5, 0.1)));
         when(usersCommunication.checkUserAccessToRestaurant(any(), any(), any())).thenReturn(Pair.of(HttpStatus.OK, "OK"));
-        when(usersCommunication.getUserAccountType("bl")).thenReturn(UsersAuthenticationService.AccountType.INVALID);
         List<String> list = new ArrayList<>();
         list.add("bl");
+        list.add("other");
+        when(usersCommunication.getUserAccountTypes(list)).thenReturn(Map.of(
+                "bl", UsersAuthenticationService.AccountType.INVALID,
+                "other", UsersAuthenticationService.AccountType.COURIER));
         assertThatThrownBy(() -> sut.restaurantsRestaurantIdCouriersPut("bla", "bla", list))
                 .extracting("status")
                 .isEqualTo(HttpStatus.BAD_REQUEST);
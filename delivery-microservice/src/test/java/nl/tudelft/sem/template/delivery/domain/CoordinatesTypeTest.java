@@ -0,0 +1,156 @@
+package nl.tudelft.sem.template.delivery.domain;
+
+import nl.tudelft.sem.template.model.Delivery;
+import nl.tudelft.sem.template.model.DeliveryStatus;
+import nl.tudelft.sem.template.model.Restaurant;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Checks that coordinates are stored in the row of their delivery or restaurant, by counting the statements
+ * Hibernate sends.
+ */
+@EntityScan("nl.tudelft.sem.template.*")
+@DataJpaTest
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class CoordinatesTypeTest {
+
+    private static final String RESTAURANT = "coordinates-vendor@testmail.com";
+
+    @Autowired
+    private transient EntityManager entityManager;
+
+    @Autowired
+    private transient DeliveryRepository deliveryRepository;
+
+    @Autowired
+    private transient RestaurantRepository restaurantRepository;
+
+    private transient Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+    }
+
+    private Delivery delivery(int i) {
+        return new Delivery().deliveryID(UUID.randomUUID()).restaurantID(RESTAURANT)
+            .status(DeliveryStatus.ON_TRANSIT)
+            .deliveryAddress(new ArrayList<>(List.of(52.0 + i, 4.3)))
+            .currentLocation(new ArrayList<>(List.of(52.5, 4.3 + i)));
+    }
+
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+    }
+
+    @Test
+    void deliveriesAreLoadedWithOneQuery() {
+        for (int i = 0; i < 10; i++) {
+            deliveryRepository.save(delivery(i));
+        }
+        flushAndClear();
+
+        List<Delivery> deliveries = deliveryRepository.findAllByrestaurantID(RESTAURANT);
+
+        assertThat(deliveries).hasSize(10);
+        assertThat(deliveries).extracting(Delivery::getDeliveryAddress).contains(List.of(52.0, 4.3), List.of(61.0, 4.3));
+        assertThat(deliveries).extracting(Delivery::getCurrentLocation).contains(List.of(52.5, 4.3));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void movingADeliveryUpdatesOneRow() {
+        UUID deliveryId = deliveryRepository.save(delivery(0)).getDeliveryID();
+        flushAndClear();
+
+        Delivery delivery = deliveryRepository.findById(deliveryId).orElseThrow();
+        statistics.clear();
+        delivery.getCurrentLocation().set(0, 53.0);
+        entityManager.flush();
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityUpdateCount()).isEqualTo(1);
+        entityManager.clear();
+        assertThat(deliveryRepository.findById(deliveryId).orElseThrow().getCurrentLocation())
+            .containsExactly(53.0, 4.3);
+    }
+
+    @Test
+    void missingCoordinatesAreReadAsAnEmptyList() {
+        UUID deliveryId = deliveryRepository.save(new Delivery().deliveryID(UUID.randomUUID())).getDeliveryID();
+        flushAndClear();
+
+        Delivery delivery = deliveryRepository.findById(deliveryId).orElseThrow();
+        assertThat(delivery.getDeliveryAddress()).isEmpty();
+        assertThat(delivery.getCurrentLocation()).isEmpty();
+        entityManager.flush();
+        assertThat(statistics.getEntityUpdateCount()).isZero();
+    }
+
+    @Test
+    void coordinatesWithoutLongitudeAreReadAsAnEmptyList() {
+        UUID deliveryId = deliveryRepository.save(delivery(0)).getDeliveryID();
+        entityManager.flush();
+        entityManager.createQuery("UPDATE Delivery d SET d.currentLocation.longitude = NULL WHERE d.deliveryID = :id")
+            .setParameter("id", deliveryId)
+            .executeUpdate();
+        flushAndClear();
+
+        Delivery delivery = deliveryRepository.findById(deliveryId).orElseThrow();
+        assertThat(delivery.getCurrentLocation()).isEmpty();
+        assertThat(delivery.getDeliveryAddress()).containsExactly(52.0, 4.3);
+    }
+
+    @Test
+    void coordinatesAreSetOneByOne() {
+        CoordinatesType type = new CoordinatesType();
+        List<Double> coordinates = new ArrayList<>(List.of(52.0, 4.3));
+        type.setPropertyValue(coordinates, 1, 4.4);
+        assertThat(coordinates).containsExactly(52.0, 4.4);
+
+        List<Double> missing = new ArrayList<>();
+        type.setPropertyValue(missing, 0, 51.9);
+        assertThat(missing).containsExactly(51.9, null);
+    }
+
+    @Test
+    void coordinatesMissingFromTheListAreNull() {
+        CoordinatesType type = new CoordinatesType();
+        assertThat(type.getPropertyValue(List.of(52.0), 0)).isEqualTo(52.0);
+        assertThat(type.getPropertyValue(List.of(52.0), 1)).isNull();
+        assertThat(type.getPropertyValue(List.of(), 0)).isNull();
+        assertThat(type.getPropertyValue(null, 1)).isNull();
+    }
+
+    @Test
+    void restaurantLocationIsStoredInItsRow() {
+        restaurantRepository.save(new Restaurant().restaurantID(RESTAURANT).location(List.of(51.9, 4.4)));
+        flushAndClear();
+
+        assertThat(restaurantRepository.findById(RESTAURANT).orElseThrow().getLocation()).containsExactly(51.9, 4.4);
+    }
+
+    @Test
+    void coordinatesAreTwoNumbers() {
+        deliveryRepository.save(delivery(0).deliveryAddress(List.of(52.0, 4.3, 1.0)));
+
+        assertThatThrownBy(entityManager::flush).isInstanceOf(IllegalArgumentException.class);
+    }
+}
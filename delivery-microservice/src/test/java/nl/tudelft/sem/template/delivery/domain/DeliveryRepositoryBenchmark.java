@@ -0,0 +1,198 @@
+package nl.tudelft.sem.template.delivery.domain;
+
+import nl.tudelft.sem.template.model.DeliveryStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Time taken by each query of {@link DeliveryRepository} over a deliveries table of two million rows, first without
+ * the secondary indexes of the table and then with them, along with the plan H2 chose for the query.
+ * The table is kept in a file, in the page store of H2, which grows much less than the default MVStore under bulk
+ * inserts. Also the time taken to list the accepted deliveries without a courier as the history of delivered ones
+ * grows, by loading every delivery and by reading a page through the index. Run with {@code gradle benchmark}.
+ */
+@Tag("benchmark")
+@EntityScan("nl.tudelft.sem.template.*")
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {"spring.jpa.show-sql=false",
+    "spring.datasource.url=jdbc:h2:${java.io.tmpdir}/delivery-repository-benchmark;MV_STORE=FALSE"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DeliveryRepositoryBenchmark {
+
+    private static final int ROWS = 2_000_000;
+    private static final int CHUNK = 50_000;
+    private static final int RESTAURANTS = 10_000;
+    private static final int CUSTOMERS = 200_000;
+    private static final int COURIERS = 5_000;
+    private static final OffsetDateTime START = OffsetDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZoneOffset.UTC);
+    private static final int SCANS = 3;
+    private static final int LOOKUPS = 200;
+    private static final int[] HISTORY = {10_000, 100_000, 1_000_000};
+    private static final int LOADED_HISTORY = 100_000;
+    private static final int OPEN = 500;
+
+    private static final Map<String, String> INDEXES = Map.of(
+        "deliveries_courier_status_delivered", "courier_id, status, delivered_time",
+        "deliveries_status_courier_id", "status, courier_id, deliveryid",
+        "deliveries_restaurant_status_courier_id", "restaurant_id, status, courier_id, deliveryid",
+        "deliveries_customer", "customer_id",
+        "deliveries_order_time", "order_time");
+
+    @Autowired
+    private transient DeliveryRepository deliveryRepository;
+
+    @Autowired
+    private transient JdbcTemplate jdbcTemplate;
+
+    private final transient Map<String, Query> queries = new LinkedHashMap<>();
+
+    private static final class Query {
+        private final transient String where;
+        private final transient IntFunction<List<?>> run;
+
+        Query(String where, IntFunction<List<?>> run) {
+            this.where = where;
+            this.run = run;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        queries.put("findAllByrestaurantID", new Query("restaurant_id = 'restaurant1'",
+            i -> deliveryRepository.findAllByrestaurantID("restaurant" + i % RESTAURANTS)));
+        queries.put("findAllByCustomerID", new Query("customer_id = 'customer1'",
+            i -> deliveryRepository.findAllByCustomerID("customer" + i % CUSTOMERS)));
+        queries.put("findAllByCourierID", new Query("courier_id = 'courier1'",
+            i -> deliveryRepository.findAllByCourierID("courier" + i % COURIERS)));
+        queries.put("findAllByCourierIDAndStatus", new Query("courier_id = 'courier1' AND status = 6 "
+            + "AND delivered_time < TIMESTAMP '2024-03-01 00:00:00' AND delivered_time > TIMESTAMP '2024-02-01 00:00:00'",
+            i -> deliveryRepository.findAllByCourierIDAndStatus("courier" + i % COURIERS, DeliveryStatus.DELIVERED,
+                START.plusDays(i % 300), START.plusDays(i % 300 + 30))));
+        queries.put("findAllByRestaurantIDAndStatus", new Query("restaurant_id = 'restaurant1' AND status = 0",
+            i -> deliveryRepository.findAllByRestaurantIDAndStatus("restaurant" + i % RESTAURANTS,
+                DeliveryStatus.PENDING)));
+        queries.put("findUnassignedOfRestaurant", new Query("restaurant_id = 'restaurant1' AND status IN (1, 3) "
+            + "AND courier_id IS NULL",
+            i -> deliveryRepository.findUnassignedOfRestaurant("restaurant" + i % RESTAURANTS,
+                List.of(DeliveryStatus.ACCEPTED, DeliveryStatus.PREPARING))));
+        queries.put("findUnassignedPage", new Query("courier_id IS NULL AND status = 1 "
+            + "AND deliveryid > X'00000000000000000000000000000000' ORDER BY deliveryid LIMIT 100",
+            i -> deliveryRepository.findUnassignedPage(DeliveryStatus.ACCEPTED, new UUID(0, 0),
+                PageRequest.of(0, 100))));
+        queries.put("findUnassignedRestaurantPage", new Query("restaurant_id = 'restaurant1' AND courier_id IS NULL "
+            + "AND status = 1 AND deliveryid > X'00000000000000000000000000000000' ORDER BY deliveryid LIMIT 100",
+            i -> deliveryRepository.findUnassignedRestaurantPage(DeliveryStatus.ACCEPTED, "restaurant" + i % RESTAURANTS,
+                new UUID(0, 0), PageRequest.of(0, 100))));
+        queries.put("findAllByOrderTime", new Query("order_time < TIMESTAMP '2024-01-01 01:00:00' "
+            + "AND order_time > TIMESTAMP '2024-01-01 00:00:00'",
+            i -> deliveryRepository.findAllByOrderTime(START.plusHours(i % 8000), START.plusHours(i % 8000 + 1))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS DELETE FILES");
+    }
+
+    @Test
+    void queriesWithAndWithoutIndexes() {
+        INDEXES.keySet().forEach(index -> jdbcTemplate.execute("DROP INDEX " + index));
+        seed();
+        jdbcTemplate.execute("ANALYZE");
+        Map<String, String> scanned = new LinkedHashMap<>();
+        queries.forEach((name, query) -> scanned.put(name, measure(query, SCANS)));
+
+        INDEXES.forEach((index, columns) -> jdbcTemplate.execute("CREATE INDEX " + index + " ON deliveries(" + columns
+            + ")"));
+        jdbcTemplate.execute("ANALYZE");
+        System.out.printf("%-31s %-46s %-46s%n", "query (" + ROWS + " rows)", "without indexes", "with indexes");
+        queries.forEach((name, query) -> {
+            String indexed = measure(query, LOOKUPS);
+            System.out.printf("%-31s %-46s %-46s%n", name, scanned.get(name), indexed);
+            assertThat(indexed).doesNotContain("table scan");
+        });
+    }
+
+    @Test
+    void acceptedDeliveriesAsHistoryGrows() {
+        jdbcTemplate.execute("INSERT INTO deliveries (deliveryid, restaurant_id, status) SELECT RANDOM_UUID(), "
+            + "'restaurant' || MOD(X, " + RESTAURANTS + "), 1 FROM SYSTEM_RANGE(1, " + OPEN + ")");
+        System.out.printf("%-18s %-24s %-24s%n", "delivered history", "findAll and filter", "findUnassignedPage");
+        int delivered = 0;
+        for (int history : HISTORY) {
+            for (int from = delivered + 1; from <= history; from += CHUNK) {
+                jdbcTemplate.execute("INSERT INTO deliveries (deliveryid, restaurant_id, courier_id, status, "
+                    + "delivered_time) SELECT RANDOM_UUID(), 'restaurant' || MOD(X, " + RESTAURANTS + "), "
+                    + "'courier' || MOD(X, " + COURIERS + "), 6, TIMESTAMP '2024-01-01 00:00:00' "
+                    + "FROM SYSTEM_RANGE(" + from + ", " + Math.min(from + CHUNK - 1, history) + ")");
+            }
+            delivered = history;
+            jdbcTemplate.execute("ANALYZE");
+            String loaded = history > LOADED_HISTORY ? "" : time(SCANS, () -> deliveryRepository.findAll().stream()
+                .filter(d -> d.getCourierID() == null && d.getStatus() == DeliveryStatus.ACCEPTED)
+                .count());
+            String paged = time(LOOKUPS, () -> deliveryRepository.findUnassignedPage(DeliveryStatus.ACCEPTED,
+                new UUID(0, 0), PageRequest.of(0, 100)).size());
+            System.out.printf("%-18d %-24s %-24s%n", history, loaded, paged);
+        }
+    }
+
+    private static String time(int times, LongSupplier query) {
+        long rows = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            rows += query.getAsLong();
+        }
+        return String.format("%9.2f ms %5d rows", (System.nanoTime() - start) / 1e6 / times, rows / times);
+    }
+
+    private void seed() {
+        jdbcTemplate.execute("INSERT INTO restaurant (restaurantid) SELECT 'restaurant' || X FROM SYSTEM_RANGE(0, "
+            + (RESTAURANTS - 1) + ")");
+        // Every 10th delivery has no courier, every 7th is delivered 40 minutes after its order, one order per 15 s
+        for (int from = 1; from <= ROWS; from += CHUNK) {
+            jdbcTemplate.execute("INSERT INTO deliveries (deliveryid, restaurant_id, customer_id, courier_id, status, "
+                + "order_time, delivered_time) SELECT RANDOM_UUID(), 'restaurant' || MOD(X, " + RESTAURANTS + "), "
+                + "'customer' || MOD(X, " + CUSTOMERS + "), "
+                + "CASE WHEN MOD(X, 10) = 0 THEN NULL ELSE 'courier' || MOD(X, " + COURIERS + ") END, MOD(X, 7), "
+                + "DATEADD('SECOND', X * 15, TIMESTAMP '2024-01-01 00:00:00'), "
+                + "CASE WHEN MOD(X, 7) = 6 THEN DATEADD('SECOND', X * 15 + 2400, TIMESTAMP '2024-01-01 00:00:00') END "
+                + "FROM SYSTEM_RANGE(" + from + ", " + (from + CHUNK - 1) + ")");
+        }
+    }
+
+    private String measure(Query query, int times) {
+        String plan = jdbcTemplate.queryForObject("EXPLAIN SELECT * FROM deliveries WHERE " + query.where, String.class);
+        int index = plan.indexOf("/* PUBLIC.");
+        String access = plan.contains("tableScan") ? "table scan" : plan.substring(index + 10, plan.indexOf(':', index));
+        long rows = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < times; i++) {
+            rows += query.run.apply(i).size();
+        }
+        double millis = (System.nanoTime() - start) / 1e6 / times;
+        return String.format("%9.2f ms %5d rows %s", millis, rows / times, access.toLowerCase());
+    }
+}
@@ -0,0 +1,99 @@
+package nl.tudelft.sem.template.delivery.domain;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that the queries of {@link DeliveryRepository} are answered from an index of the deliveries table rather
+ * than by reading all of it. H2 picks between indexes by the selectivity of their columns, so the table is filled
+ * with deliveries spread over restaurants, customers and couriers, and analyzed, before the plans are made.
+ */
+@EntityScan("nl.tudelft.sem.template.*")
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class DeliveryRepositoryIndexTest {
+
+    private static final int ROWS = 10_000;
+
+    @Autowired
+    private transient JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void setUp() {
+        // Every 10th delivery has no courier, every 7th is delivered
+        jdbcTemplate.execute("INSERT INTO deliveries (deliveryid, restaurant_id, customer_id, courier_id, status, "
+            + "order_time, delivered_time) SELECT RANDOM_UUID(), 'restaurant' || MOD(X, 1000), "
+            + "'customer' || MOD(X, 5000), CASE WHEN MOD(X, 10) = 0 THEN NULL ELSE 'courier' || MOD(X, 200) END, "
+            + "MOD(X, 7), DATEADD('SECOND', X * 15, TIMESTAMP '2024-01-01 00:00:00'), "
+            + "CASE WHEN MOD(X, 7) = 6 THEN DATEADD('SECOND', X * 15 + 2400, TIMESTAMP '2024-01-01 00:00:00') END "
+            + "FROM SYSTEM_RANGE(1, " + ROWS + ")");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @AfterAll
+    void tearDown() {
+        jdbcTemplate.execute("DELETE FROM deliveries");
+    }
+
+    private String plan(String where) {
+        return jdbcTemplate.queryForObject("EXPLAIN SELECT * FROM deliveries WHERE " + where, String.class);
+    }
+
+    private void assertIndexUsed(String index, String where) {
+        assertThat(plan(where)).contains(index).doesNotContain("tableScan");
+    }
+
+    @Test
+    void deliveriesOfARestaurant() {
+        assertIndexUsed("DELIVERIES_RESTAURANT_STATUS_COURIER_ID", "restaurant_id = 'r'");
+        assertIndexUsed("DELIVERIES_RESTAURANT_STATUS_COURIER_ID", "restaurant_id = 'r' AND status = 1");
+        assertIndexUsed("DELIVERIES_RESTAURANT_STATUS_COURIER_ID", "restaurant_id = 'r' AND status IN (1, 3) "
+            + "AND courier_id IS NULL");
+    }
+
+    @Test
+    void deliveriesOfACustomer() {
+        assertIndexUsed("DELIVERIES_CUSTOMER", "customer_id = 'c'");
+    }
+
+    @Test
+    void deliveriesOfACourier() {
+        assertIndexUsed("DELIVERIES_COURIER_STATUS_DELIVERED", "courier_id = 'c'");
+        assertIndexUsed("DELIVERIES_COURIER_STATUS_DELIVERED", "courier_id = 'c' AND status = 6 "
+            + "AND delivered_time > DATE '2024-01-01' AND delivered_time < DATE '2024-02-01'");
+    }
+
+    @Test
+    void deliveriesWithoutACourier() {
+        assertIndexUsed("DELIVERIES_COURIER_STATUS_DELIVERED", "courier_id IS NULL AND status IN (1, 3)");
+    }
+
+    @Test
+    void pageOfDeliveriesWithoutACourier() {
+        assertIndexUsed("DELIVERIES_STATUS_COURIER_ID", "courier_id IS NULL AND status = 1 "
+            + "AND deliveryid > X'00000000000000000000000000000000' ORDER BY deliveryid LIMIT 100");
+    }
+
+    @Test
+    void pageOfDeliveriesOfARestaurantWithoutACourier() {
+        assertIndexUsed("DELIVERIES_RESTAURANT_STATUS_COURIER_ID", "restaurant_id = 'restaurant1' "
+            + "AND courier_id IS NULL AND status = 1 AND deliveryid > X'00000000000000000000000000000000' "
+            + "ORDER BY deliveryid LIMIT 100");
+    }
+
+    @Test
+    void deliveriesOrderedInAPeriod() {
+        assertIndexUsed("DELIVERIES_ORDER_TIME", "order_time > DATE '2024-01-01' AND order_time < DATE '2024-01-02'");
+    }
+}
@@ -0,0 +1,106 @@
+package nl.tudelft.sem.template.delivery.domain;
+
+import nl.tudelft.sem.template.model.Delivery;
+import nl.tudelft.sem.template.model.DeliveryStatus;
+import nl.tudelft.sem.template.model.Restaurant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the pages of deliveries without a courier against the database, to check the paging by ID and the filters by
+ * restaurant and by distance.
+ */
+@EntityScan("nl.tudelft.sem.template.*")
+@DataJpaTest
+class DeliveryRepositoryTest {
+
+    private static final String DELFT = "delft-page@testmail.com";
+    private static final String ROTTERDAM = "rotterdam-page@testmail.com";
+    private static final UUID FIRST = new UUID(0, 0);
+    // Delft and Rotterdam are about 0.12 degrees of latitude apart, once longitude is scaled
+    private static final double DELFT_LATITUDE = 52.01;
+    private static final double DELFT_LONGITUDE = 4.36;
+    private static final double LONGITUDE_SCALE = Math.pow(Math.cos(Math.toRadians(DELFT_LATITUDE)), 2);
+
+    @Autowired
+    private transient DeliveryRepository deliveryRepository;
+
+    @Autowired
+    private transient RestaurantRepository restaurantRepository;
+
+    @BeforeEach
+    void setUp() {
+        restaurantRepository.save(new Restaurant().restaurantID(DELFT).location(List.of(DELFT_LATITUDE,
+            DELFT_LONGITUDE)));
+        restaurantRepository.save(new Restaurant().restaurantID(ROTTERDAM).location(List.of(51.92, 4.48)));
+        save(1, DELFT, DeliveryStatus.ACCEPTED, null);
+        save(2, ROTTERDAM, DeliveryStatus.ACCEPTED, null);
+        save(3, DELFT, DeliveryStatus.ACCEPTED, "courier@testmail.com");
+        save(4, DELFT, DeliveryStatus.PREPARING, null);
+        save(5, DELFT, DeliveryStatus.ACCEPTED, null);
+        save(6, ROTTERDAM, DeliveryStatus.ACCEPTED, null);
+        save(7, DELFT, DeliveryStatus.ACCEPTED, null);
+    }
+
+    private void save(long id, String restaurantId, DeliveryStatus status, String courierId) {
+        deliveryRepository.save(new Delivery().deliveryID(new UUID(0, id)).restaurantID(restaurantId).status(status)
+            .courierID(courierId));
+    }
+
+    private static List<Long> ids(List<Delivery> deliveries) {
+        return deliveries.stream().map(delivery -> delivery.getDeliveryID().getLeastSignificantBits())
+            .collect(Collectors.toList());
+    }
+
+    @Test
+    void pagesFollowTheCursor() {
+        List<Delivery> first = deliveryRepository.findUnassignedPage(DeliveryStatus.ACCEPTED, FIRST,
+            PageRequest.of(0, 2));
+        assertThat(ids(first)).containsExactly(1L, 2L);
+        List<Delivery> second = deliveryRepository.findUnassignedPage(DeliveryStatus.ACCEPTED,
+            first.get(1).getDeliveryID(), PageRequest.of(0, 2));
+        assertThat(ids(second)).containsExactly(5L, 6L);
+        List<Delivery> last = deliveryRepository.findUnassignedPage(DeliveryStatus.ACCEPTED,
+            second.get(1).getDeliveryID(), PageRequest.of(0, 2));
+        assertThat(ids(last)).containsExactly(7L);
+    }
+
+    @Test
+    void restaurantPagesOnlyHoldTheRestaurant() {
+        assertThat(ids(deliveryRepository.findUnassignedRestaurantPage(DeliveryStatus.ACCEPTED, DELFT, FIRST,
+            PageRequest.of(0, 10)))).containsExactly(1L, 5L, 7L);
+        assertThat(ids(deliveryRepository.findUnassignedRestaurantPage(DeliveryStatus.ACCEPTED, DELFT,
+            new UUID(0, 1), PageRequest.of(0, 1)))).containsExactly(5L);
+        assertThat(ids(deliveryRepository.findUnassignedRestaurantPage(DeliveryStatus.ACCEPTED, ROTTERDAM, FIRST,
+            PageRequest.of(0, 10)))).containsExactly(2L, 6L);
+    }
+
+    @Test
+    void pagesNearALocationLeaveOutFartherRestaurants() {
+        assertThat(ids(deliveryRepository.findUnassignedPageNear(DeliveryStatus.ACCEPTED, DELFT_LATITUDE,
+            DELFT_LONGITUDE, LONGITUDE_SCALE, 0.05 * 0.05, FIRST, PageRequest.of(0, 10))))
+            .containsExactly(1L, 5L, 7L);
+        assertThat(ids(deliveryRepository.findUnassignedPageNear(DeliveryStatus.ACCEPTED, DELFT_LATITUDE,
+            DELFT_LONGITUDE, LONGITUDE_SCALE, 0.2 * 0.2, new UUID(0, 1), PageRequest.of(0, 3))))
+            .containsExactly(2L, 5L, 6L);
+    }
+
+    @Test
+    void restaurantPagesNearALocationAreEmptyIfTheRestaurantIsFar() {
+        assertThat(ids(deliveryRepository.findUnassignedRestaurantPageNear(DeliveryStatus.ACCEPTED, DELFT,
+            DELFT_LATITUDE, DELFT_LONGITUDE, LONGITUDE_SCALE, 0.05 * 0.05, new UUID(0, 1), PageRequest.of(0, 10))))
+            .containsExactly(5L, 7L);
+        assertThat(deliveryRepository.findUnassignedRestaurantPageNear(DeliveryStatus.ACCEPTED, ROTTERDAM,
+            DELFT_LATITUDE, DELFT_LONGITUDE, LONGITUDE_SCALE, 0.05 * 0.05, FIRST, PageRequest.of(0, 10))).isEmpty();
+    }
+}
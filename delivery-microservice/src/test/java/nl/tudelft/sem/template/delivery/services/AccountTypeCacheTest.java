@@ -0,0 +1,174 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.tudelft.sem.template.delivery.communication.UsersCommunication;
+import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AccountTypeCacheTest {
+
+    private static final Duration TTL = Duration.ofMinutes(5);
+    private static final Duration INVALID_TTL = Duration.ofSeconds(30);
+    private static final Duration MAX_STALE = Duration.ofHours(1);
+
+    private final transient AtomicLong nanos = new AtomicLong();
+
+    private transient UsersCommunication usersCommunication;
+
+    private transient AccountTypeCache sut;
+
+    @BeforeEach
+    void setUp() {
+        usersCommunication = mock(UsersCommunication.class);
+        sut = cacheOfSize(100);
+    }
+
+    private AccountTypeCache cacheOfSize(long maxSize) {
+        // Refreshes run on the calling thread, so they are done when get returns
+        return new AccountTypeCache(usersCommunication, TTL, INVALID_TTL, MAX_STALE, maxSize, nanos::get, Runnable::run);
+    }
+
+    private void advance(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    private static ResponseStatusException unavailable() {
+        return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Could not reach the users service");
+    }
+
+    @Test
+    void asksUsersServiceOnce() {
+        when(usersCommunication.getAccountType("courier@testmail.com")).thenReturn("courier");
+
+        assertThat(sut.get("courier@testmail.com")).isEqualTo(AccountType.COURIER);
+        assertThat(sut.get("courier@testmail.com")).isEqualTo(AccountType.COURIER);
+        assertThat(sut.get(null)).isEqualTo(AccountType.INVALID);
+
+        verify(usersCommunication, times(1)).getAccountType("courier@testmail.com");
+    }
+
+    @Test
+    void servesStaleAccountTypeWhileRefreshing() {
+        when(usersCommunication.getAccountType("user@testmail.com")).thenReturn("courier");
+        assertThat(sut.get("user@testmail.com")).isEqualTo(AccountType.COURIER);
+
+        when(usersCommunication.getAccountType("user@testmail.com")).thenReturn("admin");
+        advance(TTL.plusSeconds(1));
+
+        assertThat(sut.get("user@testmail.com")).isEqualTo(AccountType.COURIER);
+        assertThat(sut.get("user@testmail.com")).isEqualTo(AccountType.ADMIN);
+        verify(usersCommunication, times(2)).getAccountType("user@testmail.com");
+    }
+
+    @Test
+    void keepsStaleAccountTypeWhileUsersServiceIsDown() {
+        when(usersCommunication.getAccountType("courier@testmail.com")).thenReturn("courier");
+        assertThat(sut.get("courier@testmail.com")).isEqualTo(AccountType.COURIER);
+
+        when(usersCommunication.getAccountType("courier@testmail.com")).thenThrow(unavailable());
+        advance(TTL.plusSeconds(1));
+        assertThat(sut.get("courier@testmail.com")).isEqualTo(AccountType.COURIER);
+        assertThat(sut.get("courier@testmail.com")).isEqualTo(AccountType.COURIER);
+
+        advance(MAX_STALE);
+        assertThat(sut.get("courier@testmail.com")).isEqualTo(AccountType.INVALID);
+    }
+
+    @Test
+    void unreachableUsersServiceIsNotRemembered() {
+        when(usersCommunication.getAccountType("courier@testmail.com")).thenThrow(unavailable()).thenReturn("courier");
+
+        assertThat(sut.get("courier@testmail.com")).isEqualTo(AccountType.INVALID);
+        assertThat(sut.get("courier@testmail.com")).isEqualTo(AccountType.COURIER);
+    }
+
+    @Test
+    void remembersUnknownUsersShortly() {
+        when(usersCommunication.getAccountType("unknown@testmail.com")).thenReturn("non-existent");
+
+        assertThat(sut.get("unknown@testmail.com")).isEqualTo(AccountType.INVALID);
+        assertThat(sut.get("unknown@testmail.com")).isEqualTo(AccountType.INVALID);
+        verify(usersCommunication, times(1)).getAccountType("unknown@testmail.com");
+
+        when(usersCommunication.getAccountType("unknown@testmail.com")).thenReturn("customer");
+        advance(INVALID_TTL.plusSeconds(1));
+        assertThat(sut.get("unknown@testmail.com")).isEqualTo(AccountType.CLIENT);
+    }
+
+    @Test
+    void looksUpMissingUsersTogether() {
+        when(usersCommunication.getAccountType("courier@testmail.com")).thenReturn("courier");
+        sut.get("courier@testmail.com");
+        when(usersCommunication.getAccountTypes(anyCollection())).thenReturn(Map.of(
+            "vendor@testmail.com", "vendor", "unknown@testmail.com", "non-existent"));
+
+        assertThat(sut.getAll(Arrays.asList("courier@testmail.com", "vendor@testmail.com", "unknown@testmail.com", null)))
+            .containsOnly(Map.entry("courier@testmail.com", AccountType.COURIER),
+                Map.entry("vendor@testmail.com", AccountType.VENDOR),
+                Map.entry("unknown@testmail.com", AccountType.INVALID),
+                new AbstractMap.SimpleEntry<>(null, AccountType.INVALID));
+        assertThat(sut.get("vendor@testmail.com")).isEqualTo(AccountType.VENDOR);
+
+        verify(usersCommunication, times(1)).getAccountTypes(anyCollection());
+        verify(usersCommunication, never()).getAccountType("vendor@testmail.com");
+    }
+
+    @Test
+    void keepsKnownUsersWhenLookingUpTogetherFails() {
+        when(usersCommunication.getAccountType("courier@testmail.com")).thenReturn("courier");
+        sut.get("courier@testmail.com");
+        when(usersCommunication.getAccountTypes(anyCollection())).thenThrow(unavailable());
+
+        assertThat(sut.getAll(List.of("courier@testmail.com", "vendor@testmail.com")))
+            .containsOnly(Map.entry("courier@testmail.com", AccountType.COURIER),
+                Map.entry("vendor@testmail.com", AccountType.INVALID));
+
+        when(usersCommunication.getAccountType("vendor@testmail.com")).thenReturn("vendor");
+        assertThat(sut.get("vendor@testmail.com")).isEqualTo(AccountType.VENDOR);
+    }
+
+    @Test
+    void exposesHitsEvictionsAndRefreshes() {
+        sut = cacheOfSize(2);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        sut.bindTo(registry);
+        when(usersCommunication.getAccountType("courier@testmail.com")).thenReturn("courier");
+        when(usersCommunication.getAccountType("vendor@testmail.com")).thenReturn("vendor");
+        when(usersCommunication.getAccountType("admin@testmail.com")).thenReturn("admin");
+
+        sut.get("courier@testmail.com");
+        sut.get("courier@testmail.com");
+        advance(TTL.plusSeconds(1));
+        sut.get("courier@testmail.com");
+        sut.get("vendor@testmail.com");
+        sut.get("admin@testmail.com");
+        sut.invalidate("admin@testmail.com");
+
+        assertThat(registry.get("cache.gets").tag("cache", "accountTypes").tag("result", "hit")
+            .functionCounter().count()).isEqualTo(2);
+        assertThat(registry.get("cache.gets").tag("cache", "accountTypes").tag("result", "miss")
+            .functionCounter().count()).isEqualTo(3);
+        assertThat(registry.get("cache.evictions").tag("cache", "accountTypes").functionCounter().count())
+            .isEqualTo(1);
+        assertThat(registry.get("cache.refresh").tag("cache", "accountTypes").functionTimer().count())
+            .isEqualTo(1);
+    }
+}
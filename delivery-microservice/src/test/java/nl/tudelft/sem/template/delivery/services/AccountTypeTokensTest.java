@@ -0,0 +1,128 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.tudelft.sem.template.delivery.services.UsersAuthenticationService.AccountType;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AccountTypeTokensTest {
+
+    private static final String SECRET = "a-secret-of-at-least-thirty-two-bytes";
+    private static final String HS256 = "{\"alg\":\"HS256\",\"typ\":\"JWT\"}";
+    private static final Instant NOW = Instant.parse("2024-01-10T12:00:00Z");
+    private static final String IN_A_MINUTE = ",\"exp\":" + (NOW.getEpochSecond() + 60) + "}";
+
+    private transient AccountTypeTokens sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new AccountTypeTokens(true, SECRET, 100, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    /**
+     * Signs a token the way the Users microservice does.
+     */
+    static String sign(String header, String payload, String secret) throws Exception {
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        String content = encoder.encodeToString(header.getBytes(StandardCharsets.UTF_8)) + "."
+            + encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return content + "." + encoder.encodeToString(mac.doFinal(content.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    private static String bearer(String payload) throws Exception {
+        return "Bearer " + sign(HS256, payload, SECRET);
+    }
+
+    @Test
+    void readsUserAndAccountType() throws Exception {
+        assertThat(sut.read(bearer("{\"sub\":\"courier@testmail.com\",\"type\":\"courier\"" + IN_A_MINUTE)))
+            .isEqualTo(Pair.of("courier@testmail.com", AccountType.COURIER));
+        assertThat(sut.read(bearer("{\"sub\":\"vendor@testmail.com\",\"type\":\"vendor\"" + IN_A_MINUTE)))
+            .isEqualTo(Pair.of("vendor@testmail.com", AccountType.VENDOR));
+    }
+
+    @Test
+    void ignoresMissingOrMalformedTokens() {
+        assertThat(sut.read(null)).isNull();
+        assertThat(sut.read("Basic dXNlcjpwYXNz")).isNull();
+        assertThat(sut.read("Bearer not-a-token")).isNull();
+        assertThat(sut.read("Bearer a.b.c")).isNull();
+    }
+
+    @Test
+    void rejectsTokensNotSignedWithTheSecret() throws Exception {
+        String payload = "{\"sub\":\"admin@testmail.com\",\"type\":\"admin\"" + IN_A_MINUTE;
+        assertThat(sut.read("Bearer " + sign(HS256, payload, "otherSecret"))).isNull();
+        assertThat(sut.read("Bearer " + sign("{\"alg\":\"HS512\"}", payload, SECRET))).isNull();
+
+        String unsigned = sign("{\"alg\":\"none\"}", payload, SECRET);
+        assertThat(sut.read("Bearer " + unsigned.substring(0, unsigned.lastIndexOf('.') + 1))).isNull();
+
+        // The payload of a genuine token swapped for another
+        String genuine = sign(HS256, "{\"sub\":\"admin@testmail.com\",\"type\":\"customer\"" + IN_A_MINUTE, SECRET);
+        String[] parts = genuine.split("\\.");
+        String forged = parts[0] + "."
+            + Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8))
+            + "." + parts[2];
+        assertThat(sut.read("Bearer " + forged)).isNull();
+    }
+
+    @Test
+    void rejectsExpiredTokensAndUnknownAccountTypes() throws Exception {
+        assertThat(sut.read(bearer("{\"sub\":\"courier@testmail.com\",\"type\":\"courier\",\"exp\":"
+            + NOW.getEpochSecond() + "}"))).isNull();
+        assertThat(sut.read(bearer("{\"sub\":\"courier@testmail.com\",\"type\":\"courier\",\"exp\":\"soon\"}")))
+            .isNull();
+        // Tokens that never expire are not accepted
+        assertThat(sut.read(bearer("{\"sub\":\"courier@testmail.com\",\"type\":\"courier\"}"))).isNull();
+        assertThat(sut.read(bearer("{\"sub\":\"courier@testmail.com\",\"type\":\"pilot\"" + IN_A_MINUTE)))
+            .isNull();
+        assertThat(sut.read(bearer("{\"type\":\"courier\"" + IN_A_MINUTE))).isNull();
+    }
+
+    @Test
+    void verifiesEveryTokenOnce() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        sut.bindTo(registry);
+        String token = bearer("{\"sub\":\"courier@testmail.com\",\"type\":\"courier\"" + IN_A_MINUTE);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(sut.read(token)).isEqualTo(Pair.of("courier@testmail.com", AccountType.COURIER));
+        }
+
+        assertThat(registry.get("cache.gets").tag("cache", "accountTypeTokens").tag("result", "miss")
+            .functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("cache.gets").tag("cache", "accountTypeTokens").tag("result", "hit")
+            .functionCounter().count()).isEqualTo(4);
+    }
+
+    @Test
+    void readsNothingWhenDisabled() throws Exception {
+        String token = bearer("{\"sub\":\"courier@testmail.com\",\"type\":\"courier\"" + IN_A_MINUTE);
+
+        assertThat(AccountTypeTokens.disabled().read(token)).isNull();
+        assertThat(new AccountTypeTokens(false, SECRET, 100, Clock.systemUTC()).read(token)).isNull();
+    }
+
+    @Test
+    void cannotBeEnabledWithoutASecret() {
+        for (String secret : new String[] {null, "", "exampleSecret", "short-secret"}) {
+            assertThatThrownBy(() -> new AccountTypeTokens(true, secret, 100, Clock.systemUTC()))
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+}
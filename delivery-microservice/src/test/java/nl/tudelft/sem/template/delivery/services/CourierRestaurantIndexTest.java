@@ -0,0 +1,80 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
+import nl.tudelft.sem.template.model.Restaurant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+@EntityScan("nl.tudelft.sem.template.*")
+@Transactional
+@DataJpaTest
+class CourierRestaurantIndexTest {
+
+    @Autowired
+    private transient RestaurantRepository rr;
+
+    private transient CourierRestaurantIndex sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new CourierRestaurantIndex(rr);
+        rr.save(new Restaurant().restaurantID("vendor@testmail.com").location(List.of(52.0, 4.3))
+            .couriers(new ArrayList<>(List.of("courier1", "courier2"))));
+        rr.save(new Restaurant().restaurantID("vendor2@testmail.com").location(List.of(52.1, 4.4)));
+    }
+
+    @Test
+    void findsRestaurantOfCourier() {
+        assertThat(sut.getRestaurantOf("courier1")).contains("vendor@testmail.com");
+        assertThat(sut.getRestaurantOf("courier2")).contains("vendor@testmail.com");
+        assertThat(sut.getRestaurantOf("courier3")).isEmpty();
+        assertThat(sut.getRestaurantOf(null)).isEmpty();
+    }
+
+    @Test
+    void findsRestaurantsOfSeveralCouriers() {
+        assertThat(sut.getRestaurantsOf(Arrays.asList("courier1", "courier3", null, "courier2")))
+            .containsOnly(entry("courier1", "vendor@testmail.com"), entry("courier2", "vendor@testmail.com"));
+        assertThat(sut.getRestaurantsOf(List.of())).isEmpty();
+    }
+
+    @Test
+    void followsChangedCouriers() {
+        assertThat(sut.getRestaurantOf("courier1")).contains("vendor@testmail.com");
+
+        Restaurant restaurant = new Restaurant().restaurantID("vendor2@testmail.com").couriers(List.of("courier1"));
+        sut.onRestaurantChanged(new RestaurantChangedEvent("vendor2@testmail.com", restaurant));
+        restaurant = new Restaurant().restaurantID("vendor@testmail.com").couriers(List.of("courier2", "courier3"));
+        sut.onRestaurantChanged(new RestaurantChangedEvent("vendor@testmail.com", restaurant));
+
+        assertThat(sut.getRestaurantOf("courier1")).contains("vendor2@testmail.com");
+        assertThat(sut.getRestaurantOf("courier3")).contains("vendor@testmail.com");
+
+        sut.onRestaurantChanged(new RestaurantChangedEvent("vendor@testmail.com", null));
+        assertThat(sut.getRestaurantOf("courier2")).isEmpty();
+        assertThat(sut.getRestaurantOf("courier3")).isEmpty();
+        assertThat(sut.getRestaurantOf("courier1")).contains("vendor2@testmail.com");
+    }
+
+    @Test
+    void reloadsAfterClear() {
+        assertThat(sut.getRestaurantOf("courier4")).isEmpty();
+        rr.save(new Restaurant().restaurantID("vendor3@testmail.com").location(List.of(52.2, 4.5))
+            .couriers(new ArrayList<>(List.of("courier4"))));
+        assertThat(sut.getRestaurantOf("courier4")).isEmpty();
+
+        sut.clear();
+        assertThat(sut.getRestaurantOf("courier4")).contains("vendor3@testmail.com");
+    }
+}
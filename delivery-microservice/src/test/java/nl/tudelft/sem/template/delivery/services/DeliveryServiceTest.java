@@ -9,6 +9,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
 
 import java.util.List;
 import java.util.Optional;
@@ -48,13 +49,43 @@ class DeliveryServiceTest {
         Delivery d1 = new Delivery();
         d1.setDeliveryID(UUID.randomUUID());
         d1.setStatus(DeliveryStatus.ACCEPTED);
-        d1.setCourierID(null);
-        Delivery d2 = new Delivery();
-        d2.setDeliveryID(UUID.randomUUID());
-        d2.setStatus(DeliveryStatus.DELIVERED);
-        d2.setCourierID("courier@testmail.com");
-        when(deliveryRepositoryMock.findAll()).thenReturn(List.of(d1, d2));
-        assertThat(deliveryService.getAcceptedDeliveries()).containsExactly(d1);
+        when(deliveryRepositoryMock.findUnassignedPage(DeliveryStatus.ACCEPTED, new UUID(0, 0),
+            PageRequest.of(0, 100))).thenReturn(List.of(d1));
+        assertThat(deliveryService.getAcceptedDeliveries(null, 100, null, null, null, null)).containsExactly(d1);
+    }
+
+    @Test
+    void getAcceptedDeliveriesOfRestaurant() {
+        UUID after = UUID.randomUUID();
+        Delivery d1 = new Delivery().deliveryID(UUID.randomUUID()).status(DeliveryStatus.ACCEPTED);
+        when(deliveryRepositoryMock.findUnassignedRestaurantPage(DeliveryStatus.ACCEPTED, "vendor@testmail.com", after,
+            PageRequest.of(0, 10))).thenReturn(List.of(d1));
+        assertThat(deliveryService.getAcceptedDeliveries(after, 10, "vendor@testmail.com", null, null, null))
+            .containsExactly(d1);
+    }
+
+    @Test
+    void getAcceptedDeliveriesInArea() {
+        UUID after = UUID.randomUUID();
+        // 111.2 km is one degree of latitude, and at 60 degrees a degree of longitude is half as long
+        deliveryService.getAcceptedDeliveries(after, 10, null, 60.0, 5.0, 111.195);
+        verify(deliveryRepositoryMock).findUnassignedPageNear(eq(DeliveryStatus.ACCEPTED), eq(60.0), eq(5.0),
+            doubleThat(scale -> Math.abs(scale - 0.25) < 1e-9), doubleThat(radius -> Math.abs(radius - 1) < 1e-3),
+            eq(after), eq(PageRequest.of(0, 10)));
+
+        deliveryService.getAcceptedDeliveries(after, 10, "vendor@testmail.com", 60.0, 5.0, 111.195);
+        verify(deliveryRepositoryMock).findUnassignedRestaurantPageNear(eq(DeliveryStatus.ACCEPTED),
+            eq("vendor@testmail.com"), eq(60.0), eq(5.0), doubleThat(scale -> Math.abs(scale - 0.25) < 1e-9),
+            doubleThat(radius -> Math.abs(radius - 1) < 1e-3), eq(after), eq(PageRequest.of(0, 10)));
+    }
+
+    @Test
+    void getUnassignedRestaurantDeliveries() {
+        Delivery d1 = new Delivery().deliveryID(UUID.randomUUID()).status(DeliveryStatus.PREPARING);
+        when(deliveryRepositoryMock.findUnassignedByRestaurant("vendor@testmail.com",
+            List.of(DeliveryStatus.ACCEPTED, DeliveryStatus.PREPARING))).thenReturn(List.of(d1));
+        assertThat(deliveryService.getUnassignedRestaurantDeliveries("vendor@testmail.com")).containsExactly(d1);
+        verify(deliveryRepositoryMock, never()).findAllByrestaurantID(anyString());
     }
 
     @Test
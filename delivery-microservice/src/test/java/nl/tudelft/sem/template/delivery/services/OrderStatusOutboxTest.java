@@ -0,0 +1,220 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import nl.tudelft.sem.template.delivery.communication.UsersCommunication;
+import nl.tudelft.sem.template.delivery.domain.OrderStatusOutboxRepository;
+import nl.tudelft.sem.template.model.DeliveryStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@EntityScan("nl.tudelft.sem.template.*")
+@DataJpaTest
+class OrderStatusOutboxTest {
+
+    private static final long INITIAL_BACKOFF = 1000;
+    private static final long MAX_BACKOFF = 4000;
+    private static final long CLAIM = 10_000;
+
+    @Autowired
+    private transient OrderStatusOutboxRepository outboxRepository;
+
+    private final transient AtomicLong millis = new AtomicLong(1_000_000);
+
+    private final transient List<String> sent = new CopyOnWriteArrayList<>();
+
+    private transient UsersCommunication usersCommunication;
+
+    private transient OrderStatusOutbox sut;
+
+    @BeforeEach
+    void setUp() {
+        usersCommunication = mock(UsersCommunication.class);
+        when(usersCommunication.updateOrderStatusAsync(any(), anyString())).thenAnswer(invocation -> {
+            sent.add(invocation.getArgument(0) + " " + invocation.getArgument(1));
+            return CompletableFuture.completedFuture(null);
+        });
+        sut = new OrderStatusOutbox(outboxRepository, usersCommunication, 100, INITIAL_BACKOFF, MAX_BACKOFF, CLAIM,
+            new FakeClock(millis));
+    }
+
+    private void failFor(UUID orderId) {
+        doReturn(CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE)))
+            .when(usersCommunication).updateOrderStatusAsync(eq(orderId), anyString());
+    }
+
+    @Test
+    void sendsChangesOfEveryOrderInOrder() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        sut.enqueue(first, DeliveryStatus.ACCEPTED);
+        sut.enqueue(second, DeliveryStatus.ACCEPTED);
+        sut.enqueue(first, DeliveryStatus.PREPARING);
+        sut.enqueue(first, DeliveryStatus.GIVEN_TO_COURIER);
+
+        assertThat(sut.dispatch()).isEqualTo(4);
+
+        assertThat(sent.stream().filter(update -> update.startsWith(first.toString())))
+            .containsExactly(first + " ACCEPTED", first + " PREPARING", first + " GIVEN_TO_COURIER");
+        assertThat(sent).contains(second + " ACCEPTED");
+        assertThat(outboxRepository.count()).isZero();
+        assertThat(sut.dispatch()).isZero();
+    }
+
+    @Test
+    void failedChangeHoldsBackLaterChangesOfItsOrder() {
+        UUID failing = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        sut.enqueue(failing, DeliveryStatus.ACCEPTED);
+        sut.enqueue(failing, DeliveryStatus.PREPARING);
+        sut.enqueue(other, DeliveryStatus.ACCEPTED);
+        failFor(failing);
+
+        assertThat(sut.dispatch()).isEqualTo(1);
+        assertThat(sent).containsExactly(other + " ACCEPTED");
+
+        // Changes of the failing order made while it waits are held back too
+        sut.enqueue(failing, DeliveryStatus.GIVEN_TO_COURIER);
+        assertThat(sut.dispatch()).isZero();
+        assertThat(outboxRepository.findAll())
+            .extracting("status", "attempts")
+            .containsExactly(tuple("ACCEPTED", 1), tuple("PREPARING", 0), tuple("GIVEN_TO_COURIER", 0));
+    }
+
+    @Test
+    void retriesWithExponentialBackoff() {
+        UUID orderId = UUID.randomUUID();
+        sut.enqueue(orderId, DeliveryStatus.DELIVERED);
+        failFor(orderId);
+
+        sut.dispatch();
+        assertThat(outboxRepository.findAll()).extracting("nextAttemptAt").containsExactly(millis.get() + 1000);
+        millis.addAndGet(1000);
+        sut.dispatch();
+        assertThat(outboxRepository.findAll()).extracting("nextAttemptAt").containsExactly(millis.get() + 2000);
+        millis.addAndGet(2000);
+        sut.dispatch();
+        millis.addAndGet(4000);
+        sut.dispatch();
+        assertThat(outboxRepository.findAll()).extracting("nextAttemptAt", "attempts")
+            .containsExactly(tuple(millis.get() + MAX_BACKOFF, 4));
+
+        millis.addAndGet(MAX_BACKOFF - 1);
+        assertThat(sut.dispatch()).isZero();
+        assertThat(outboxRepository.findAll()).extracting("attempts").containsExactly(4);
+
+        doReturn(CompletableFuture.completedFuture(null))
+            .when(usersCommunication).updateOrderStatusAsync(eq(orderId), anyString());
+        millis.incrementAndGet();
+        assertThat(sut.dispatch()).isEqualTo(1);
+        assertThat(outboxRepository.count()).isZero();
+    }
+
+    @Test
+    void anotherDispatchLeavesClaimedChangesAlone() {
+        UUID orderId = UUID.randomUUID();
+        sut.enqueue(orderId, DeliveryStatus.ACCEPTED);
+        sut.enqueue(orderId, DeliveryStatus.PREPARING);
+        OrderStatusOutbox other = new OrderStatusOutbox(outboxRepository, usersCommunication, 100, INITIAL_BACKOFF,
+            MAX_BACKOFF, CLAIM, new FakeClock(millis));
+        List<Integer> sentByOther = new CopyOnWriteArrayList<>();
+        when(usersCommunication.updateOrderStatusAsync(eq(orderId), eq("ACCEPTED"))).thenAnswer(invocation -> {
+            // The other instance polls while this one is sending
+            sentByOther.add(other.dispatch());
+            sent.add(orderId + " ACCEPTED");
+            return CompletableFuture.completedFuture(null);
+        });
+
+        assertThat(sut.dispatch()).isEqualTo(2);
+        assertThat(sentByOther).containsExactly(0);
+        assertThat(sent).containsExactly(orderId + " ACCEPTED", orderId + " PREPARING");
+        assertThat(outboxRepository.count()).isZero();
+    }
+
+    @Test
+    void claimOfAStoppedDispatchRunsOut() {
+        UUID orderId = UUID.randomUUID();
+        sut.enqueue(orderId, DeliveryStatus.DELIVERED);
+        assertThat(outboxRepository.claimDue(millis.get(), millis.get() + CLAIM, PageRequest.of(0, 100))).hasSize(1);
+
+        millis.addAndGet(CLAIM - 1);
+        assertThat(sut.dispatch()).isZero();
+        millis.incrementAndGet();
+        assertThat(sut.dispatch()).isEqualTo(1);
+        assertThat(sent).containsExactly(orderId + " DELIVERED");
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void claimsAndSettlesInTheirOwnTransactions() {
+        UUID failing = UUID.randomUUID();
+        UUID other = UUID.randomUUID();
+        try {
+            sut.enqueue(failing, DeliveryStatus.ACCEPTED);
+            sut.enqueue(failing, DeliveryStatus.PREPARING);
+            sut.enqueue(other, DeliveryStatus.ACCEPTED);
+            failFor(failing);
+
+            assertThat(sut.dispatch()).isEqualTo(1);
+
+            assertThat(outboxRepository.findAll())
+                .extracting("status", "attempts", "nextAttemptAt")
+                .containsExactly(tuple("ACCEPTED", 1, millis.get() + INITIAL_BACKOFF),
+                    tuple("PREPARING", 0, millis.get()));
+        } finally {
+            outboxRepository.deleteAll();
+        }
+    }
+
+    /**
+     * Clock that only moves when the test moves it.
+     */
+    private static final class FakeClock extends Clock {
+
+        private final transient AtomicLong millis;
+
+        private FakeClock(AtomicLong millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis.get());
+        }
+    }
+}
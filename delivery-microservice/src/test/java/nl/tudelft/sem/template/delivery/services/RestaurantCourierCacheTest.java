@@ -0,0 +1,85 @@
+package nl.tudelft.sem.template.delivery.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
+import nl.tudelft.sem.template.model.Restaurant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@EntityScan("nl.tudelft.sem.template.*")
+@Transactional
+@DataJpaTest
+class RestaurantCourierCacheTest {
+
+    @Autowired
+    private transient RestaurantRepository rr;
+
+    private transient RestaurantCourierCache sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new RestaurantCourierCache(rr);
+        rr.save(new Restaurant().restaurantID("vendor@testmail.com").location(List.of(52.0, 4.3))
+            .couriers(List.of("courier1", "courier2")));
+        rr.save(new Restaurant().restaurantID("vendor2@testmail.com").location(List.of(52.1, 4.4)));
+    }
+
+    @Test
+    void loadsEachRestaurantOnce() {
+        assertThat(sut.getCouriers("vendor@testmail.com")).containsExactlyInAnyOrder("courier1", "courier2");
+        assertThat(sut.usesOwnCouriers("vendor@testmail.com")).isTrue();
+        assertThat(sut.getLocation("vendor@testmail.com")).containsExactly(52.0, 4.3);
+        assertThat(sut.usesOwnCouriers("vendor2@testmail.com")).isFalse();
+
+        assertThat(sut.getMisses()).isEqualTo(2);
+        assertThat(sut.getHits()).isEqualTo(2);
+    }
+
+    @Test
+    void reloadsRestaurantAfterItChanged() {
+        assertThat(sut.usesOwnCouriers("vendor2@testmail.com")).isFalse();
+
+        Restaurant restaurant = rr.findById("vendor2@testmail.com").get();
+        restaurant.setCouriers(new ArrayList<>(List.of("courier3")));
+        rr.save(restaurant);
+        assertThat(sut.usesOwnCouriers("vendor2@testmail.com")).isFalse();
+
+        sut.onRestaurantChanged(new RestaurantChangedEvent("vendor2@testmail.com", restaurant));
+        assertThat(sut.getCouriers("vendor2@testmail.com")).containsExactly("courier3");
+        assertThat(sut.getMisses()).isEqualTo(2);
+    }
+
+    @Test
+    void unknownRestaurantsAreNotCached() {
+        assertThatThrownBy(() -> sut.getCouriers("new@testmail.com"))
+            .isInstanceOf(RestaurantService.RestaurantNotFoundException.class);
+        assertThatThrownBy(() -> sut.getCouriers(null))
+            .isInstanceOf(RestaurantService.RestaurantNotFoundException.class);
+
+        rr.save(new Restaurant().restaurantID("new@testmail.com").location(List.of(52.2, 4.5)));
+        assertThat(sut.getCouriers("new@testmail.com")).isEmpty();
+    }
+
+    @Test
+    void exposesHitsAndMisses() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        sut.bindTo(registry);
+
+        sut.getCouriers("vendor@testmail.com");
+        sut.getCouriers("vendor@testmail.com");
+        sut.getCouriers("vendor@testmail.com");
+
+        assertThat(registry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(2);
+        assertThat(registry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+}
@@ -4,14 +4,17 @@ import nl.tudelft.sem.template.delivery.domain.DeliveryRepository;
 import nl.tudelft.sem.template.delivery.domain.ErrorRepository;
 import nl.tudelft.sem.template.delivery.domain.RestaurantRepository;
 import nl.tudelft.sem.template.model.Delivery;
+import nl.tudelft.sem.template.model.DeliveryStatus;
 import nl.tudelft.sem.template.model.Restaurant;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
 
 import javax.transaction.Transactional;
 import java.util.ArrayList;
@@ -20,6 +23,9 @@ import java.util.UUID;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 @EntityScan("nl.tudelft.sem.template.*")
 @ExtendWith(MockitoExtension.class)
@@ -34,16 +40,44 @@ public class RestaurantServiceTest {
     @Autowired
     private transient ErrorRepository er;
     private transient DeliveryService ds;
+    private transient ApplicationEventPublisher eventPublisher;
 
     /**
      * Set up.
      */
     @BeforeEach
     public void setup() {
-        rs = new RestaurantService(rr, dr);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        rs = new RestaurantService(rr, dr, eventPublisher);
         ds = new DeliveryService(dr, rr, er);
     }
 
+    @Test
+    public void getAllNewOrdersOfRestaurantWithoutOrdersTest() {
+        rr.save(new Restaurant().restaurantID("new_orders_none@testmail.com").location(List.of(1.0, 2.0)));
+        assertTrue(rs.getAllNewOrders("new_orders_none@testmail.com").isEmpty());
+    }
+
+    @Test
+    public void getAllNewOrdersTest() {
+        String restaurantId = "new_orders@testmail.com";
+        rr.save(new Restaurant().restaurantID(restaurantId).location(List.of(1.0, 2.0)));
+        Delivery accepted = dr.save(new Delivery().deliveryID(UUID.randomUUID()).restaurantID(restaurantId)
+            .status(DeliveryStatus.ACCEPTED));
+        Delivery preparing = dr.save(new Delivery().deliveryID(UUID.randomUUID()).restaurantID(restaurantId)
+            .status(DeliveryStatus.PREPARING));
+        dr.save(new Delivery().deliveryID(UUID.randomUUID()).restaurantID(restaurantId)
+            .status(DeliveryStatus.PREPARING).courierID("courier@testmail.com"));
+        dr.save(new Delivery().deliveryID(UUID.randomUUID()).restaurantID(restaurantId)
+            .status(DeliveryStatus.DELIVERED));
+        dr.save(new Delivery().deliveryID(UUID.randomUUID()).restaurantID("other@testmail.com")
+            .status(DeliveryStatus.ACCEPTED));
+
+        List<Delivery> orders = rs.getAllNewOrders(restaurantId);
+        assertEquals(2, orders.size());
+        assertTrue(orders.containsAll(List.of(accepted, preparing)));
+    }
+
     @Test
     public void getRestaurantThrowsExceptionTest() {
         assertThrows(RestaurantService.RestaurantNotFoundException.class,
@@ -144,6 +178,12 @@ public class RestaurantServiceTest {
         rs.insert(r);
         rs.delete("bla");
         assertThat(ds.getDelivery(deliveryId).getRestaurantID()).isNull();
+
+        ArgumentCaptor<RestaurantChangedEvent> event = ArgumentCaptor.forClass(RestaurantChangedEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(event.capture());
+        assertEquals(r, event.getAllValues().get(0).getRestaurant());
+        assertEquals("bla", event.getValue().getRestaurantId());
+        assertNull(event.getValue().getRestaurant());
     }
 
     @Test
@@ -182,6 +222,11 @@ public class RestaurantServiceTest {
         list.add("courier2@testmail.com");
         Restaurant rest = rs.setListOfCouriers("bla", list);
         assertEquals(rest.getCouriers(), list);
+
+        ArgumentCaptor<RestaurantChangedEvent> event = ArgumentCaptor.forClass(RestaurantChangedEvent.class);
+        verify(eventPublisher, times(2)).publishEvent(event.capture());
+        assertEquals("bla", event.getValue().getRestaurantId());
+        assertEquals(list, event.getValue().getRestaurant().getCouriers());
     }
 
     @Test
@@ -10,11 +10,20 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
 
 import javax.transaction.Transactional;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.argThat;
@@ -144,4 +153,63 @@ class UpdateServiceTest {
         assertThrows(DeliveryService.DeliveryNotFoundException.class,
             () -> updateDao.updateRestaurantRating(UUID.randomUUID(), 4));
     }
-}
\ No newline at end of file
+
+    @Test
+    void claimsUnassignedDelivery() {
+        UUID deliveryId = UUID.randomUUID();
+        dr.save(new Delivery().deliveryID(deliveryId).status(DeliveryStatus.PREPARING));
+
+        Optional<Delivery> claimed = updateDao.claimDelivery(deliveryId, "test_courier");
+
+        assertTrue(claimed.isPresent());
+        assertEquals("test_courier", claimed.get().getCourierID());
+        assertEquals("test_courier", dr.findById(deliveryId).get().getCourierID());
+    }
+
+    @Test
+    void doesNotClaimAssignedOrUnavailableDelivery() {
+        UUID assigned = UUID.randomUUID();
+        UUID pending = UUID.randomUUID();
+        dr.save(new Delivery().deliveryID(assigned).status(DeliveryStatus.ACCEPTED).courierID("first_courier"));
+        dr.save(new Delivery().deliveryID(pending).status(DeliveryStatus.PENDING));
+
+        assertTrue(updateDao.claimDelivery(assigned, "second_courier").isEmpty());
+        assertTrue(updateDao.claimDelivery(pending, "second_courier").isEmpty());
+        assertTrue(updateDao.claimDelivery(UUID.randomUUID(), "second_courier").isEmpty());
+        assertEquals("first_courier", dr.findById(assigned).get().getCourierID());
+        assertNull(dr.findById(pending).get().getCourierID());
+    }
+
+    @Test
+    @org.springframework.transaction.annotation.Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void concurrentClaimsAssignEachDeliveryOnce() throws Exception {
+        int couriers = 8;
+        List<UUID> deliveryIds = Stream.generate(UUID::randomUUID).limit(20).collect(Collectors.toList());
+        deliveryIds.forEach(id -> dr.save(new Delivery().deliveryID(id).status(DeliveryStatus.ACCEPTED)));
+        ExecutorService pool = Executors.newFixedThreadPool(couriers);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<List<UUID>>> results = new ArrayList<>();
+            for (int c = 0; c < couriers; c++) {
+                String courierId = "courier" + c;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return deliveryIds.stream()
+                        .filter(id -> updateDao.claimDelivery(id, courierId).isPresent())
+                        .collect(Collectors.toList());
+                }));
+            }
+            start.countDown();
+            List<UUID> claimed = new ArrayList<>();
+            for (Future<List<UUID>> result : results) {
+                claimed.addAll(result.get(60, TimeUnit.SECONDS));
+            }
+
+            assertEquals(deliveryIds.size(), claimed.size());
+            assertTrue(claimed.containsAll(deliveryIds));
+        } finally {
+            pool.shutdown();
+            deliveryIds.forEach(dr::deleteById);
+        }
+    }
+}
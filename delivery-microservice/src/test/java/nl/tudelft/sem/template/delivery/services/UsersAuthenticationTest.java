@@ -6,12 +6,13 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
 
+import java.util.Arrays;
 import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -24,13 +25,13 @@ class UsersAuthenticationTest {
 
     @Mock
     private transient UsersCommunication usersCommunication;
-    @InjectMocks
     private transient UsersAuthenticationService usersAuthentication;
 
     private transient Delivery delivery;
 
     @BeforeEach
     public void init() {
+        usersAuthentication = new UsersAuthenticationService(usersCommunication);
         delivery = new Delivery();
         delivery.setDeliveryID(UUID.randomUUID());
         delivery.setCustomerID("customerId");
@@ -44,6 +45,17 @@ class UsersAuthenticationTest {
         assertThat(usersAuthentication.checkUserAccessToDelivery("vendorId", delivery)).isTrue();
     }
 
+    @Test
+    public void looksUpSeveralUsersTogether() {
+        when(usersCommunication.getAccountTypes(any())).thenReturn(Map.of("courierId", "courier", "vendorId", "vendor"));
+
+        assertThat(usersAuthentication.getUserAccountTypes(Arrays.asList("courierId", "vendorId", "courierId", null)))
+            .containsEntry("courierId", UsersAuthenticationService.AccountType.COURIER)
+            .containsEntry("vendorId", UsersAuthenticationService.AccountType.VENDOR)
+            .containsEntry(null, UsersAuthenticationService.AccountType.INVALID)
+            .hasSize(3);
+    }
+
     @Test
     public void returnsTrueWhenCourierIsAssignedToDelivery() {
         when(usersCommunication.getAccountType("courierId")).thenReturn("courier");